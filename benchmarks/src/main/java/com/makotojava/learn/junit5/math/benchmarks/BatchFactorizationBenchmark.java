@@ -0,0 +1,80 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.makotojava.learn.junit5.math.solution.PrimeFactorization;
+import com.makotojava.learn.junit5.math.solution.YetAnotherUtility;
+
+/**
+ * Benchmarks prime factorization of a whole batch at once, with the screened
+ * small-prime stage, against factoring the same values one at a time.
+ *
+ * @author J Steven Perry
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class BatchFactorizationBenchmark {
+
+  private static final int BATCH_SIZE = 1024;
+
+  @Param
+  public InputClass inputClass;
+
+  private long[] batch;
+
+  @Setup
+  public void setUp() {
+    long[] values = inputClass.getValues();
+    batch = new long[BATCH_SIZE];
+    for (int aa = 0; aa < BATCH_SIZE; aa++) {
+      batch[aa] = values[aa % values.length];
+    }
+  }
+
+  @Benchmark
+  public PrimeFactorization[] computePrimeFactorizations() {
+    return YetAnotherUtility.computePrimeFactorizations(batch);
+  }
+
+  @Benchmark
+  public void computePrimeFactorizationEach(Blackhole blackhole) {
+    for (long value : batch) {
+      blackhole.consume(YetAnotherUtility.computePrimeFactorization(value));
+    }
+  }
+
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler attached (so allocation per
+ * operation is reported alongside throughput and average time), writes the
+ * full JMH results as JSON, and compares every score with a stored baseline.
+ *
+ * <pre>
+ * BenchmarkRunner [--save-baseline] [--baseline file] [--tolerance percent] [include regex]
+ * </pre>
+ *
+ * The baseline is a properties file mapping each benchmark (with its
+ * parameters and mode) to its score, and allocation, from an earlier run. Any
+ * score that is worse than the baseline by more than the tolerance is flagged,
+ * and the runner exits with status 1.
+ *
+ * @author J Steven Perry
+ *
+ */
+public class BenchmarkRunner {
+
+  private static final String DEFAULT_BASELINE = "benchmark-baseline.properties";
+
+  private static final String RESULTS_FILE = "target/jmh-result.json";
+
+  private static final double DEFAULT_TOLERANCE_PERCENT = 10.0;
+
+  private static final String ALLOCATION_SUFFIX = "gc.alloc.rate.norm";
+
+  /**
+   * Allocation changes smaller than one object header are profiler noise.
+   */
+  private static final double ALLOCATION_NOISE_BYTES = 16.0;
+
+  public static void main(String[] args) throws RunnerException, IOException {
+    boolean saveBaseline = false;
+    Path baselineFile = Paths.get(DEFAULT_BASELINE);
+    double tolerancePercent = DEFAULT_TOLERANCE_PERCENT;
+    String include = ComputeFactorsBenchmark.class.getPackage().getName() + ".*";
+    for (int aa = 0; aa < args.length; aa++) {
+      if ("--save-baseline".equals(args[aa])) {
+        saveBaseline = true;
+      } else if ("--baseline".equals(args[aa]) && aa + 1 < args.length) {
+        baselineFile = Paths.get(args[++aa]);
+      } else if ("--tolerance".equals(args[aa]) && aa + 1 < args.length) {
+        tolerancePercent = Double.parseDouble(args[++aa]);
+      } else {
+        include = args[aa];
+      }
+    }
+    Options options = new OptionsBuilder()
+        .include(include)
+        .addProfiler(GCProfiler.class)
+        .resultFormat(ResultFormatType.JSON)
+        .result(RESULTS_FILE)
+        .build();
+    Map<String, Double> scores = scoresOf(new Runner(options).run());
+    if (saveBaseline) {
+      saveBaseline(baselineFile, scores);
+      System.out.println("Saved " + scores.size() + " scores to " + baselineFile);
+    } else if (Files.isRegularFile(baselineFile)) {
+      if (compareWithBaseline(loadBaseline(baselineFile), scores, tolerancePercent) > 0) {
+        System.exit(1);
+      }
+    } else {
+      System.out.println("No baseline at " + baselineFile + "; run with --save-baseline to store one");
+    }
+  }
+
+  /**
+   * Flattens the results into one score per benchmark, parameter set and mode
+   * (ending in the mode, lower is better for everything but "thrpt"), plus one
+   * allocation figure per benchmark and parameter set (ending in "alloc").
+   */
+  private static Map<String, Double> scoresOf(Collection<RunResult> runResults) {
+    Map<String, Double> ret = new TreeMap<>();
+    for (RunResult runResult : runResults) {
+      StringBuilder label = new StringBuilder(runResult.getParams().getBenchmark());
+      for (String parameter : runResult.getParams().getParamsKeys()) {
+        label.append(':').append(parameter).append('=').append(runResult.getParams().getParam(parameter));
+      }
+      Mode mode = runResult.getParams().getMode();
+      ret.put(label + ":" + mode.shortLabel(), runResult.getPrimaryResult().getScore());
+      // getSecondaryResults() is declared with the raw Result type, so go by
+      // key rather than name it in an entry type
+      for (String name : runResult.getSecondaryResults().keySet()) {
+        if (name.endsWith(ALLOCATION_SUFFIX) && mode == Mode.AverageTime) {
+          Result<?> secondary = runResult.getSecondaryResults().get(name);
+          ret.put(label + ":alloc", secondary.getScore());
+        }
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Prints every score next to its baseline.
+   *
+   * @return int - the number of regressions beyond the tolerance
+   */
+  private static int compareWithBaseline(Map<String, Double> baseline, Map<String, Double> scores,
+      double tolerancePercent) {
+    int regressions = 0;
+    System.out.println();
+    System.out.println(String.format("%-100s %14s %14s %9s", "Benchmark", "Baseline", "Score", "Change"));
+    for (Map.Entry<String, Double> score : scores.entrySet()) {
+      Double before = baseline.get(score.getKey());
+      if (before == null) {
+        System.out.println(String.format("%-100s %14s %14.3f %9s", score.getKey(), "-", score.getValue(), "new"));
+        continue;
+      }
+      double changePercent = (before == 0) ? 0 : 100.0 * (score.getValue() - before) / before;
+      boolean higherIsBetter = score.getKey().endsWith(":" + Mode.Throughput.shortLabel());
+      double worsePercent = higherIsBetter ? -changePercent : changePercent;
+      boolean regression;
+      if (score.getKey().endsWith(":alloc")) {
+        regression = score.getValue() - before > Math.max(ALLOCATION_NOISE_BYTES, before * tolerancePercent / 100);
+      } else {
+        regression = worsePercent > tolerancePercent;
+      }
+      if (regression) {
+        regressions++;
+      }
+      System.out.println(String.format("%-100s %14.3f %14.3f %+8.1f%%%s", score.getKey(), before, score.getValue(),
+          changePercent, regression ? "  REGRESSION" : ""));
+    }
+    System.out.println();
+    System.out.println(regressions + " regression(s) beyond " + tolerancePercent + "%");
+    return regressions;
+  }
+
+  private static Map<String, Double> loadBaseline(Path baselineFile) throws IOException {
+    Properties properties = new Properties();
+    try (InputStream in = Files.newInputStream(baselineFile)) {
+      properties.load(in);
+    }
+    Map<String, Double> ret = new TreeMap<>();
+    for (String key : properties.stringPropertyNames()) {
+      ret.put(key, Double.valueOf(properties.getProperty(key)));
+    }
+    return ret;
+  }
+
+  private static void saveBaseline(Path baselineFile, Map<String, Double> scores) throws IOException {
+    Properties properties = new Properties();
+    for (Map.Entry<String, Double> score : scores.entrySet()) {
+      properties.setProperty(score.getKey(), score.getValue().toString());
+    }
+    try (OutputStream out = Files.newOutputStream(baselineFile)) {
+      properties.store(out, "Benchmark baseline");
+    }
+  }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.makotojava.learn.junit5.math.solution.FactorBuffer;
+import com.makotojava.learn.junit5.math.solution.PrimeFactorizer;
+import com.makotojava.learn.junit5.math.solution.YetAnotherUtility;
+
+/**
+ * Benchmarks the factorization paths across every {@link InputClass}.
+ *
+ * Each invocation factors the next value of the input class, round robin, so
+ * the JIT can't specialize on a single constant.
+ *
+ * @author J Steven Perry
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ComputeFactorsBenchmark {
+
+  @Param
+  public InputClass inputClass;
+
+  private long[] values;
+
+  private int mask;
+
+  private int index;
+
+  private final long[] primes = new long[PrimeFactorizer.MAX_DISTINCT_PRIMES];
+
+  private final int[] exponents = new int[PrimeFactorizer.MAX_DISTINCT_PRIMES];
+
+  private final FactorBuffer factorBuffer = new FactorBuffer();
+
+  @Setup
+  public void setUp() {
+    values = inputClass.getValues();
+    mask = values.length - 1;
+  }
+
+  private long nextValue() {
+    return values[index++ & mask];
+  }
+
+  @Benchmark
+  public long[] computeFactors() {
+    return YetAnotherUtility.computeFactors(nextValue());
+  }
+
+  @Benchmark
+  public int computeFactorsIntoBuffer() {
+    return YetAnotherUtility.computeFactors(nextValue(), factorBuffer);
+  }
+
+  @Benchmark
+  public int primeFactorization() {
+    return PrimeFactorizer.factor(nextValue(), primes, exponents);
+  }
+
+  @Benchmark
+  public long divisorCount() {
+    return YetAnotherUtility.computePrimeFactorization(nextValue()).divisorCount();
+  }
+
+  @Benchmark
+  public boolean isPrime() {
+    return YetAnotherUtility.isPrime(nextValue());
+  }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.benchmarks;
+
+/**
+ * The kinds of input the factorization code is benchmarked against. Each
+ * class has a power-of-two number of representative values, so benchmarks can
+ * cycle through them with a mask.
+ *
+ * @author J Steven Perry
+ *
+ */
+public enum InputClass {
+
+  /**
+   * Below 10^4: the trial division range.
+   */
+  SMALL(733, 1023, 4096, 9999, 360, 2310, 5040, 7919),
+
+  /**
+   * Large 63-bit primes: one Miller-Rabin test and nothing else.
+   */
+  PRIME(9223372036854775783L, 9222372036854775763L, 9221372036854775719L, 9220372036854775717L,
+      9219372036854775637L, 9218372036854775563L, 9217372036854775487L, 9216372036854775461L),
+
+  /**
+   * Products of two 32-bit primes: the worst case for Pollard's rho.
+   */
+  SEMIPRIME(9220334987915242063L, 9217297732394202491L, 9214260489053167739L, 9211223519002172081L,
+      9208186300051143241L, 9205149299700143497L, 9202111898831097569L, 9199075001772108899L),
+
+  /**
+   * Highly composite numbers, with 1344 up to 103680 divisors: the cost is in
+   * building the divisor list.
+   */
+  HIGHLY_COMPOSITE(735134400L, 6983776800L, 321253732800L, 4497552259200L, 963761198400L, 97821761637600L,
+      866421317361600L, 897612484786617600L),
+
+  /**
+   * Just below Long.MAX_VALUE: a mix of everything at the top of the range.
+   */
+  NEAR_LONG_MAX(Long.MAX_VALUE, Long.MAX_VALUE - 1, Long.MAX_VALUE - 2, Long.MAX_VALUE - 3, Long.MAX_VALUE - 4,
+      Long.MAX_VALUE - 5, Long.MAX_VALUE - 6, Long.MAX_VALUE - 7);
+
+  private final long[] values;
+
+  InputClass(long... values) {
+    this.values = values;
+  }
+
+  /**
+   * @return long[] - a copy of the representative values
+   */
+  public long[] getValues() {
+    return values.clone();
+  }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.makotojava.learn.junit5.math.solution.TrialDivisionStrategy;
+import com.makotojava.learn.junit5.math.solution.YetAnotherUtility;
+
+/**
+ * Benchmarks computeFactors with each {@link TrialDivisionStrategy}, on
+ * numbers at the top of the trial division range, where the number of trial
+ * divisors matters most.
+ *
+ * @author J Steven Perry
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class TrialDivisionBenchmark {
+
+  /**
+   * Primes, products of two primes near 4096 and a few composites, all just
+   * below 2^24.
+   */
+  private static final long[] VALUES = { 16777213L, 16777199L, 16744463L, 16687189L, 16777215L, 16777216L,
+      15120000L, 14348907L };
+
+  private static final int MASK = VALUES.length - 1;
+
+  @Param
+  public TrialDivisionStrategy strategy;
+
+  private int index;
+
+  @Setup
+  public void setUp() {
+    YetAnotherUtility.setTrialDivisionStrategy(strategy);
+  }
+
+  @TearDown
+  public void tearDown() {
+    YetAnotherUtility.setTrialDivisionStrategy(TrialDivisionStrategy.WHEEL);
+  }
+
+  @Benchmark
+  public long[] computeFactors() {
+    return YetAnotherUtility.computeFactors(VALUES[index++ & MASK]);
+  }
+
+}
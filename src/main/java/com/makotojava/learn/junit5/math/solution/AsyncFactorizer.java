@@ -0,0 +1,290 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Asynchronous front end for {@link YetAnotherUtility#computeFactors(long)},
+ * so callers such as request handlers do not block their own threads while a
+ * number is factored.
+ *
+ * Requests for a value that is already being factored are coalesced: they wait
+ * on the computation in flight instead of starting another one, so a burst of
+ * identical requests costs one factorization. Every caller still gets its own
+ * array, and cancelling one caller's future does not affect the others.
+ *
+ * The work runs on any {@link Executor}, on a bounded pool from
+ * {@link #newBounded(int, int, RejectionPolicy)}, or on a virtual thread per
+ * request from {@link #newVirtualThreadPerTask()} where the runtime supports it.
+ *
+ * @author J Steven Perry
+ *
+ */
+public final class AsyncFactorizer implements AutoCloseable {
+
+  /**
+   * What a bounded pool does with a request that arrives when every thread is
+   * busy and the queue is full.
+   */
+  public enum RejectionPolicy {
+    /** Fail the new request's future with a RejectedExecutionException */
+    ABORT,
+    /** Factor the new request on the calling thread, which slows callers down */
+    CALLER_RUNS,
+    /** Fail the oldest queued request's future and queue the new one */
+    DISCARD_OLDEST
+  }
+
+  private final Executor executor;
+
+  /**
+   * The executor, if this factorizer created it and so has to shut it down.
+   */
+  private final ExecutorService ownedExecutor;
+
+  private final ConcurrentHashMap<Long, CompletableFuture<long[]>> inFlight = new ConcurrentHashMap<>();
+
+  private final LongAdder coalescedCount = new LongAdder();
+
+  /**
+   * @param executor
+   *          Runs the factorizations. It is not shut down by {@link #close()}.
+   */
+  public AsyncFactorizer(Executor executor) {
+    this(executor, null);
+  }
+
+  private AsyncFactorizer(Executor executor, ExecutorService ownedExecutor) {
+    this.executor = executor;
+    this.ownedExecutor = ownedExecutor;
+  }
+
+  /**
+   * Creates a factorizer with its own fixed pool of daemon threads and a
+   * bounded queue in front of it.
+   *
+   * @param threads
+   *          The number of threads. Must be positive.
+   * @param queueLimit
+   *          The number of requests that can wait for a thread. Zero means
+   *          none can.
+   * @param policy
+   *          What to do with a request when the threads and queue are full
+   *
+   * @return AsyncFactorizer - the factorizer, which should be closed when no
+   *         longer needed
+   *
+   * @throws IllegalArgumentException
+   *           if threads is not positive or queueLimit is negative
+   */
+  public static AsyncFactorizer newBounded(int threads, int queueLimit, RejectionPolicy policy) {
+    ThreadPoolExecutor pool = newBoundedExecutor(threads, queueLimit, policy);
+    return new AsyncFactorizer(pool, pool);
+  }
+
+  /**
+   * Builds the pool behind {@link #newBounded(int, int, RejectionPolicy)}.
+   */
+  static ThreadPoolExecutor newBoundedExecutor(int threads, int queueLimit, RejectionPolicy policy) {
+    if (threads <= 0) {
+      throw new IllegalArgumentException("Thread count must be positive!");
+    }
+    if (queueLimit < 0) {
+      throw new IllegalArgumentException("Queue limit must not be negative!");
+    }
+    BlockingQueue<Runnable> queue = (queueLimit == 0) ? new SynchronousQueue<>()
+        : new ArrayBlockingQueue<>(queueLimit);
+    AtomicInteger threadNumber = new AtomicInteger();
+    return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, queue, runnable -> {
+      Thread thread = new Thread(runnable, "async-factorizer-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }, rejectionHandler(policy));
+  }
+
+  /**
+   * Anything that is not handled by running it is rejected by throwing, which
+   * computeFactors turns into an exceptionally completed future. Nothing is
+   * ever dropped silently, so no future is left hanging.
+   */
+  private static RejectedExecutionHandler rejectionHandler(RejectionPolicy policy) {
+    return (runnable, pool) -> {
+      if (pool.isShutdown()) {
+        throw new RejectedExecutionException("Factorizer has been closed!");
+      }
+      if (policy == RejectionPolicy.CALLER_RUNS) {
+        runnable.run();
+        return;
+      }
+      Runnable oldest = (policy == RejectionPolicy.DISCARD_OLDEST) ? pool.getQueue().poll() : null;
+      if (oldest == null) {
+        throw new RejectedExecutionException("Factorizer is at capacity!");
+      }
+      if (oldest instanceof Computation) {
+        ((Computation) oldest).reject(new RejectedExecutionException("Discarded to make room for a newer request!"));
+      }
+      pool.execute(runnable);
+    };
+  }
+
+  /**
+   * Creates a factorizer that runs every request on a new virtual thread.
+   * Virtual threads are cheap enough that nothing needs to be pooled or
+   * queued.
+   *
+   * @return AsyncFactorizer - the factorizer, which should be closed when no
+   *         longer needed
+   *
+   * @throws UnsupportedOperationException
+   *           if the runtime has no virtual threads (before Java 21)
+   */
+  public static AsyncFactorizer newVirtualThreadPerTask() {
+    ExecutorService executor;
+    try {
+      // Looked up at run time, since the code is compiled for an older Java
+      executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (NoSuchMethodException e) {
+      throw new UnsupportedOperationException("Virtual threads need Java 21 or later!", e);
+    } catch (InvocationTargetException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException(e);
+    }
+    return new AsyncFactorizer(executor, executor);
+  }
+
+  /**
+   * Computes every factor of the specified compound integer asynchronously.
+   *
+   * @param compoundInteger
+   *          The compound integer. Must not be negative.
+   *
+   * @return CompletableFuture&lt;long[]&gt; - completes with the factors, in
+   *         ascending order (null for zero), or exceptionally if the request
+   *         was rejected
+   *
+   * @throws IllegalArgumentException
+   *           if the compound integer is negative (checked before anything is
+   *           queued)
+   */
+  public CompletableFuture<long[]> computeFactors(long compoundInteger) {
+    if (compoundInteger < 0) {
+      throw new IllegalArgumentException("Candidate integer must be a positive number!");
+    }
+    if (compoundInteger == 0) {
+      return CompletableFuture.completedFuture(null);
+    }
+    CompletableFuture<long[]> created = new CompletableFuture<>();
+    CompletableFuture<long[]> existing = inFlight.putIfAbsent(compoundInteger, created);
+    if (existing != null) {
+      coalescedCount.increment();
+      return existing.thenApply(long[]::clone);
+    }
+    //
+    // Every caller gets a dependent future, so cancelling theirs leaves the
+    // shared one alone
+    CompletableFuture<long[]> ret = created.thenApply(factors -> factors);
+    Computation computation = new Computation(compoundInteger, created);
+    try {
+      executor.execute(computation);
+    } catch (RejectedExecutionException e) {
+      computation.reject(e);
+    }
+    return ret;
+  }
+
+  /**
+   * @return int - the number of distinct values being factored or waiting
+   *         for a thread
+   */
+  public int getInFlightCount() {
+    return inFlight.size();
+  }
+
+  /**
+   * @return long - the number of requests that joined a computation already
+   *         in flight instead of starting their own
+   */
+  public long getCoalescedCount() {
+    return coalescedCount.sum();
+  }
+
+  /**
+   * Shuts down the executor if this factorizer created it. Requests already
+   * accepted still complete. A caller-supplied executor is left running.
+   */
+  @Override
+  public void close() {
+    if (ownedExecutor != null) {
+      ownedExecutor.shutdown();
+    }
+  }
+
+  /**
+   * One value being factored, shared by every request for it.
+   */
+  private final class Computation implements Runnable {
+
+    private final long compoundInteger;
+    private final CompletableFuture<long[]> future;
+
+    Computation(long compoundInteger, CompletableFuture<long[]> future) {
+      this.compoundInteger = compoundInteger;
+      this.future = future;
+    }
+
+    @Override
+    public void run() {
+      try {
+        long[] factors = YetAnotherUtility.computeFactors(compoundInteger);
+        //
+        // Out of the map before completing, so once a caller has its result
+        // the value no longer counts as in flight
+        inFlight.remove(compoundInteger, future);
+        future.complete(factors);
+      } catch (RuntimeException | Error e) {
+        inFlight.remove(compoundInteger, future);
+        future.completeExceptionally(e);
+      }
+    }
+
+    void reject(RejectedExecutionException e) {
+      inFlight.remove(compoundInteger, future);
+      future.completeExceptionally(e);
+    }
+
+  }
+
+}
@@ -0,0 +1,371 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Prime factorization engine for integers of any size.
+ *
+ * The stages run in order of cost: trial division by the primes below 2^16,
+ * then a bounded run of Pollard's rho (Brent's variant) for factors up to about
+ * 32 bits, then the elliptic curve method for anything bigger, with curves run
+ * in parallel. Pieces that fit in a <code>long</code> go straight to
+ * {@link PrimeFactorizer}.
+ *
+ * @author J Steven Perry
+ *
+ */
+public final class BigIntegerFactorizer {
+
+  /**
+   * Primes below this bound are removed by trial division.
+   */
+  static final int TRIAL_DIVISION_BOUND = 1 << 16;
+
+  private static final int[] TRIAL_PRIMES = RangeFactorizer.primesUpTo(TRIAL_DIVISION_BOUND);
+
+  /**
+   * Rho steps to take before giving up and moving on to ECM. Rho needs about
+   * sqrt(p) steps to find p, so this covers factors up to about 32 bits.
+   */
+  private static final int RHO_STEP_LIMIT = 1 << 17;
+
+  /**
+   * Number of rho steps whose differences are multiplied together before
+   * taking a single GCD.
+   */
+  private static final int GCD_BATCH_SIZE = 128;
+
+  /**
+   * BigInteger.isProbablePrime certainty: the chance of a composite passing is
+   * below 2^-100.
+   */
+  private static final int PRIME_CERTAINTY = 100;
+
+  private static final BigInteger TWO = BigInteger.valueOf(2);
+
+  private BigIntegerFactorizer() {
+    // Static methods only
+  }
+
+  /**
+   * Computes the prime factorization of the specified number, running ECM
+   * curves on the common pool.
+   *
+   * @param compoundInteger
+   *          The number to factor. Must be greater than zero.
+   *
+   * @return SortedMap&lt;BigInteger, Integer&gt; - each prime factor, ascending,
+   *         mapped to its exponent. Empty for 1.
+   *
+   * @throws IllegalArgumentException
+   *           if the compound integer is not positive
+   */
+  public static SortedMap<BigInteger, Integer> factor(BigInteger compoundInteger) {
+    return factor(compoundInteger, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Computes the prime factorization of the specified number, running ECM
+   * curves on the specified pool.
+   *
+   * @param compoundInteger
+   *          The number to factor. Must be greater than zero.
+   * @param pool
+   *          The pool to run curves on
+   *
+   * @return SortedMap&lt;BigInteger, Integer&gt; - each prime factor, ascending,
+   *         mapped to its exponent. Empty for 1.
+   *
+   * @throws IllegalArgumentException
+   *           if the compound integer is not positive
+   */
+  public static SortedMap<BigInteger, Integer> factor(BigInteger compoundInteger, ForkJoinPool pool) {
+    if (compoundInteger.signum() <= 0) {
+      throw new IllegalArgumentException("Candidate integer must be a positive number!");
+    }
+    SortedMap<BigInteger, Integer> ret = new TreeMap<>();
+    factor(compoundInteger, pool, CancellationToken.NONE, ret);
+    return ret;
+  }
+
+  /**
+   * Computes the prime factorization of the specified number, running ECM
+   * curves on the specified pool, until it is done or the token is cancelled.
+   *
+   * The token is checked between units of work of well under a millisecond:
+   * trial division groups, batches of rho steps, and chunks of each ECM
+   * curve. Pieces that fit in a long are always finished, since that takes
+   * about a millisecond at most. Interrupting the calling thread cancels the
+   * work just like the token does, and the thread's interrupt status is left
+   * set.
+   *
+   * @param compoundInteger
+   *          The number to factor. Must be greater than zero.
+   * @param pool
+   *          The pool to run curves on
+   * @param token
+   *          Checked to see whether to stop early
+   *
+   * @return FactorizationResult - the prime factors found and, if the token
+   *         was cancelled first, the cofactor left unfactored
+   *
+   * @throws IllegalArgumentException
+   *           if the compound integer is not positive
+   */
+  public static FactorizationResult factor(BigInteger compoundInteger, ForkJoinPool pool, CancellationToken token) {
+    if (compoundInteger.signum() <= 0) {
+      throw new IllegalArgumentException("Candidate integer must be a positive number!");
+    }
+    SortedMap<BigInteger, Integer> primeFactors = new TreeMap<>();
+    BigInteger cofactor = factor(compoundInteger, pool, token.orInterruptionOf(Thread.currentThread()),
+        primeFactors);
+    return new FactorizationResult(compoundInteger, primeFactors, cofactor);
+  }
+
+  /**
+   * Adds the prime factors of a positive number to the map, stopping early
+   * if the token is cancelled.
+   *
+   * @return BigInteger - the product of the pieces still unfactored, 1 if
+   *         everything was factored
+   */
+  private static BigInteger factor(BigInteger compoundInteger, ForkJoinPool pool, CancellationToken token,
+      SortedMap<BigInteger, Integer> factors) {
+    BigInteger remaining = divideOutSmallPrimes(compoundInteger, factors, token);
+    Deque<BigInteger> pending = new ArrayDeque<>();
+    if (!remaining.equals(BigInteger.ONE)) {
+      pending.push(remaining);
+    }
+    while (!pending.isEmpty() && !token.isCancelled()) {
+      BigInteger composite = pending.pop();
+      if (composite.bitLength() < Long.SIZE) {
+        addLongFactors(composite.longValue(), factors);
+      } else if (composite.isProbablePrime(PRIME_CERTAINTY)) {
+        factors.merge(composite, 1, Integer::sum);
+      } else {
+        BigInteger divisor = findDivisor(composite, pool, token);
+        if (divisor == null) {
+          // Cancelled
+          pending.push(composite);
+          break;
+        }
+        pending.push(divisor);
+        pending.push(composite.divide(divisor));
+      }
+    }
+    BigInteger ret = BigInteger.ONE;
+    for (BigInteger piece : pending) {
+      ret = ret.multiply(piece);
+    }
+    return ret;
+  }
+
+  /**
+   * Builds every divisor of a number from its prime factorization.
+   *
+   * @param factorization
+   *          Each prime factor mapped to its exponent
+   *
+   * @return BigInteger[] - every divisor, in ascending order
+   */
+  public static BigInteger[] divisors(SortedMap<BigInteger, Integer> factorization) {
+    int total = 1;
+    for (int exponent : factorization.values()) {
+      total = Math.multiplyExact(total, exponent + 1);
+    }
+    BigInteger[] ret = new BigInteger[total];
+    ret[0] = BigInteger.ONE;
+    int length = 1;
+    for (Map.Entry<BigInteger, Integer> primePower : factorization.entrySet()) {
+      int baseLength = length;
+      for (int aa = 0; aa < baseLength * primePower.getValue(); aa++) {
+        ret[length++] = ret[aa].multiply(primePower.getKey());
+      }
+    }
+    Arrays.sort(ret);
+    return ret;
+  }
+
+  /**
+   * Trial division by the primes below {@link #TRIAL_DIVISION_BOUND}. Primes
+   * are grouped so that their product fits in a long, which takes one
+   * BigInteger remainder per group instead of one per prime.
+   *
+   * @return BigInteger - what is left after dividing out every small prime,
+   *         or as many as there was time for
+   */
+  private static BigInteger divideOutSmallPrimes(BigInteger compoundInteger, SortedMap<BigInteger, Integer> factors,
+      CancellationToken token) {
+    BigInteger remaining = compoundInteger;
+    int twos = remaining.getLowestSetBit();
+    if (twos > 0) {
+      factors.put(TWO, twos);
+      remaining = remaining.shiftRight(twos);
+    }
+    int index = 1;
+    while (index < TRIAL_PRIMES.length && remaining.bitLength() >= Long.SIZE && !token.isCancelled()) {
+      long product = 1;
+      int groupEnd = index;
+      while (groupEnd < TRIAL_PRIMES.length && product <= Long.MAX_VALUE / TRIAL_PRIMES[groupEnd]) {
+        product *= TRIAL_PRIMES[groupEnd++];
+      }
+      long remainder = remaining.mod(BigInteger.valueOf(product)).longValue();
+      for (int aa = index; aa < groupEnd; aa++) {
+        if (remainder % TRIAL_PRIMES[aa] == 0) {
+          BigInteger prime = BigInteger.valueOf(TRIAL_PRIMES[aa]);
+          int exponent = 0;
+          BigInteger[] quotientAndRemainder = remaining.divideAndRemainder(prime);
+          while (quotientAndRemainder[1].signum() == 0) {
+            remaining = quotientAndRemainder[0];
+            exponent++;
+            quotientAndRemainder = remaining.divideAndRemainder(prime);
+          }
+          factors.put(prime, exponent);
+        }
+      }
+      index = groupEnd;
+    }
+    return remaining;
+  }
+
+  /**
+   * Factors a piece that fits in a long with {@link PrimeFactorizer}.
+   */
+  private static void addLongFactors(long compoundInteger, SortedMap<BigInteger, Integer> factors) {
+    long[] primes = new long[PrimeFactorizer.MAX_DISTINCT_PRIMES];
+    int[] exponents = new int[PrimeFactorizer.MAX_DISTINCT_PRIMES];
+    int count = PrimeFactorizer.factor(compoundInteger, primes, exponents);
+    for (int aa = 0; aa < count; aa++) {
+      factors.merge(BigInteger.valueOf(primes[aa]), exponents[aa], Integer::sum);
+    }
+  }
+
+  /**
+   * Finds a non-trivial divisor of a composite with no factor below
+   * {@link #TRIAL_DIVISION_BOUND}: a root if it is a perfect power, otherwise
+   * whatever rho or ECM turns up.
+   *
+   * @return BigInteger - the divisor, or null if the token was cancelled
+   *         first
+   */
+  private static BigInteger findDivisor(BigInteger composite, ForkJoinPool pool, CancellationToken token) {
+    BigInteger root = perfectPowerRoot(composite);
+    if (root != null) {
+      return root;
+    }
+    BigInteger divisor = pollardBrent(composite, token);
+    if (divisor != null || token.isCancelled()) {
+      return divisor;
+    }
+    return EllipticCurveMethod.findDivisor(composite, pool, token);
+  }
+
+  /**
+   * Checks whether the composite is r^k for some prime k. Every prime factor
+   * is at least 2^16, so k can be no more than bitLength / 16.
+   *
+   * @return BigInteger - r, or null if the composite is not a perfect power
+   */
+  static BigInteger perfectPowerRoot(BigInteger composite) {
+    int maximumPower = (composite.bitLength() - 1) / 16;
+    for (int aa = 0; aa < TRIAL_PRIMES.length && TRIAL_PRIMES[aa] <= maximumPower; aa++) {
+      BigInteger root = root(composite, TRIAL_PRIMES[aa]);
+      if (root.pow(TRIAL_PRIMES[aa]).equals(composite)) {
+        return root;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * floor(value^(1/k)) by Newton's method, starting above the root.
+   */
+  static BigInteger root(BigInteger value, int k) {
+    BigInteger power = BigInteger.valueOf(k);
+    BigInteger powerMinusOne = BigInteger.valueOf(k - 1L);
+    BigInteger x = BigInteger.ONE.shiftLeft(value.bitLength() / k + 1);
+    while (true) {
+      BigInteger y = x.multiply(powerMinusOne).add(value.divide(x.pow(k - 1))).divide(power);
+      if (y.compareTo(x) >= 0) {
+        return x;
+      }
+      x = y;
+    }
+  }
+
+  /**
+   * Brent's variant of Pollard's rho using f(x) = x^2 + 1, given up after
+   * {@link #RHO_STEP_LIMIT} steps or as soon as the token is cancelled.
+   *
+   * @return BigInteger - a non-trivial divisor, or null if none turned up
+   */
+  private static BigInteger pollardBrent(BigInteger composite, CancellationToken token) {
+    BigInteger y = TWO;
+    BigInteger x = y;
+    BigInteger saved = y;
+    BigInteger product = BigInteger.ONE;
+    BigInteger divisor = BigInteger.ONE;
+    long steps = 0;
+    for (long cycleLength = 1; divisor.equals(BigInteger.ONE); cycleLength <<= 1) {
+      if (steps > RHO_STEP_LIMIT) {
+        return null;
+      }
+      x = y;
+      for (long aa = 0; aa < cycleLength; aa++) {
+        if (aa % GCD_BATCH_SIZE == 0 && token.isCancelled()) {
+          return null;
+        }
+        y = step(y, composite);
+      }
+      for (long done = 0; done < cycleLength && divisor.equals(BigInteger.ONE); done += GCD_BATCH_SIZE) {
+        if (token.isCancelled()) {
+          return null;
+        }
+        saved = y;
+        long batch = Math.min(GCD_BATCH_SIZE, cycleLength - done);
+        for (long bb = 0; bb < batch; bb++) {
+          y = step(y, composite);
+          product = product.multiply(x.subtract(y)).mod(composite);
+        }
+        divisor = product.gcd(composite);
+      }
+      steps += 2 * cycleLength;
+    }
+    if (divisor.equals(composite)) {
+      // The batch overshot: replay it one GCD at a time
+      do {
+        saved = step(saved, composite);
+        divisor = x.subtract(saved).gcd(composite);
+      } while (divisor.equals(BigInteger.ONE));
+    }
+    return divisor.equals(composite) ? null : divisor;
+  }
+
+  private static BigInteger step(BigInteger value, BigInteger modulus) {
+    return value.multiply(value).add(BigInteger.ONE).mod(modulus);
+  }
+
+}
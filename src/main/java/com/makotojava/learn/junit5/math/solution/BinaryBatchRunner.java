@@ -0,0 +1,68 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Factors every number in a {@link NumberFile} into a factor file (see
+ * {@link FactorFileWriter}). Both files are memory-mapped: numbers are read
+ * straight out of one mapping and the varints encoded straight into the
+ * other, with nothing parsed, formatted or copied in between.
+ *
+ * @author J Steven Perry
+ *
+ */
+public final class BinaryBatchRunner {
+
+  private BinaryBatchRunner() {
+    // Static methods only
+  }
+
+  /**
+   * @param input
+   *          The numbers to factor, as 8-byte little-endian longs
+   * @param output
+   *          Receives one record per number, in the same order. Replaced if it
+   *          exists. Left unfinished, for readers to reject, if the run fails.
+   *
+   * @return long - the number of numbers factored
+   *
+   * @throws IOException
+   *           if either file cannot be mapped
+   * @throws IllegalArgumentException
+   *           if any of the numbers is negative
+   */
+  public static long run(Path input, Path output) throws IOException {
+    NumberFile numbers = NumberFile.open(input);
+    FactorBuffer factors = new FactorBuffer();
+    try (FactorFileWriter writer = new FactorFileWriter(output, numbers.size())) {
+      try {
+        for (long aa = 0; aa < numbers.size(); aa++) {
+          YetAnotherUtility.computeFactors(numbers.get(aa), factors);
+          writer.write(factors);
+        }
+      } catch (IOException | RuntimeException e) {
+        writer.abort();
+        throw e;
+      }
+      return writer.getWritten();
+    }
+  }
+
+}
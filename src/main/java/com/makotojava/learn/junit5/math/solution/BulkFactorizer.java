@@ -0,0 +1,132 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * Command line front end for {@link FactorizationPipeline}: factors every
+ * number in a file, or standard input, and writes the factors to a file, or
+ * standard output. The stage statistics go to standard error at the end.
+ *
+ * <pre>
+ * BulkFactorizer [--threads n] [--queue-capacity n] [--batch-size n] [input|- [output|-]]
+ * BulkFactorizer --binary input output
+ * </pre>
+ *
+ * With --binary, the input is a {@link NumberFile} and the output a factor
+ * file (see {@link FactorFileWriter}), both memory-mapped, and the work is done
+ * by {@link BinaryBatchRunner}.
+ *
+ * For example, with the project built:
+ *
+ * <pre>
+ * java -cp target/classes com.makotojava.learn.junit5.math.solution.BulkFactorizer numbers.txt factors.txt
+ * </pre>
+ *
+ * @author J Steven Perry
+ *
+ */
+public class BulkFactorizer {
+
+  private static final String USAGE = "Usage: BulkFactorizer [--threads n] [--queue-capacity n] [--batch-size n]"
+      + " [input|- [output|-]]\n       BulkFactorizer --binary input output";
+
+  public static void main(String[] args) {
+    int threads = Runtime.getRuntime().availableProcessors();
+    int queueCapacity = FactorizationPipeline.DEFAULT_QUEUE_CAPACITY;
+    int batchSize = FactorizationPipeline.DEFAULT_BATCH_SIZE;
+    String input = "-";
+    String output = "-";
+    int files = 0;
+    boolean binary = false;
+    FactorizationPipeline pipeline;
+    try {
+      for (int aa = 0; aa < args.length; aa++) {
+        if ("--threads".equals(args[aa]) && aa + 1 < args.length) {
+          threads = Integer.parseInt(args[++aa]);
+        } else if ("--queue-capacity".equals(args[aa]) && aa + 1 < args.length) {
+          queueCapacity = Integer.parseInt(args[++aa]);
+        } else if ("--batch-size".equals(args[aa]) && aa + 1 < args.length) {
+          batchSize = Integer.parseInt(args[++aa]);
+        } else if ("--binary".equals(args[aa])) {
+          binary = true;
+        } else if (files == 0 && !args[aa].startsWith("--")) {
+          input = args[aa];
+          files++;
+        } else if (files == 1 && !args[aa].startsWith("--")) {
+          output = args[aa];
+          files++;
+        } else {
+          throw new IllegalArgumentException("Unexpected argument: " + args[aa]);
+        }
+      }
+      if (binary && ("-".equals(input) || "-".equals(output))) {
+        throw new IllegalArgumentException("--binary needs an input file and an output file");
+      }
+      pipeline = new FactorizationPipeline(threads, queueCapacity, batchSize);
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println(USAGE);
+      System.exit(2);
+      return;
+    }
+    if (binary) {
+      runBinary(input, output);
+      return;
+    }
+    try (FileChannel in = openInput(input); FileChannel out = openOutput(output)) {
+      PipelineStats stats = pipeline.run(in, out);
+      System.err.print(stats);
+    } catch (IOException e) {
+      System.err.println("BulkFactorizer failed: " + e.getMessage());
+      System.exit(1);
+    }
+  }
+
+  private static void runBinary(String input, String output) {
+    try {
+      long start = System.nanoTime();
+      long numbers = BinaryBatchRunner.run(Paths.get(input), Paths.get(output));
+      double seconds = (System.nanoTime() - start) / 1e9;
+      System.err.printf(Locale.ROOT, "%,d numbers in %.3f s (%,.0f numbers/s)%n", numbers, seconds,
+          numbers / seconds);
+    } catch (IOException e) {
+      System.err.println("BulkFactorizer failed: " + e.getMessage());
+      System.exit(1);
+    }
+  }
+
+  private static FileChannel openInput(String input) throws IOException {
+    return "-".equals(input) ? new FileInputStream(FileDescriptor.in).getChannel()
+        : FileChannel.open(Paths.get(input), StandardOpenOption.READ);
+  }
+
+  private static FileChannel openOutput(String output) throws IOException {
+    return "-".equals(output) ? new FileOutputStream(FileDescriptor.out).getChannel()
+        : FileChannel.open(Paths.get(output), StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+  }
+
+}
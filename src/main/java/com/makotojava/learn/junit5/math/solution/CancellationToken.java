@@ -0,0 +1,129 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asks a factorization to stop early, either on demand with {@link #cancel()}
+ * or once a deadline has passed.
+ *
+ * Cancellation is cooperative: the factorization checks the token between
+ * small units of work and, once it sees the token cancelled, returns whatever
+ * it has found so far as a partial {@link FactorizationResult}. A token can be
+ * shared by any number of factorizations and threads, and once cancelled it
+ * stays cancelled.
+ *
+ * @author J Steven Perry
+ *
+ */
+public final class CancellationToken {
+
+  /**
+   * Never cancelled. Only used internally, where nobody can call cancel() on
+   * it.
+   */
+  static final CancellationToken NONE = new CancellationToken(false, 0, null, null);
+
+  private final boolean hasDeadline;
+
+  /**
+   * The deadline, in System.nanoTime() terms.
+   */
+  private final long deadlineNanos;
+
+  /**
+   * A token this one is cancelled along with, if any.
+   */
+  private final CancellationToken parent;
+
+  /**
+   * A thread whose interruption cancels this token, if any.
+   */
+  private final Thread watchedThread;
+
+  private volatile boolean cancelled;
+
+  /**
+   * Creates a token with no deadline, that is only cancelled by
+   * {@link #cancel()}.
+   */
+  public CancellationToken() {
+    this(false, 0, null, null);
+  }
+
+  private CancellationToken(boolean hasDeadline, long deadlineNanos, CancellationToken parent,
+      Thread watchedThread) {
+    this.hasDeadline = hasDeadline;
+    this.deadlineNanos = deadlineNanos;
+    this.parent = parent;
+    this.watchedThread = watchedThread;
+  }
+
+  /**
+   * Creates a token that cancels itself once the timeout has elapsed, and can
+   * be cancelled sooner with {@link #cancel()}.
+   *
+   * @param timeout
+   *          How long from now the deadline is. Zero or less means it has
+   *          already passed.
+   * @param unit
+   *          The unit of the timeout
+   *
+   * @return CancellationToken - the new token
+   */
+  public static CancellationToken withTimeout(long timeout, TimeUnit unit) {
+    return new CancellationToken(true, System.nanoTime() + unit.toNanos(timeout), null, null);
+  }
+
+  /**
+   * Creates a token that is cancelled along with this one, or when the
+   * specified thread is interrupted. That lets a factorization notice the
+   * interruption of the thread that asked for it from the pool threads doing
+   * the work.
+   */
+  CancellationToken orInterruptionOf(Thread thread) {
+    return new CancellationToken(false, 0, this, thread);
+  }
+
+  /**
+   * Cancels the token. Does nothing if it is already cancelled.
+   */
+  public void cancel() {
+    cancelled = true;
+  }
+
+  /**
+   * Cheap enough to call every few microseconds: a volatile read, plus a
+   * clock read if there is a deadline.
+   *
+   * @return boolean - true once the token has been cancelled or its deadline
+   *         has passed
+   */
+  public boolean isCancelled() {
+    if (cancelled) {
+      return true;
+    }
+    if ((hasDeadline && System.nanoTime() - deadlineNanos >= 0)
+        || (parent != null && parent.isCancelled())
+        || (watchedThread != null && watchedThread.isInterrupted())) {
+      cancelled = true;
+    }
+    return cancelled;
+  }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+/**
+ * Tests a whole batch of numbers for divisibility by every odd prime up to
+ * {@link PrimeFactorizer#SMALL_FACTOR_BOUND} at once, without dividing.
+ *
+ * For an odd prime p with inverse p' mod 2^64, n is a multiple of p exactly
+ * when n * p' (mod 2^64) is at most floor((2^64 - 1) / p), taken unsigned:
+ * multiplying by p' maps the multiples of p onto 0, 1, 2, ... and everything
+ * else above them. That is one multiply and a compare instead of a hardware
+ * division, which costs tens of cycles.
+ *
+ * The kernel runs one prime at a time across the whole batch, with no
+ * branches and a contiguous result row per prime word, the shape the JIT's
+ * auto-vectorizer looks for. Results are bit masks, word-major: bit k of
+ * masks[w * length + i] is set when value i is a multiple of PRIMES[64 * w + k].
+ *
+ * @author J Steven Perry
+ *
+ */
+final class DivisibilityScreen {
+
+  /**
+   * Every odd prime up to {@link PrimeFactorizer#SMALL_FACTOR_BOUND}, the
+   * same ones PrimeFactorizer's trial division finds.
+   */
+  static final long[] PRIMES = oddPrimesUpTo((int) PrimeFactorizer.SMALL_FACTOR_BOUND);
+
+  /**
+   * Mask words needed per value, one bit per prime.
+   */
+  static final int WORDS = (PRIMES.length + Long.SIZE - 1) / Long.SIZE;
+
+  /**
+   * The inverse of each prime mod 2^64. Multiplying a multiple of the prime by
+   * it gives the exact quotient.
+   */
+  static final long[] INVERSES = new long[PRIMES.length];
+
+  /**
+   * floor((2^64 - 1) / p) + 1 for each prime: the multiples of p map below
+   * this. It is below 2^63, so it fits in a long.
+   */
+  static final long[] LIMITS = new long[PRIMES.length];
+
+  static {
+    for (int aa = 0; aa < PRIMES.length; aa++) {
+      INVERSES[aa] = MontgomeryArithmetic.inverse(PRIMES[aa]);
+      LIMITS[aa] = Long.divideUnsigned(-1L, PRIMES[aa]) + 1;
+    }
+  }
+
+  private DivisibilityScreen() {
+    // Static methods only
+  }
+
+  private static long[] oddPrimesUpTo(int limit) {
+    int[] primes = RangeFactorizer.primesUpTo(limit);
+    long[] ret = new long[primes.length - 1];
+    for (int aa = 1; aa < primes.length; aa++) {
+      ret[aa - 1] = primes[aa];
+    }
+    return ret;
+  }
+
+  /**
+   * The number of primes, from the smallest, that a batch whose largest value
+   * is the one specified needs screening against: those up to its square
+   * root. Any prime factor bigger than that is the only one, and is left
+   * once the others are divided out.
+   *
+   * @param largest
+   *          The largest value in the batch, taken unsigned
+   *
+   * @return int - the number of primes to screen against
+   */
+  static int primesNeeded(long largest) {
+    int ret = 0;
+    while (ret < PRIMES.length && Long.compareUnsigned(PRIMES[ret] * PRIMES[ret], largest) <= 0) {
+      ret++;
+    }
+    return ret;
+  }
+
+  /**
+   * Screens values[from, to) against the first primeCount primes. The bits
+   * for the other primes are cleared.
+   *
+   * @param values
+   *          The values to screen. Any long will do, taken unsigned; zero is a
+   *          multiple of everything.
+   * @param from
+   *          The first index to screen
+   * @param to
+   *          One past the last index to screen
+   * @param primeCount
+   *          How many primes to screen against, at most PRIMES.length
+   * @param masks
+   *          Receives the masks, word-major, for the length = to - from
+   *          values. Must have room for WORDS * length entries.
+   */
+  static void screen(long[] values, int from, int to, int primeCount, long[] masks) {
+    int length = to - from;
+    for (int word = 0; word < WORDS; word++) {
+      int row = word * length;
+      for (int aa = 0; aa < length; aa++) {
+        masks[row + aa] = 0;
+      }
+      int last = Math.min(primeCount, (word + 1) * Long.SIZE);
+      for (int prime = word * Long.SIZE; prime < last; prime++) {
+        long inverse = INVERSES[prime];
+        long limit = LIMITS[prime];
+        int bit = prime & (Long.SIZE - 1);
+        for (int aa = 0; aa < length; aa++) {
+          long product = values[from + aa] * inverse;
+          // Sign bit set exactly when 0 <= product < limit, taken signed,
+          // which (as limit < 2^63) is product < limit unsigned
+          masks[row + aa] |= (((product - limit) & ~product) >>> 63) << bit;
+        }
+      }
+    }
+  }
+
+  /**
+   * The plain version of {@link #screen}: one remainder per value and prime.
+   * Slow, but obviously right, so it is what screen is checked against.
+   */
+  static void screenByRemainder(long[] values, int from, int to, int primeCount, long[] masks) {
+    int length = to - from;
+    for (int aa = 0; aa < length; aa++) {
+      for (int word = 0; word < WORDS; word++) {
+        masks[word * length + aa] = 0;
+      }
+      for (int prime = 0; prime < primeCount; prime++) {
+        if (Long.remainderUnsigned(values[from + aa], PRIMES[prime]) == 0) {
+          masks[(prime / Long.SIZE) * length + aa] |= 1L << (prime & (Long.SIZE - 1));
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Produces the divisors of a number in ascending order, one at a time, from
+ * its prime factorization.
+ *
+ * Every divisor d &gt; 1 has exactly one parent: d divided by its largest prime
+ * factor. Children are always bigger than their parent, so walking this tree
+ * with a min-heap (starting from 1) yields each divisor exactly once, in
+ * ascending order, doing only as much work as the caller asks for.
+ *
+ * @author J Steven Perry
+ *
+ */
+final class DivisorIterator implements PrimitiveIterator.OfLong {
+
+  private static final int INITIAL_HEAP_SIZE = 16;
+
+  private final long[] primes;
+  private final int[] exponents;
+  private final int count;
+
+  /**
+   * Heap of pending divisors, with (for each) the index of its largest prime
+   * factor and that prime's exponent.
+   */
+  private long[] heapValues = new long[INITIAL_HEAP_SIZE];
+  private int[] heapPrimeIndexes = new int[INITIAL_HEAP_SIZE];
+  private int[] heapExponents = new int[INITIAL_HEAP_SIZE];
+  private int heapSize;
+
+  /**
+   * @param primes
+   *          The distinct prime factors, ascending
+   * @param exponents
+   *          The exponent of each prime factor
+   * @param count
+   *          The number of distinct prime factors
+   */
+  DivisorIterator(long[] primes, int[] exponents, int count) {
+    this.primes = primes;
+    this.exponents = exponents;
+    this.count = count;
+    push(1, -1, 0);
+  }
+
+  @Override
+  public boolean hasNext() {
+    return heapSize > 0;
+  }
+
+  @Override
+  public long nextLong() {
+    if (heapSize == 0) {
+      throw new NoSuchElementException();
+    }
+    long value = heapValues[0];
+    int primeIndex = heapPrimeIndexes[0];
+    int exponent = heapExponents[0];
+    pop();
+    //
+    // Raise the largest prime's power, or bring in a larger prime
+    if (primeIndex >= 0 && exponent < exponents[primeIndex]) {
+      push(value * primes[primeIndex], primeIndex, exponent + 1);
+    }
+    for (int aa = primeIndex + 1; aa < count; aa++) {
+      push(value * primes[aa], aa, 1);
+    }
+    return value;
+  }
+
+  /**
+   * @return long - the total number of divisors this iterator produces
+   */
+  static long divisorCount(int[] exponents, int count) {
+    long ret = 1;
+    for (int aa = 0; aa < count; aa++) {
+      ret *= exponents[aa] + 1;
+    }
+    return ret;
+  }
+
+  private void push(long value, int primeIndex, int exponent) {
+    if (heapSize == heapValues.length) {
+      heapValues = Arrays.copyOf(heapValues, heapSize * 2);
+      heapPrimeIndexes = Arrays.copyOf(heapPrimeIndexes, heapSize * 2);
+      heapExponents = Arrays.copyOf(heapExponents, heapSize * 2);
+    }
+    int child = heapSize++;
+    while (child > 0) {
+      int parent = (child - 1) >>> 1;
+      if (heapValues[parent] <= value) {
+        break;
+      }
+      set(child, heapValues[parent], heapPrimeIndexes[parent], heapExponents[parent]);
+      child = parent;
+    }
+    set(child, value, primeIndex, exponent);
+  }
+
+  private void pop() {
+    heapSize--;
+    if (heapSize == 0) {
+      return;
+    }
+    long value = heapValues[heapSize];
+    int primeIndex = heapPrimeIndexes[heapSize];
+    int exponent = heapExponents[heapSize];
+    int parent = 0;
+    while (true) {
+      int child = 2 * parent + 1;
+      if (child >= heapSize) {
+        break;
+      }
+      if (child + 1 < heapSize && heapValues[child + 1] < heapValues[child]) {
+        child++;
+      }
+      if (value <= heapValues[child]) {
+        break;
+      }
+      set(parent, heapValues[child], heapPrimeIndexes[child], heapExponents[child]);
+      parent = child;
+    }
+    set(parent, value, primeIndex, exponent);
+  }
+
+  private void set(int index, long value, int primeIndex, int exponent) {
+    heapValues[index] = value;
+    heapPrimeIndexes[index] = primeIndex;
+    heapExponents[index] = exponent;
+  }
+
+}
@@ -0,0 +1,376 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import java.math.BigInteger;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lenstra's elliptic curve method (ECM), for composites whose smallest factor
+ * is too big for Pollard's rho.
+ *
+ * https://en.wikipedia.org/wiki/Lenstra_elliptic-curve_factorization
+ *
+ * Curves are Montgomery curves By^2 = x^3 + Ax^2 + x from Suyama's
+ * parametrization, whose group order is always divisible by 12, and points are
+ * kept as (X : Z) so no inversions are needed. Each curve runs stage 1 (multiply
+ * by every prime power up to B1) and then a baby-step giant-step stage 2 that
+ * catches one extra prime up to B2. The bounds grow level by level, and the
+ * curves of a level are spread across the pool, stopping as soon as any of
+ * them finds a factor or the {@link CancellationToken} is cancelled.
+ *
+ * @author J Steven Perry
+ *
+ */
+final class EllipticCurveMethod {
+
+  /**
+   * Stage 1 bound of each level, roughly tuned for factors of 15, 20, 25, 30
+   * and 35 digits. The last level repeats until a factor turns up.
+   */
+  private static final int[] STAGE_ONE_BOUNDS = { 2000, 11000, 50000, 250000, 1000000 };
+
+  /**
+   * Curves to run at each level before moving up.
+   */
+  private static final int[] CURVES_PER_LEVEL = { 25, 90, 300, 700, 1800 };
+
+  /**
+   * B2 = B1 * STAGE_TWO_MULTIPLIER.
+   */
+  private static final int STAGE_TWO_MULTIPLIER = 100;
+
+  /**
+   * Giant step size for stage 2: 2*3*5*7*11, so only the 240 baby steps
+   * coprime to it are needed.
+   */
+  private static final int GIANT_STEP = 2310;
+
+  /**
+   * Suyama's parametrization degenerates for sigma in {0, +-1, 3, 5}.
+   */
+  private static final long FIRST_SIGMA = 6;
+
+  /**
+   * How many primes stage 1 works through between checks for another curve
+   * having already succeeded, or the token having been cancelled.
+   */
+  private static final int CANCELLATION_CHECK_INTERVAL = 256;
+
+  private static final BigInteger THREE = BigInteger.valueOf(3);
+
+  private static final BigInteger FIVE = BigInteger.valueOf(5);
+
+  private static final BigInteger SIXTEEN = BigInteger.valueOf(16);
+
+  /**
+   * The primes and stage 2 pairings are the same for every composite, so
+   * each level is built once, on first use.
+   */
+  private static final Level[] LEVELS = new Level[STAGE_ONE_BOUNDS.length];
+
+  private EllipticCurveMethod() {
+    // Static methods only
+  }
+
+  /**
+   * Finds a non-trivial divisor of a composite that is not a perfect power,
+   * running curves on the specified pool until one succeeds or the token is
+   * cancelled.
+   *
+   * @param composite
+   *          The odd composite to split
+   * @param pool
+   *          The pool to run curves on
+   * @param token
+   *          Checked between chunks of work on every curve
+   *
+   * @return BigInteger - a divisor strictly between 1 and the composite, or
+   *         null if the token was cancelled first
+   */
+  static BigInteger findDivisor(BigInteger composite, ForkJoinPool pool, CancellationToken token) {
+    AtomicLong nextSigma = new AtomicLong(FIRST_SIGMA);
+    for (int levelIndex = 0;; levelIndex = Math.min(levelIndex + 1, STAGE_ONE_BOUNDS.length - 1)) {
+      if (token.isCancelled()) {
+        return null;
+      }
+      Level level = level(levelIndex);
+      AtomicReference<BigInteger> divisor = new AtomicReference<>();
+      AtomicInteger curvesLeft = new AtomicInteger(CURVES_PER_LEVEL[levelIndex]);
+      pool.invoke(new CurveTask(composite, level, nextSigma, curvesLeft, divisor, token, pool.getParallelism()));
+      if (divisor.get() != null) {
+        return divisor.get();
+      }
+    }
+  }
+
+  private static synchronized Level level(int index) {
+    if (LEVELS[index] == null) {
+      LEVELS[index] = new Level(STAGE_ONE_BOUNDS[index]);
+    }
+    return LEVELS[index];
+  }
+
+  /**
+   * Runs one curve through both stages.
+   *
+   * @return BigInteger - a non-trivial divisor, or null if this curve found
+   *         nothing (or another curve already succeeded, or the token was
+   *         cancelled)
+   */
+  static BigInteger runCurve(BigInteger composite, Level level, long sigma, AtomicReference<BigInteger> found,
+      CancellationToken token) {
+    //
+    // Suyama: u = sigma^2 - 5, v = 4 sigma, start at (u^3 : v^3), and
+    // (A + 2) / 4 = (v - u)^3 (3u + v) / (16 u^3 v)
+    BigInteger s = BigInteger.valueOf(sigma);
+    BigInteger u = s.multiply(s).subtract(FIVE).mod(composite);
+    BigInteger v = s.shiftLeft(2).mod(composite);
+    BigInteger u3 = u.pow(3).mod(composite);
+    BigInteger denominator = SIXTEEN.multiply(u3).multiply(v).mod(composite);
+    BigInteger gcd = denominator.gcd(composite);
+    if (!gcd.equals(BigInteger.ONE)) {
+      return gcd.equals(composite) ? null : gcd;
+    }
+    BigInteger numerator = v.subtract(u).pow(3).multiply(THREE.multiply(u).add(v)).mod(composite);
+    Curve curve = new Curve(composite, numerator.multiply(denominator.modInverse(composite)).mod(composite));
+    Point point = new Point(u3, v.pow(3).mod(composite));
+    //
+    // Stage 1
+    int[] primes = level.stageOnePrimes;
+    for (int aa = 0; aa < primes.length; aa++) {
+      if (aa % CANCELLATION_CHECK_INTERVAL == 0 && (found.get() != null || token.isCancelled())) {
+        return null;
+      }
+      long primePower = primes[aa];
+      while (primePower * primes[aa] <= level.stageOneBound) {
+        primePower *= primes[aa];
+      }
+      point = curve.multiply(primePower, point);
+    }
+    gcd = point.z.gcd(composite);
+    if (!gcd.equals(BigInteger.ONE)) {
+      return gcd.equals(composite) ? null : gcd;
+    }
+    //
+    // Stage 2: every prime q in (B1, B2] is m * GIANT_STEP +- j for some baby
+    // step j, and q * point is the identity exactly when X_m Z_j = X_j Z_m
+    int[] babySteps = level.babySteps;
+    Point[] babyPoints = new Point[babySteps.length];
+    Point doubled = curve.doubled(point);
+    Point previous = point;
+    Point current = curve.add(doubled, point, point);
+    babyPoints[0] = point;
+    int next = 1;
+    for (int odd = 3; next < babySteps.length; odd += 2) {
+      if (odd == babySteps[next]) {
+        babyPoints[next++] = current;
+      }
+      Point following = curve.add(current, doubled, previous);
+      previous = current;
+      current = following;
+    }
+    Point giantStep = curve.multiply(GIANT_STEP, point);
+    Point giant = curve.multiply(level.firstGiant * GIANT_STEP, point);
+    Point nextGiant = curve.multiply((level.firstGiant + 1) * GIANT_STEP, point);
+    BigInteger product = BigInteger.ONE;
+    for (int mm = 0; mm < level.giantCount; mm++) {
+      if (found.get() != null || token.isCancelled()) {
+        return null;
+      }
+      int base = mm * babySteps.length;
+      for (int bb = level.pairs.nextSetBit(base); bb >= 0 && bb < base + babySteps.length; bb = level.pairs
+          .nextSetBit(bb + 1)) {
+        Point baby = babyPoints[bb - base];
+        BigInteger difference = giant.x.multiply(baby.z).subtract(baby.x.multiply(giant.z));
+        product = product.multiply(difference).mod(composite);
+      }
+      Point following = curve.add(nextGiant, giantStep, giant);
+      giant = nextGiant;
+      nextGiant = following;
+    }
+    gcd = product.gcd(composite);
+    return (gcd.equals(BigInteger.ONE) || gcd.equals(composite)) ? null : gcd;
+  }
+
+  /**
+   * A projective point (X : Z) on a Montgomery curve. The Y coordinate is
+   * never needed.
+   */
+  private static final class Point {
+
+    private final BigInteger x;
+    private final BigInteger z;
+
+    Point(BigInteger x, BigInteger z) {
+      this.x = x;
+      this.z = z;
+    }
+
+  }
+
+  /**
+   * Montgomery curve arithmetic modulo the composite, using only (A + 2) / 4.
+   */
+  private static final class Curve {
+
+    private final BigInteger modulus;
+    private final BigInteger a24;
+
+    Curve(BigInteger modulus, BigInteger a24) {
+      this.modulus = modulus;
+      this.a24 = a24;
+    }
+
+    Point doubled(Point point) {
+      BigInteger sum = point.x.add(point.z);
+      BigInteger difference = point.x.subtract(point.z);
+      BigInteger sumSquared = sum.multiply(sum).mod(modulus);
+      BigInteger differenceSquared = difference.multiply(difference).mod(modulus);
+      BigInteger cross = sumSquared.subtract(differenceSquared);
+      return new Point(sumSquared.multiply(differenceSquared).mod(modulus),
+          cross.multiply(differenceSquared.add(a24.multiply(cross))).mod(modulus));
+    }
+
+    /**
+     * Differential addition: p + q, given p - q.
+     */
+    Point add(Point p, Point q, Point difference) {
+      BigInteger left = p.x.subtract(p.z).multiply(q.x.add(q.z)).mod(modulus);
+      BigInteger right = p.x.add(p.z).multiply(q.x.subtract(q.z)).mod(modulus);
+      BigInteger sum = left.add(right);
+      BigInteger diff = left.subtract(right);
+      return new Point(difference.z.multiply(sum.multiply(sum)).mod(modulus),
+          difference.x.multiply(diff.multiply(diff)).mod(modulus));
+    }
+
+    /**
+     * Montgomery ladder: multiplier * point, for a positive multiplier.
+     */
+    Point multiply(long multiplier, Point point) {
+      Point low = point;
+      Point high = doubled(point);
+      for (int bit = 62 - Long.numberOfLeadingZeros(multiplier); bit >= 0; bit--) {
+        if (((multiplier >>> bit) & 1) != 0) {
+          low = add(high, low, point);
+          high = doubled(high);
+        } else {
+          high = add(low, high, point);
+          low = doubled(low);
+        }
+      }
+      return low;
+    }
+
+  }
+
+  /**
+   * Everything about a level that does not depend on the composite: the stage
+   * 1 primes, and which (giant step, baby step) pairs cover a prime in stage 2.
+   */
+  static final class Level {
+
+    private final int stageOneBound;
+    private final int[] stageOnePrimes;
+    private final int[] babySteps;
+    private final int firstGiant;
+    private final int giantCount;
+    private final BitSet pairs;
+
+    Level(int stageOneBound) {
+      this.stageOneBound = stageOneBound;
+      this.stageOnePrimes = RangeFactorizer.primesUpTo(stageOneBound);
+      int stageTwoBound = stageOneBound * STAGE_TWO_MULTIPLIER;
+      int[] babyIndex = new int[GIANT_STEP / 2 + 1];
+      int babyCount = 0;
+      for (int odd = 1; odd <= GIANT_STEP / 2; odd += 2) {
+        babyIndex[odd] = (ModularArithmetic.gcd(odd, GIANT_STEP) == 1) ? babyCount++ : -1;
+      }
+      this.babySteps = new int[babyCount];
+      for (int odd = 1; odd <= GIANT_STEP / 2; odd += 2) {
+        if (babyIndex[odd] >= 0) {
+          babySteps[babyIndex[odd]] = odd;
+        }
+      }
+      this.firstGiant = (stageOneBound + GIANT_STEP / 2) / GIANT_STEP;
+      int lastGiant = (stageTwoBound + GIANT_STEP / 2) / GIANT_STEP;
+      this.giantCount = lastGiant - firstGiant + 1;
+      this.pairs = new BitSet(giantCount * babyCount);
+      int[] stageTwoPrimes = RangeFactorizer.primesUpTo(stageTwoBound);
+      for (int prime : stageTwoPrimes) {
+        if (prime <= stageOneBound) {
+          continue;
+        }
+        int giant = (prime + GIANT_STEP / 2) / GIANT_STEP;
+        int baby = Math.abs(prime - giant * GIANT_STEP);
+        pairs.set((giant - firstGiant) * babyCount + babyIndex[baby]);
+      }
+    }
+
+  }
+
+  /**
+   * Runs curves until the level's budget is spent or a divisor is found,
+   * split across the specified number of workers.
+   */
+  private static final class CurveTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final BigInteger composite;
+    private final Level level;
+    private final AtomicLong nextSigma;
+    private final AtomicInteger curvesLeft;
+    private final AtomicReference<BigInteger> divisor;
+    private final CancellationToken token;
+    private final int workers;
+
+    CurveTask(BigInteger composite, Level level, AtomicLong nextSigma, AtomicInteger curvesLeft,
+        AtomicReference<BigInteger> divisor, CancellationToken token, int workers) {
+      this.composite = composite;
+      this.level = level;
+      this.nextSigma = nextSigma;
+      this.curvesLeft = curvesLeft;
+      this.divisor = divisor;
+      this.token = token;
+      this.workers = workers;
+    }
+
+    @Override
+    protected void compute() {
+      if (workers > 1) {
+        int half = workers / 2;
+        invokeAll(new CurveTask(composite, level, nextSigma, curvesLeft, divisor, token, half),
+            new CurveTask(composite, level, nextSigma, curvesLeft, divisor, token, workers - half));
+        return;
+      }
+      while (divisor.get() == null && !token.isCancelled() && curvesLeft.getAndDecrement() > 0) {
+        BigInteger found = runCurve(composite, level, nextSigma.getAndIncrement(), divisor, token);
+        if (found != null) {
+          divisor.compareAndSet(null, found);
+        }
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import java.util.Arrays;
+
+/**
+ * Reusable, growable holder for the factors of one number at a time, for
+ * {@link YetAnotherUtility#computeFactors(long, FactorBuffer)}.
+ *
+ * Along with the factors themselves it owns all the scratch space computing
+ * them needs, so once it has grown to fit the numbers it is used with, filling
+ * it allocates nothing. It only ever grows.
+ *
+ * Not thread-safe: use one buffer per thread.
+ *
+ * @author J Steven Perry
+ *
+ */
+public final class FactorBuffer {
+
+  private static final int DEFAULT_CAPACITY = 64;
+
+  /**
+   * The factors, ascending, in the first size entries.
+   */
+  private long[] factors;
+
+  /**
+   * Merge scratch. Swapped with factors as the divisors are built.
+   */
+  private long[] merged;
+
+  private long[] block;
+
+  private int size;
+
+  /**
+   * The prime factorization of the current number.
+   */
+  final long[] primes = new long[PrimeFactorizer.MAX_DISTINCT_PRIMES];
+
+  final int[] exponents = new int[PrimeFactorizer.MAX_DISTINCT_PRIMES];
+
+  public FactorBuffer() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param initialCapacity
+   *          The number of factors to make room for up front
+   *
+   * @throws IllegalArgumentException
+   *           if the initial capacity is not positive
+   */
+  public FactorBuffer(int initialCapacity) {
+    if (initialCapacity <= 0) {
+      throw new IllegalArgumentException("Initial capacity must be positive!");
+    }
+    factors = new long[initialCapacity];
+    merged = new long[initialCapacity];
+    block = new long[initialCapacity];
+  }
+
+  /**
+   * @return int - the number of factors currently held
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @param index
+   *          The index of the factor, from 0 (always 1) to size() - 1 (the
+   *          number itself)
+   *
+   * @return long - the factor at that index
+   *
+   * @throws IndexOutOfBoundsException
+   *           if the index is not below size()
+   */
+  public long get(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index " + index + " is out of bounds for size " + size);
+    }
+    return factors[index];
+  }
+
+  /**
+   * Gives direct access to the backing array, to avoid a copy. Only the first
+   * size() entries are factors, and the array may be replaced (not just
+   * overwritten) the next time the buffer is filled.
+   *
+   * @return long[] - the backing array
+   */
+  public long[] getFactors() {
+    return factors;
+  }
+
+  /**
+   * @return long[] - a copy of the factors, ascending
+   */
+  public long[] toArray() {
+    return Arrays.copyOf(factors, size);
+  }
+
+  /**
+   * @return int - the number of factors the buffer can hold without growing
+   */
+  public int capacity() {
+    return factors.length;
+  }
+
+  void clear() {
+    size = 0;
+  }
+
+  /**
+   * Replaces the contents with every divisor of the number whose prime
+   * factorization is in primes and exponents.
+   *
+   * @return int - the number of divisors
+   */
+  int fillDivisors(int count) {
+    int total = (int) DivisorIterator.divisorCount(exponents, count);
+    if (total > factors.length) {
+      int capacity = Math.max(total, factors.length * 2);
+      factors = new long[capacity];
+      merged = new long[capacity];
+      block = new long[capacity];
+    }
+    long[] result = PrimeFactorizer.divisors(primes, exponents, count, factors, merged, block);
+    if (result != factors) {
+      merged = factors;
+      factors = result;
+    }
+    size = total;
+    return total;
+  }
+
+}
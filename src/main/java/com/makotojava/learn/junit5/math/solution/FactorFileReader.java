@@ -0,0 +1,172 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a file written by {@link FactorFileWriter}. The whole file is
+ * memory-mapped and records are decoded straight out of the mapping, by index,
+ * in any order.
+ *
+ * Thread-safe: nothing changes once the file is open.
+ *
+ * @author J Steven Perry
+ *
+ */
+public final class FactorFileReader {
+
+  private final MappedSegments file;
+
+  private final long size;
+
+  private FactorFileReader(MappedSegments file, long size) {
+    this.file = file;
+    this.size = size;
+  }
+
+  /**
+   * Maps a factor file.
+   *
+   * @param path
+   *          The file
+   *
+   * @return FactorFileReader - a reader for it
+   *
+   * @throws IOException
+   *           if the file cannot be mapped, or is not a complete factor file
+   */
+  public static FactorFileReader open(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long length = channel.size();
+      if (length < FactorFileWriter.HEADER_SIZE) {
+        throw new IOException(path + " is too short to be a factor file");
+      }
+      MappedSegments file = new MappedSegments(channel, FileChannel.MapMode.READ_ONLY, 0, length);
+      long magicAndVersion = file.getLong(0);
+      if ((int) magicAndVersion != FactorFileWriter.FILE_MAGIC) {
+        throw new IOException(path + " is not a factor file, or was never finished");
+      }
+      if ((int) (magicAndVersion >>> 32) != FactorFileWriter.FILE_VERSION) {
+        throw new IOException(path + " has unsupported version " + (magicAndVersion >>> 32));
+      }
+      long size = file.getLong(8);
+      if (size < 0 || size > (length - FactorFileWriter.HEADER_SIZE) / Long.BYTES - 1) {
+        throw new IOException(path + " has a corrupt header");
+      }
+      return new FactorFileReader(file, size);
+    }
+  }
+
+  /**
+   * @return long - the number of records in the file
+   */
+  public long size() {
+    return size;
+  }
+
+  /**
+   * @param index
+   *          The index of the record, from 0 to size() - 1
+   *
+   * @return int - the number of factors in the record
+   *
+   * @throws IndexOutOfBoundsException
+   *           if the index is out of range
+   */
+  public int getFactorCount(long index) {
+    return (int) varintAt(recordOffset(index));
+  }
+
+  /**
+   * Decodes the factors in a record into a caller-supplied array, without
+   * allocating anything.
+   *
+   * @param index
+   *          The index of the record, from 0 to size() - 1
+   * @param factors
+   *          Receives the factors, in ascending order, if there is room for
+   *          them all. Otherwise it is left untouched.
+   *
+   * @return int - the number of factors. If that is more than factors.length,
+   *         nothing was written.
+   *
+   * @throws IndexOutOfBoundsException
+   *           if the index is out of range
+   */
+  public int getFactors(long index, long[] factors) {
+    long offset = recordOffset(index);
+    long count = varintAt(offset);
+    if (count > factors.length) {
+      return (int) count;
+    }
+    offset += varintLength(count);
+    long factor = 0;
+    for (int aa = 0; aa < count; aa++) {
+      long difference = varintAt(offset);
+      offset += varintLength(difference);
+      factor += difference;
+      factors[aa] = factor;
+    }
+    return (int) count;
+  }
+
+  /**
+   * @param index
+   *          The index of the record, from 0 to size() - 1
+   *
+   * @return long[] - the factors in the record, in ascending order. Empty for
+   *         zero.
+   *
+   * @throws IndexOutOfBoundsException
+   *           if the index is out of range
+   */
+  public long[] getFactors(long index) {
+    long[] ret = new long[getFactorCount(index)];
+    getFactors(index, ret);
+    return ret;
+  }
+
+  private long recordOffset(long index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index " + index + " is out of bounds for size " + size);
+    }
+    return file.getLong(FactorFileWriter.HEADER_SIZE + index * Long.BYTES);
+  }
+
+  private long varintAt(long offset) {
+    long ret = 0;
+    for (int shift = 0;; shift += 7) {
+      byte next = file.get(offset++);
+      ret |= (long) (next & 0x7F) << shift;
+      if (next >= 0) {
+        return ret;
+      }
+    }
+  }
+
+  /**
+   * The number of bytes FactorFileWriter uses for a value.
+   */
+  private static int varintLength(long value) {
+    return (Long.SIZE - Long.numberOfLeadingZeros(value | 1) + 6) / 7;
+  }
+
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes the factors of a batch of numbers to a memory-mapped binary file, one
+ * record per number, for {@link FactorFileReader} to read back by index.
+ *
+ * The file, all little-endian, is:
+ *
+ * <ol>
+ * <li>a 16-byte header: the magic number "FACT", the format version (an
+ * int) and the number of records (a long),</li>
+ * <li>the offset index: for each record, the long file offset where it
+ * starts, followed by one more offset, where the last record ends,</li>
+ * <li>the records. Each is the number of factors as an unsigned LEB128 varint,
+ * followed by the factors, ascending, each as a varint of its difference from
+ * the one before (the first from zero).</li>
+ * </ol>
+ *
+ * Factors are dense at the low end, so most differences take one or two bytes
+ * instead of eight. The header is written last, on {@link #close()}, so a file
+ * that was never finished, or was given up on with {@link #abort()}, is not
+ * mistaken for a good one.
+ *
+ * @author J Steven Perry
+ *
+ */
+public final class FactorFileWriter implements AutoCloseable {
+
+  /**
+   * "FACT", read as a little-endian int.
+   */
+  static final int FILE_MAGIC = 0x54434146;
+
+  static final int FILE_VERSION = 1;
+
+  static final int HEADER_SIZE = 16;
+
+  /**
+   * The records are mapped this much at a time, as the file grows.
+   */
+  private static final long WINDOW_SIZE = 64L << 20;
+
+  private static final int MAX_VARINT_BYTES = 10;
+
+  private final FileChannel channel;
+
+  private final long capacity;
+
+  /**
+   * The header and offset index.
+   */
+  private final MappedSegments index;
+
+  private final long recordsStart;
+
+  /**
+   * Where the records are being written, from windowStart in the file.
+   */
+  private MappedByteBuffer window;
+
+  private long windowStart;
+
+  private long written;
+
+  private boolean closed;
+
+  /**
+   * Creates (or replaces) a file with room in the index for the specified
+   * number of records.
+   *
+   * @param path
+   *          The file
+   * @param capacity
+   *          The most records that will be written. Fewer is fine.
+   *
+   * @throws IOException
+   *           if the file cannot be created and mapped
+   * @throws IllegalArgumentException
+   *           if the capacity is negative
+   */
+  public FactorFileWriter(Path path, long capacity) throws IOException {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("Capacity must not be negative!");
+    }
+    this.channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+    this.capacity = capacity;
+    this.recordsStart = HEADER_SIZE + (capacity + 1) * Long.BYTES;
+    try {
+      this.index = new MappedSegments(channel, FileChannel.MapMode.READ_WRITE, 0, recordsStart);
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+    this.windowStart = recordsStart;
+  }
+
+  /**
+   * Appends the record for the next number.
+   *
+   * @param factors
+   *          The number's factors, ascending, in the first count entries
+   * @param count
+   *          The number of factors. Zero for zero.
+   *
+   * @throws IOException
+   *           if the file cannot be extended
+   * @throws IllegalStateException
+   *           if the file already holds as many records as its capacity
+   */
+  public void write(long[] factors, int count) throws IOException {
+    if (written == capacity) {
+      throw new IllegalStateException("All " + capacity + " records have already been written!");
+    }
+    long needed = (long) MAX_VARINT_BYTES * (count + 1);
+    if (window == null || window.remaining() < needed) {
+      long position = (window == null) ? windowStart : windowStart + window.position();
+      window = channel.map(FileChannel.MapMode.READ_WRITE, position, Math.max(WINDOW_SIZE, needed));
+      windowStart = position;
+    }
+    index.putLong(HEADER_SIZE + written * Long.BYTES, windowStart + window.position());
+    putVarint(count);
+    long previous = 0;
+    for (int aa = 0; aa < count; aa++) {
+      putVarint(factors[aa] - previous);
+      previous = factors[aa];
+    }
+    written++;
+  }
+
+  /**
+   * Appends the record for the number whose factors are in the buffer.
+   *
+   * @see #write(long[], int)
+   */
+  public void write(FactorBuffer factors) throws IOException {
+    write(factors.getFactors(), factors.size());
+  }
+
+  private void putVarint(long value) {
+    while ((value & ~0x7FL) != 0) {
+      window.put((byte) (value | 0x80));
+      value >>>= 7;
+    }
+    window.put((byte) value);
+  }
+
+  /**
+   * @return long - the number of records written so far
+   */
+  public long getWritten() {
+    return written;
+  }
+
+  /**
+   * Finishes the index and header and trims the file to what was written.
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      long end = (window == null) ? windowStart : windowStart + window.position();
+      index.putLong(HEADER_SIZE + written * Long.BYTES, end);
+      index.putLong(8, written);
+      index.putLong(0, (FILE_MAGIC & 0xFFFFFFFFL) | ((long) FILE_VERSION << 32));
+      window = null;
+      channel.truncate(end);
+    } finally {
+      channel.close();
+    }
+  }
+
+  /**
+   * Closes the file without writing the header, so that readers reject it,
+   * for when the batch could not be finished. Closing afterwards does
+   * nothing.
+   */
+  public void abort() throws IOException {
+    if (!closed) {
+      closed = true;
+      window = null;
+      channel.close();
+    }
+  }
+
+}
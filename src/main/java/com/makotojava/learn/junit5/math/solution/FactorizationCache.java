@@ -0,0 +1,334 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, thread-safe cache of factor arrays keyed on a primitive
+ * <code>long</code>.
+ *
+ * The cache is split into independently locked segments (lock striping), so
+ * threads working on different keys rarely contend. Each segment is an
+ * open-addressing hash table of primitive keys with its own least recently
+ * used (LRU) list, and evicts its LRU entry once it is full. Nothing is boxed.
+ *
+ * Arrays are copied on the way in and on the way out, so callers can never
+ * change what the cache holds.
+ *
+ * @author J Steven Perry
+ *
+ */
+public final class FactorizationCache {
+
+  private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+  private final Segment[] segments;
+
+  private final int segmentShift;
+
+  private final LongAdder hits = new LongAdder();
+
+  private final LongAdder misses = new LongAdder();
+
+  /**
+   * Creates a cache holding at most the specified number of entries.
+   *
+   * @param maximumSize
+   *          The maximum number of entries. Must be positive.
+   */
+  public FactorizationCache(int maximumSize) {
+    this(maximumSize, DEFAULT_CONCURRENCY_LEVEL);
+  }
+
+  /**
+   * Creates a cache holding at most the specified number of entries, split
+   * into (at least) the specified number of segments.
+   *
+   * @param maximumSize
+   *          The maximum number of entries. Must be positive.
+   * @param concurrencyLevel
+   *          The expected number of threads using the cache at once. Rounded up
+   *          to a power of two, and never more than maximumSize.
+   */
+  public FactorizationCache(int maximumSize, int concurrencyLevel) {
+    if (maximumSize <= 0) {
+      throw new IllegalArgumentException("Maximum size must be positive!");
+    }
+    if (concurrencyLevel <= 0) {
+      throw new IllegalArgumentException("Concurrency level must be positive!");
+    }
+    int segmentCount = 1;
+    while (segmentCount < concurrencyLevel && segmentCount * 2 <= maximumSize) {
+      segmentCount <<= 1;
+    }
+    this.segments = new Segment[segmentCount];
+    this.segmentShift = 64 - Integer.numberOfTrailingZeros(segmentCount);
+    for (int aa = 0; aa < segmentCount; aa++) {
+      // Spread any remainder over the first few segments
+      segments[aa] = new Segment(maximumSize / segmentCount + ((aa < maximumSize % segmentCount) ? 1 : 0));
+    }
+  }
+
+  /**
+   * Looks up the factors of the specified number.
+   *
+   * @param key
+   *          The number
+   *
+   * @return long[] - a copy of the cached factors, or null if they aren't cached
+   */
+  public long[] get(long key) {
+    long hash = hash(key);
+    long[] ret = segmentFor(hash).get(key, hash);
+    if (ret == null) {
+      misses.increment();
+    } else {
+      hits.increment();
+    }
+    return ret;
+  }
+
+  /**
+   * Caches the factors of the specified number, evicting the least recently
+   * used entry of its segment if need be.
+   *
+   * @param key
+   *          The number
+   * @param factors
+   *          Its factors. A copy is cached.
+   */
+  public void put(long key, long[] factors) {
+    long hash = hash(key);
+    segmentFor(hash).put(key, hash, factors.clone());
+  }
+
+  /**
+   * Removes every entry. The hit and miss counters are left alone.
+   */
+  public void clear() {
+    for (Segment segment : segments) {
+      segment.clear();
+    }
+  }
+
+  /**
+   * @return int - the number of entries currently cached
+   */
+  public int size() {
+    int ret = 0;
+    for (Segment segment : segments) {
+      ret += segment.size();
+    }
+    return ret;
+  }
+
+  /**
+   * @return int - the most entries the cache will hold
+   */
+  public int getMaximumSize() {
+    int ret = 0;
+    for (Segment segment : segments) {
+      ret += segment.capacity();
+    }
+    return ret;
+  }
+
+  /**
+   * @return long - the number of lookups that found an entry
+   */
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  /**
+   * @return long - the number of lookups that didn't find an entry
+   */
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  private Segment segmentFor(long hash) {
+    return segments[(segments.length == 1) ? 0 : (int) (hash >>> segmentShift)];
+  }
+
+  /**
+   * MurmurHash3's 64-bit finalizer: consecutive keys end up far apart.
+   */
+  static long hash(long key) {
+    long hash = key;
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+
+  /**
+   * One lock stripe: a linear-probing hash table of entry indexes, over
+   * parallel arrays of keys, values and LRU links.
+   */
+  private static final class Segment {
+
+    private static final int NONE = -1;
+
+    private final long[] keys;
+    private final long[][] values;
+    private final int[] previous;
+    private final int[] next;
+
+    /**
+     * Hash table slots hold an entry index plus one; zero means empty.
+     */
+    private final int[] slots;
+    private final int slotMask;
+
+    private int size;
+    private int head = NONE;
+    private int tail = NONE;
+
+    Segment(int capacity) {
+      keys = new long[capacity];
+      values = new long[capacity][];
+      previous = new int[capacity];
+      next = new int[capacity];
+      int slotCount = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+      slots = new int[slotCount];
+      slotMask = slotCount - 1;
+    }
+
+    synchronized long[] get(long key, long hash) {
+      int slot = find(key, hash);
+      if (slot == NONE) {
+        return null;
+      }
+      int entry = slots[slot] - 1;
+      moveToHead(entry);
+      return values[entry].clone();
+    }
+
+    synchronized void put(long key, long hash, long[] factors) {
+      int slot = find(key, hash);
+      int entry;
+      if (slot != NONE) {
+        entry = slots[slot] - 1;
+        unlink(entry);
+      } else {
+        if (size < keys.length) {
+          entry = size++;
+        } else {
+          // Full: recycle the least recently used entry
+          entry = tail;
+          unlink(entry);
+          removeSlot(find(keys[entry], hash(keys[entry])));
+        }
+        keys[entry] = key;
+        slot = (int) hash & slotMask;
+        while (slots[slot] != 0) {
+          slot = (slot + 1) & slotMask;
+        }
+        slots[slot] = entry + 1;
+      }
+      values[entry] = factors;
+      linkAtHead(entry);
+    }
+
+    synchronized void clear() {
+      Arrays.fill(slots, 0);
+      Arrays.fill(values, null);
+      size = 0;
+      head = NONE;
+      tail = NONE;
+    }
+
+    synchronized int size() {
+      return size;
+    }
+
+    int capacity() {
+      return keys.length;
+    }
+
+    private int find(long key, long hash) {
+      int slot = (int) hash & slotMask;
+      while (slots[slot] != 0) {
+        if (keys[slots[slot] - 1] == key) {
+          return slot;
+        }
+        slot = (slot + 1) & slotMask;
+      }
+      return NONE;
+    }
+
+    /**
+     * Empties a slot and shifts later members of its probe run back, so that
+     * lookups never need tombstones.
+     */
+    private void removeSlot(int slot) {
+      int hole = slot;
+      int current = (hole + 1) & slotMask;
+      while (slots[current] != 0) {
+        int home = (int) hash(keys[slots[current] - 1]) & slotMask;
+        // Move the entry into the hole unless its home lies between the hole and it
+        if (((current - home) & slotMask) >= ((current - hole) & slotMask)) {
+          slots[hole] = slots[current];
+          hole = current;
+        }
+        current = (current + 1) & slotMask;
+      }
+      slots[hole] = 0;
+    }
+
+    private void moveToHead(int entry) {
+      if (entry != head) {
+        unlink(entry);
+        linkAtHead(entry);
+      }
+    }
+
+    private void linkAtHead(int entry) {
+      previous[entry] = NONE;
+      next[entry] = head;
+      if (head != NONE) {
+        previous[head] = entry;
+      }
+      head = entry;
+      if (tail == NONE) {
+        tail = entry;
+      }
+    }
+
+    private void unlink(int entry) {
+      int before = previous[entry];
+      int after = next[entry];
+      if (before == NONE) {
+        head = after;
+      } else {
+        next[before] = after;
+      }
+      if (after == NONE) {
+        tail = before;
+      } else {
+        previous[after] = before;
+      }
+    }
+
+  }
+
+}
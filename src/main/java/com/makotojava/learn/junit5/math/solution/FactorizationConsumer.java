@@ -0,0 +1,48 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+/**
+ * Receives prime factorizations without any boxing.
+ *
+ * The arrays passed in are reused buffers owned by the caller: they are only
+ * valid for the duration of the call, and must be copied if they are needed
+ * afterwards.
+ *
+ * @author J Steven Perry
+ *
+ */
+@FunctionalInterface
+public interface FactorizationConsumer {
+
+  /**
+   * Accepts the prime factorization of one number.
+   *
+   * @param number
+   *          The number that was factored
+   * @param primes
+   *          Its distinct prime factors, ascending, starting at primesOffset
+   * @param exponents
+   *          The exponent of each prime factor, starting at primesOffset
+   * @param primesOffset
+   *          Where this number's primes start in the arrays
+   * @param count
+   *          The number of distinct prime factors
+   */
+  void accept(long number, long[] primes, int[] exponents, int primesOffset, int count);
+
+}
@@ -0,0 +1,377 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Call counts, latency histograms and algorithm mix for computeFactors, once
+ * installed with {@link YetAnotherUtility#setFactorizationMetrics}.
+ *
+ * Everything is recorded into {@link LongAdder}s, which stripe their counts
+ * across cells under contention, so recording from many threads never
+ * serializes on a shared counter. Reading is the expensive side: a
+ * {@link #snapshot()} sums every cell.
+ *
+ * Latencies go into one log-linear histogram per bit length of the input, in
+ * the style of HdrHistogram: each power of two of nanoseconds is split into
+ * {@link #SUB_BUCKETS} buckets, so any recorded value is known to within 25%
+ * with a fixed, small number of buckets. A histogram is only created the first
+ * time an input of its bit length is recorded.
+ *
+ * @author J Steven Perry
+ *
+ */
+public final class FactorizationMetrics {
+
+  /**
+   * The route a computeFactors call took.
+   */
+  public enum Algorithm {
+    /** Answered from the {@link FactorizationCache} */
+    CACHE,
+    /** Factored with the {@link SmallestPrimeFactorTable} */
+    SMALLEST_PRIME_FACTOR_TABLE,
+    /** Small enough for plain trial division */
+    TRIAL_DIVISION,
+    /** Factored by {@link PrimeFactorizer}: trial division, Pollard's rho */
+    PRIME_FACTORIZER
+  }
+
+  /**
+   * Inputs are non-negative longs, so bit lengths run from 0 (for zero) to 63.
+   */
+  public static final int BIT_LENGTHS = Long.SIZE;
+
+  /**
+   * Buckets per power of two of nanoseconds.
+   */
+  static final int SUB_BUCKETS = 4;
+
+  private static final int SUB_BUCKET_BITS = 2;
+
+  private static final int BUCKET_COUNT = Long.SIZE * SUB_BUCKETS;
+
+  private final LongAdder callCount = new LongAdder();
+
+  private final LongAdder[] algorithmCounts = new LongAdder[Algorithm.values().length];
+
+  private final LongAdder cacheHits = new LongAdder();
+
+  private final LongAdder cacheMisses = new LongAdder();
+
+  private final AtomicReferenceArray<LatencyHistogram> latencies = new AtomicReferenceArray<>(BIT_LENGTHS);
+
+  public FactorizationMetrics() {
+    for (int aa = 0; aa < algorithmCounts.length; aa++) {
+      algorithmCounts[aa] = new LongAdder();
+    }
+  }
+
+  /**
+   * Records one call.
+   *
+   * @param compoundInteger
+   *          The input, which must not be negative
+   * @param algorithm
+   *          The route the call took
+   * @param nanos
+   *          How long it took
+   */
+  void record(long compoundInteger, Algorithm algorithm, long nanos) {
+    callCount.increment();
+    algorithmCounts[algorithm.ordinal()].increment();
+    int bitLength = Long.SIZE - Long.numberOfLeadingZeros(compoundInteger);
+    LatencyHistogram histogram = latencies.get(bitLength);
+    if (histogram == null) {
+      // A reset can clear the slot again at any time, so never read it back
+      // expecting the one just put there
+      LatencyHistogram created = new LatencyHistogram();
+      histogram = latencies.compareAndExchange(bitLength, null, created);
+      if (histogram == null) {
+        histogram = created;
+      }
+    }
+    histogram.record(Math.max(0, nanos));
+  }
+
+  /**
+   * Records one cache lookup.
+   */
+  void recordCacheLookup(boolean hit) {
+    (hit ? cacheHits : cacheMisses).increment();
+  }
+
+  /**
+   * Takes a consistent-enough copy of every figure. Calls that are being
+   * recorded while the snapshot is taken may be partly included.
+   *
+   * @return Snapshot - the figures as of now
+   */
+  public Snapshot snapshot() {
+    long[] algorithms = new long[algorithmCounts.length];
+    for (int aa = 0; aa < algorithms.length; aa++) {
+      algorithms[aa] = algorithmCounts[aa].sum();
+    }
+    HistogramSnapshot[] histograms = new HistogramSnapshot[BIT_LENGTHS];
+    for (int aa = 0; aa < BIT_LENGTHS; aa++) {
+      LatencyHistogram histogram = latencies.get(aa);
+      histograms[aa] = (histogram == null) ? HistogramSnapshot.EMPTY : histogram.snapshot();
+    }
+    return new Snapshot(callCount.sum(), algorithms, cacheHits.sum(), cacheMisses.sum(), histograms);
+  }
+
+  /**
+   * Sets every figure back to zero.
+   */
+  public void reset() {
+    callCount.reset();
+    for (LongAdder count : algorithmCounts) {
+      count.reset();
+    }
+    cacheHits.reset();
+    cacheMisses.reset();
+    for (int aa = 0; aa < BIT_LENGTHS; aa++) {
+      latencies.set(aa, null);
+    }
+  }
+
+  /**
+   * Maps a latency to its bucket. Values below SUB_BUCKETS get a bucket each;
+   * after that each power of two is split into SUB_BUCKETS equal parts.
+   */
+  static int bucketIndex(long nanos) {
+    if (nanos < SUB_BUCKETS) {
+      return (int) nanos;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+    int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  /**
+   * The largest latency that maps to the bucket.
+   */
+  static long bucketHighestValue(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = index / SUB_BUCKETS - 1;
+    long next = (long) (SUB_BUCKETS + index % SUB_BUCKETS + 1) << shift;
+    return (next <= 0) ? Long.MAX_VALUE : next - 1;
+  }
+
+  /**
+   * One histogram's worth of striped counters.
+   */
+  private static final class LatencyHistogram {
+
+    private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    LatencyHistogram() {
+      for (int aa = 0; aa < buckets.length; aa++) {
+        buckets[aa] = new LongAdder();
+      }
+    }
+
+    void record(long nanos) {
+      buckets[bucketIndex(nanos)].increment();
+      totalNanos.add(nanos);
+      maxNanos.accumulate(nanos);
+    }
+
+    HistogramSnapshot snapshot() {
+      long[] counts = new long[buckets.length];
+      long count = 0;
+      for (int aa = 0; aa < buckets.length; aa++) {
+        counts[aa] = buckets[aa].sum();
+        count += counts[aa];
+      }
+      return new HistogramSnapshot(counts, count, totalNanos.sum(), maxNanos.get());
+    }
+
+  }
+
+  /**
+   * Every figure, as of one {@link #snapshot()}.
+   */
+  public static final class Snapshot {
+
+    private final long callCount;
+    private final long[] algorithmCounts;
+    private final long cacheHits;
+    private final long cacheMisses;
+    private final HistogramSnapshot[] histograms;
+
+    Snapshot(long callCount, long[] algorithmCounts, long cacheHits, long cacheMisses,
+        HistogramSnapshot[] histograms) {
+      this.callCount = callCount;
+      this.algorithmCounts = algorithmCounts;
+      this.cacheHits = cacheHits;
+      this.cacheMisses = cacheMisses;
+      this.histograms = histograms;
+    }
+
+    /**
+     * @return long - the number of calls recorded
+     */
+    public long getCallCount() {
+      return callCount;
+    }
+
+    /**
+     * @return long - the number of calls that took the specified route
+     */
+    public long getCallCount(Algorithm algorithm) {
+      return algorithmCounts[algorithm.ordinal()];
+    }
+
+    public long getCacheHitCount() {
+      return cacheHits;
+    }
+
+    public long getCacheMissCount() {
+      return cacheMisses;
+    }
+
+    /**
+     * @return double - hits as a fraction of all cache lookups, or NaN if
+     *         there were none (no cache installed, say)
+     */
+    public double getCacheHitRate() {
+      long lookups = cacheHits + cacheMisses;
+      return (lookups == 0) ? Double.NaN : (double) cacheHits / lookups;
+    }
+
+    /**
+     * @param bitLength
+     *          The bit length of the inputs, from 0 (zero) to 63
+     *
+     * @return HistogramSnapshot - the latencies of calls with inputs of that
+     *         bit length
+     *
+     * @throws IllegalArgumentException
+     *           if the bit length is out of range
+     */
+    public HistogramSnapshot getLatencyHistogram(int bitLength) {
+      if (bitLength < 0 || bitLength >= BIT_LENGTHS) {
+        throw new IllegalArgumentException("Bit length must be from 0 to " + (BIT_LENGTHS - 1) + "!");
+      }
+      return histograms[bitLength];
+    }
+
+    /**
+     * @return HistogramSnapshot - the latencies of every call, whatever the
+     *         size of its input
+     */
+    public HistogramSnapshot getLatencyHistogram() {
+      long[] counts = new long[BUCKET_COUNT];
+      long count = 0;
+      long totalNanos = 0;
+      long maxNanos = 0;
+      for (HistogramSnapshot histogram : histograms) {
+        for (int aa = 0; aa < BUCKET_COUNT; aa++) {
+          counts[aa] += histogram.counts[aa];
+        }
+        count += histogram.count;
+        totalNanos += histogram.totalNanos;
+        maxNanos = Math.max(maxNanos, histogram.maxNanos);
+      }
+      return new HistogramSnapshot(counts, count, totalNanos, maxNanos);
+    }
+
+  }
+
+  /**
+   * The latencies of one group of calls, as of one {@link #snapshot()}.
+   */
+  public static final class HistogramSnapshot {
+
+    static final HistogramSnapshot EMPTY = new HistogramSnapshot(new long[BUCKET_COUNT], 0, 0, 0);
+
+    private final long[] counts;
+    private final long count;
+    private final long totalNanos;
+    private final long maxNanos;
+
+    HistogramSnapshot(long[] counts, long count, long totalNanos, long maxNanos) {
+      this.counts = counts;
+      this.count = count;
+      this.totalNanos = totalNanos;
+      this.maxNanos = maxNanos;
+    }
+
+    /**
+     * @return long - the number of calls
+     */
+    public long getCount() {
+      return count;
+    }
+
+    /**
+     * @return double - the mean latency in nanoseconds, or NaN if there were
+     *         no calls
+     */
+    public double getMeanNanos() {
+      return (count == 0) ? Double.NaN : (double) totalNanos / count;
+    }
+
+    /**
+     * @return long - the highest latency recorded, exactly
+     */
+    public long getMaxNanos() {
+      return maxNanos;
+    }
+
+    /**
+     * Finds the latency that the specified percentage of calls came in at or
+     * under, to within the precision of the buckets (reported, like
+     * HdrHistogram, as the highest value in the bucket).
+     *
+     * @param percentile
+     *          From 0 to 100
+     *
+     * @return long - the latency in nanoseconds, or 0 if there were no calls
+     *
+     * @throws IllegalArgumentException
+     *           if the percentile is out of range
+     */
+    public long getValueAtPercentile(double percentile) {
+      if (!(percentile >= 0 && percentile <= 100)) {
+        throw new IllegalArgumentException("Percentile must be from 0 to 100!");
+      }
+      if (count == 0) {
+        return 0;
+      }
+      long target = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+      long seen = 0;
+      for (int aa = 0; aa < counts.length; aa++) {
+        seen += counts[aa];
+        if (seen >= target) {
+          return Math.min(bucketHighestValue(aa), maxNanos);
+        }
+      }
+      return maxNanos;
+    }
+
+  }
+
+}
@@ -0,0 +1,428 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Factors every number in a stream and writes out the factors, in input
+ * order, one line per number:
+ *
+ * <pre>
+ * 12: 1 2 3 4 6 12
+ * </pre>
+ *
+ * (A zero gets an empty list.) The work is split into three stages, each on
+ * its own threads, connected by bounded queues of batches:
+ *
+ * <ol>
+ * <li>a reader, which parses numbers straight out of the input channel's
+ * bytes with {@link NumberParser},</li>
+ * <li>a pool of workers, which factor each batch with
+ * {@link YetAnotherUtility#computeFactors(long, FactorBuffer)} and format the
+ * lines into the batch's own byte array,</li>
+ * <li>a writer, which puts the batches back in order and copies them into one
+ * large buffer, so the output channel sees few, big writes.</li>
+ * </ol>
+ *
+ * Batches are recycled once written, and there are only so many of them, so
+ * memory use is bounded however big the input is, and a slow worker holds the
+ * reader back instead of letting finished batches pile up behind it. When the
+ * run is over, {@link PipelineStats} says where the time went.
+ *
+ * @author J Steven Perry
+ *
+ */
+public final class FactorizationPipeline {
+
+  public static final int DEFAULT_BATCH_SIZE = 4096;
+
+  public static final int DEFAULT_QUEUE_CAPACITY = 16;
+
+  static final int READ_BUFFER_SIZE = 1 << 16;
+
+  static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+  /**
+   * Room a line needs per number on it: up to 19 digits and a separator.
+   */
+  private static final int BYTES_PER_NUMBER = 20;
+
+  private final int workers;
+
+  private final int queueCapacity;
+
+  private final int batchSize;
+
+  private final int readBufferSize;
+
+  /**
+   * @param workers
+   *          The number of threads factoring. Must be positive.
+   * @param queueCapacity
+   *          The number of batches each queue can hold. Must be positive.
+   * @param batchSize
+   *          The number of numbers handed from stage to stage at a time. Must
+   *          be positive.
+   *
+   * @throws IllegalArgumentException
+   *           if any of them is not positive
+   */
+  public FactorizationPipeline(int workers, int queueCapacity, int batchSize) {
+    this(workers, queueCapacity, batchSize, READ_BUFFER_SIZE);
+  }
+
+  FactorizationPipeline(int workers, int queueCapacity, int batchSize, int readBufferSize) {
+    if (workers <= 0) {
+      throw new IllegalArgumentException("Worker count must be positive!");
+    }
+    if (queueCapacity <= 0) {
+      throw new IllegalArgumentException("Queue capacity must be positive!");
+    }
+    if (batchSize <= 0) {
+      throw new IllegalArgumentException("Batch size must be positive!");
+    }
+    this.workers = workers;
+    this.queueCapacity = queueCapacity;
+    this.batchSize = batchSize;
+    this.readBufferSize = readBufferSize;
+  }
+
+  /**
+   * Factors every number in the input and writes the results to the output.
+   * Returns once everything has been written; neither channel is closed.
+   *
+   * @param input
+   *          Whitespace or comma separated decimal numbers
+   * @param output
+   *          Receives one line per number, in input order
+   *
+   * @return PipelineStats - what each stage did
+   *
+   * @throws IOException
+   *           if reading or writing fails, or the input is malformed. The
+   *           other stages are interrupted, which closes the channels if they
+   *           are interruptible, and the output may have been partly written.
+   */
+  public PipelineStats run(ReadableByteChannel input, WritableByteChannel output) throws IOException {
+    return new Run(input, output).execute();
+  }
+
+  /**
+   * A batch of numbers on its way through, and later the lines for them.
+   */
+  private static final class Batch {
+
+    final long[] values;
+
+    int count;
+
+    long sequence;
+
+    byte[] output;
+
+    int outputLength;
+
+    Batch(int size) {
+      values = new long[size];
+      output = new byte[size * 2 * BYTES_PER_NUMBER];
+    }
+
+  }
+
+  /**
+   * Tells a worker, or the writer, that no more batches are coming.
+   */
+  private static final Batch END = new Batch(0);
+
+  /**
+   * A body for a stage thread.
+   */
+  @FunctionalInterface
+  private interface Stage {
+    void run() throws Exception;
+  }
+
+  /**
+   * Samples the depth of a queue each time a batch is put on it.
+   */
+  private static final class DepthGauge {
+
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    private final LongAdder sum = new LongAdder();
+
+    private final LongAdder samples = new LongAdder();
+
+    void sample(int depth) {
+      max.accumulate(depth);
+      sum.add(depth);
+      samples.increment();
+    }
+
+    int max() {
+      return (int) max.get();
+    }
+
+    double mean() {
+      long count = samples.sum();
+      return (count == 0) ? 0 : (double) sum.sum() / count;
+    }
+
+  }
+
+  /**
+   * The state of one call to run.
+   */
+  private final class Run {
+
+    private final ReadableByteChannel input;
+
+    private final WritableByteChannel output;
+
+    /**
+     * Every batch that can exist at once: a full queue on each side of the
+     * workers, one per worker, one being read into and one being written.
+     */
+    private final int poolSize = 2 * queueCapacity + workers + 2;
+
+    private final BlockingQueue<Batch> freeBatches = new ArrayBlockingQueue<>(poolSize);
+
+    private int batchesCreated;
+
+    private final BlockingQueue<Batch> inputQueue = new ArrayBlockingQueue<>(queueCapacity);
+
+    private final BlockingQueue<Batch> outputQueue = new ArrayBlockingQueue<>(queueCapacity);
+
+    private final DepthGauge inputDepth = new DepthGauge();
+
+    private final DepthGauge outputDepth = new DepthGauge();
+
+    private final LongAdder factorNanos = new LongAdder();
+
+    private final PipelineStats stats = new PipelineStats();
+
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    private final List<Thread> threads = new ArrayList<>();
+
+    Run(ReadableByteChannel input, WritableByteChannel output) {
+      this.input = input;
+      this.output = output;
+    }
+
+    PipelineStats execute() throws IOException {
+      long start = System.nanoTime();
+      threads.add(newThread("factorization-pipeline-reader", this::read));
+      for (int aa = 1; aa <= workers; aa++) {
+        threads.add(newThread("factorization-pipeline-worker-" + aa, this::factor));
+      }
+      threads.add(newThread("factorization-pipeline-writer", this::write));
+      for (Thread thread : threads) {
+        thread.start();
+      }
+      try {
+        for (Thread thread : threads) {
+          thread.join();
+        }
+      } catch (InterruptedException e) {
+        stop();
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while factoring");
+      }
+      Throwable cause = failure.get();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      } else if (cause != null) {
+        throw new IOException(cause);
+      }
+      stats.elapsedNanos = System.nanoTime() - start;
+      stats.factorNanos = factorNanos.sum();
+      stats.workers = workers;
+      stats.queueCapacity = queueCapacity;
+      stats.inputQueueMaxDepth = inputDepth.max();
+      stats.inputQueueMeanDepth = inputDepth.mean();
+      stats.outputQueueMaxDepth = outputDepth.max();
+      stats.outputQueueMeanDepth = outputDepth.mean();
+      return stats;
+    }
+
+    /**
+     * The first stage to fail records why and stops the others, wherever
+     * they are blocked.
+     */
+    private Thread newThread(String name, Stage stage) {
+      Thread ret = new Thread(() -> {
+        try {
+          stage.run();
+        } catch (Throwable t) {
+          if (failure.compareAndSet(null, t)) {
+            stop();
+          }
+        }
+      }, name);
+      ret.setDaemon(true);
+      return ret;
+    }
+
+    private void stop() {
+      for (Thread thread : threads) {
+        thread.interrupt();
+      }
+    }
+
+    private void read() throws IOException, InterruptedException {
+      NumberParser parser = new NumberParser(input, readBufferSize);
+      long readNanos = 0;
+      for (long sequence = 0;; sequence++) {
+        Batch batch = freeBatches.poll();
+        if (batch == null && batchesCreated < poolSize) {
+          batch = new Batch(batchSize);
+          batchesCreated++;
+        } else if (batch == null) {
+          batch = freeBatches.take();
+        }
+        long start = System.nanoTime();
+        int count = parser.read(batch.values);
+        readNanos += System.nanoTime() - start;
+        if (count < 0) {
+          break;
+        }
+        batch.count = count;
+        batch.sequence = sequence;
+        inputQueue.put(batch);
+        inputDepth.sample(inputQueue.size());
+      }
+      for (int aa = 0; aa < workers; aa++) {
+        inputQueue.put(END);
+      }
+      stats.readNanos = readNanos;
+      stats.bytesRead = parser.getBytesRead();
+    }
+
+    private void factor() throws InterruptedException {
+      FactorBuffer factors = new FactorBuffer();
+      for (Batch batch = inputQueue.take(); batch != END; batch = inputQueue.take()) {
+        long start = System.nanoTime();
+        int length = 0;
+        for (int aa = 0; aa < batch.count; aa++) {
+          long number = batch.values[aa];
+          int size = YetAnotherUtility.computeFactors(number, factors);
+          int needed = length + (size + 1) * BYTES_PER_NUMBER + 2;
+          if (needed > batch.output.length) {
+            batch.output = Arrays.copyOf(batch.output, Math.max(needed, batch.output.length * 2));
+          }
+          byte[] line = batch.output;
+          length = putLong(line, length, number);
+          line[length++] = ':';
+          long[] values = factors.getFactors();
+          for (int bb = 0; bb < size; bb++) {
+            line[length++] = ' ';
+            length = putLong(line, length, values[bb]);
+          }
+          line[length++] = '\n';
+        }
+        batch.outputLength = length;
+        factorNanos.add(System.nanoTime() - start);
+        outputQueue.put(batch);
+        outputDepth.sample(outputQueue.size());
+      }
+      outputQueue.put(END);
+    }
+
+    private void write() throws IOException, InterruptedException {
+      ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+      Batch[] pending = new Batch[poolSize];
+      long next = 0;
+      long numbers = 0;
+      long writeNanos = 0;
+      for (int ends = 0; ends < workers;) {
+        Batch batch = outputQueue.take();
+        if (batch == END) {
+          ends++;
+          continue;
+        }
+        // Everything in flight is within poolSize of next, so slots never clash
+        pending[(int) (batch.sequence % poolSize)] = batch;
+        long start = System.nanoTime();
+        for (Batch ready = batch; ready != null && ready.sequence == next; ready = pending[(int) (next % poolSize)]) {
+          pending[(int) (next % poolSize)] = null;
+          for (int offset = 0; offset < ready.outputLength;) {
+            if (!buffer.hasRemaining()) {
+              drain(buffer);
+            }
+            int length = Math.min(buffer.remaining(), ready.outputLength - offset);
+            buffer.put(ready.output, offset, length);
+            offset += length;
+          }
+          numbers += ready.count;
+          next++;
+          freeBatches.add(ready);
+        }
+        writeNanos += System.nanoTime() - start;
+      }
+      long start = System.nanoTime();
+      drain(buffer);
+      stats.writeNanos = writeNanos + System.nanoTime() - start;
+      stats.numbers = numbers;
+    }
+
+    private void drain(ByteBuffer buffer) throws IOException {
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+        stats.bytesWritten += output.write(buffer);
+      }
+      buffer.clear();
+    }
+
+  }
+
+  /**
+   * Writes a non-negative number in decimal, without going through a String.
+   *
+   * @return int - the offset just past the last digit
+   */
+  static int putLong(byte[] target, int offset, long value) {
+    int digits = 1;
+    for (long power = 10; digits < 19 && value >= power; power *= 10) {
+      digits++;
+    }
+    int ret = offset + digits;
+    for (int position = ret - 1; position >= offset; position--) {
+      target[position] = (byte) ('0' + value % 10);
+      value /= 10;
+    }
+    return ret;
+  }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.SortedMap;
+
+/**
+ * The outcome of a factorization that may have been stopped early by a
+ * {@link CancellationToken}.
+ *
+ * The compound integer is always the product of the prime factors found and
+ * the cofactor. A complete result has a cofactor of 1. A partial one has the
+ * part that was still being worked on when the token was cancelled. The
+ * cofactor has no prime factor below 2^16 unless the token was cancelled
+ * during trial division. It may itself be prime; that just has not been
+ * checked yet.
+ *
+ * @author J Steven Perry
+ *
+ */
+public final class FactorizationResult {
+
+  private final BigInteger compoundInteger;
+  private final SortedMap<BigInteger, Integer> primeFactors;
+  private final BigInteger cofactor;
+
+  FactorizationResult(BigInteger compoundInteger, SortedMap<BigInteger, Integer> primeFactors, BigInteger cofactor) {
+    this.compoundInteger = compoundInteger;
+    this.primeFactors = Collections.unmodifiableSortedMap(primeFactors);
+    this.cofactor = cofactor;
+  }
+
+  /**
+   * @return BigInteger - the number that was factored
+   */
+  public BigInteger getCompoundInteger() {
+    return compoundInteger;
+  }
+
+  /**
+   * @return boolean - true if the factorization finished, so the cofactor is
+   *         1
+   */
+  public boolean isComplete() {
+    return cofactor.equals(BigInteger.ONE);
+  }
+
+  /**
+   * @return SortedMap&lt;BigInteger, Integer&gt; - each prime factor found,
+   *         ascending, mapped to its exponent. Unmodifiable.
+   */
+  public SortedMap<BigInteger, Integer> getPrimeFactors() {
+    return primeFactors;
+  }
+
+  /**
+   * @return BigInteger - the part of the compound integer that is not
+   *         factored yet. 1 if the result is complete.
+   */
+  public BigInteger getCofactor() {
+    return cofactor;
+  }
+
+  /**
+   * Builds every factor made up of the prime factors found. For a complete
+   * result, that is every factor of the compound integer. For a partial
+   * one, it is every factor of the compound integer divided by the cofactor.
+   *
+   * @return BigInteger[] - the factors, in ascending order
+   */
+  public BigInteger[] getFactors() {
+    return BigIntegerFactorizer.divisors(primeFactors);
+  }
+
+}
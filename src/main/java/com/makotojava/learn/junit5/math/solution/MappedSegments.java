@@ -0,0 +1,86 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A region of a file, memory-mapped in 1 GiB segments so it can be bigger than
+ * the 2 GiB one mapping is limited to, and addressed with long offsets.
+ * Values are little-endian.
+ *
+ * Longs must be at offsets that are a multiple of 8, so none of them straddles
+ * two segments. The mapping stays valid after the channel is closed.
+ *
+ * @author J Steven Perry
+ *
+ */
+final class MappedSegments {
+
+  private static final int SEGMENT_SHIFT = 30;
+
+  private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+
+  private static final int SEGMENT_MASK = (int) SEGMENT_SIZE - 1;
+
+  private final MappedByteBuffer[] segments;
+
+  private final long size;
+
+  /**
+   * Maps size bytes of the channel's file, starting at position. Mapping
+   * read-write past the end of the file extends it.
+   */
+  MappedSegments(FileChannel channel, FileChannel.MapMode mode, long position, long size) throws IOException {
+    this.size = size;
+    segments = new MappedByteBuffer[(int) ((size + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT)];
+    for (int aa = 0; aa < segments.length; aa++) {
+      long start = (long) aa << SEGMENT_SHIFT;
+      segments[aa] = channel.map(mode, position + start, Math.min(SEGMENT_SIZE, size - start));
+      segments[aa].order(ByteOrder.LITTLE_ENDIAN);
+    }
+  }
+
+  long size() {
+    return size;
+  }
+
+  byte get(long offset) {
+    return segments[(int) (offset >>> SEGMENT_SHIFT)].get((int) offset & SEGMENT_MASK);
+  }
+
+  long getLong(long offset) {
+    return segments[(int) (offset >>> SEGMENT_SHIFT)].getLong((int) offset & SEGMENT_MASK);
+  }
+
+  void putLong(long offset, long value) {
+    segments[(int) (offset >>> SEGMENT_SHIFT)].putLong((int) offset & SEGMENT_MASK, value);
+  }
+
+  /**
+   * Writes any changes made through a read-write mapping out to the file.
+   */
+  void force() {
+    for (MappedByteBuffer segment : segments) {
+      segment.force();
+    }
+  }
+
+}
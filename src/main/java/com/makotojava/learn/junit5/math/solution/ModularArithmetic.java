@@ -0,0 +1,160 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+/**
+ * Overflow-safe modular arithmetic over positive <code>long</code> moduli.
+ *
+ * All operands are expected to already be reduced, that is
+ * <code>0 &lt;= a, b &lt; modulus</code>.
+ *
+ * @author J Steven Perry
+ *
+ */
+final class ModularArithmetic {
+
+  /**
+   * The lower 32-bit digit of a long.
+   */
+  private static final long LOW_DIGIT_MASK = 0xFFFFFFFFL;
+
+  private ModularArithmetic() {
+    // Static methods only
+  }
+
+  /**
+   * Computes (a + b) mod modulus without overflowing.
+   */
+  static long addMod(long a, long b, long modulus) {
+    return (a >= modulus - b) ? a - (modulus - b) : a + b;
+  }
+
+  /**
+   * Computes (a - b) mod modulus.
+   */
+  static long subMod(long a, long b, long modulus) {
+    return (a >= b) ? a - b : a + (modulus - b);
+  }
+
+  /**
+   * Computes (a * b) mod modulus without overflowing.
+   *
+   * Small operands take the direct route. Otherwise the full 128-bit product
+   * comes from {@link Math#multiplyHigh(long, long)} and is reduced by
+   * {@link #remainder(long, long, long)}.
+   */
+  static long mulMod(long a, long b, long modulus) {
+    if (((a | b) >>> 31) == 0) {
+      // Both operands fit in 31 bits, so the product fits in 62
+      return (a * b) % modulus;
+    }
+    if ((modulus >>> 32) == 0) {
+      // Both operands fit in 32 bits, so the product fits in 64 (unsigned)
+      return Long.remainderUnsigned(a * b, modulus);
+    }
+    // Both operands are below 2^63, so the signed high word is the unsigned one
+    return remainder(Math.multiplyHigh(a, b), a * b, modulus);
+  }
+
+  /**
+   * Computes the 128-bit value (high:low) mod modulus, for high &lt; modulus,
+   * by long division in 32-bit digits (Knuth's algorithm D, as laid out in
+   * Hacker's Delight "divlu").
+   *
+   * @param high
+   *          The upper 64 bits. Must be less than the modulus.
+   * @param low
+   *          The lower 64 bits, unsigned
+   * @param modulus
+   *          The modulus, positive
+   */
+  static long remainder(long high, long low, long modulus) {
+    //
+    // Normalize so the divisor's top bit is set, which keeps each estimated
+    // quotient digit at most two too big
+    int shift = Long.numberOfLeadingZeros(modulus);
+    long divisor = modulus << shift;
+    long numeratorHigh = (shift == 0) ? high : (high << shift) | (low >>> (64 - shift));
+    long numeratorLow = low << shift;
+    long divisorHigh = divisor >>> 32;
+    long divisorLow = divisor & LOW_DIGIT_MASK;
+    long partial = remainderStep(numeratorHigh, numeratorLow >>> 32, divisor, divisorHigh, divisorLow);
+    return remainderStep(partial, numeratorLow & LOW_DIGIT_MASK, divisor, divisorHigh, divisorLow) >>> shift;
+  }
+
+  /**
+   * One digit of the long division: (dividend * 2^32 + digit) mod divisor,
+   * for a dividend already less than the divisor.
+   */
+  private static long remainderStep(long dividend, long digit, long divisor, long divisorHigh, long divisorLow) {
+    long quotient = Long.divideUnsigned(dividend, divisorHigh);
+    long remainder = dividend - quotient * divisorHigh;
+    while (quotient > LOW_DIGIT_MASK
+        || Long.compareUnsigned(quotient * divisorLow, (remainder << 32) | digit) > 0) {
+      quotient--;
+      remainder += divisorHigh;
+      if (remainder > LOW_DIGIT_MASK) {
+        break;
+      }
+    }
+    return ((dividend << 32) | digit) - quotient * divisor;
+  }
+
+  /**
+   * Computes (base ^ exponent) mod modulus by square-and-multiply.
+   */
+  static long powMod(long base, long exponent, long modulus) {
+    long result = 1 % modulus;
+    long square = base;
+    long remaining = exponent;
+    while (remaining != 0) {
+      if ((remaining & 1) != 0) {
+        result = mulMod(result, square, modulus);
+      }
+      remaining >>>= 1;
+      if (remaining != 0) {
+        square = mulMod(square, square, modulus);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Binary (Stein's) greatest common divisor of two non-negative longs.
+   */
+  static long gcd(long a, long b) {
+    if (a == 0) {
+      return b;
+    }
+    if (b == 0) {
+      return a;
+    }
+    int shift = Long.numberOfTrailingZeros(a | b);
+    a >>>= Long.numberOfTrailingZeros(a);
+    while (b != 0) {
+      b >>>= Long.numberOfTrailingZeros(b);
+      if (a > b) {
+        long temp = a;
+        a = b;
+        b = temp;
+      }
+      b -= a;
+    }
+    return a << shift;
+  }
+
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+/**
+ * Montgomery multiplication modulo one odd <code>long</code> modulus.
+ *
+ * https://en.wikipedia.org/wiki/Montgomery_modular_multiplication
+ *
+ * A value a is kept in Montgomery form as aR mod n, with R = 2^64. Multiplying
+ * two values in that form then only takes three 64-bit multiplies (two of them
+ * high halves, via {@link Math#multiplyHigh(long, long)}) and a conditional
+ * add, with no division at all. That is what makes it worth the one-off cost
+ * of converting in and out when a single modulus is used over and over, as in
+ * Miller-Rabin and Pollard's rho.
+ *
+ * Instances are immutable and allocation-free to use. Hot loops that cannot
+ * afford even the one instance per modulus use the static versions of the same
+ * operations instead, keeping the modulus and its inverse in local variables.
+ *
+ * @author J Steven Perry
+ *
+ */
+final class MontgomeryArithmetic {
+
+  private final long modulus;
+
+  /**
+   * n^-1 mod 2^64.
+   */
+  private final long inverse;
+
+  /**
+   * R mod n: 1 in Montgomery form.
+   */
+  private final long one;
+
+  /**
+   * R^2 mod n, for converting into Montgomery form.
+   */
+  private final long rSquared;
+
+  /**
+   * @param modulus
+   *          The modulus. Must be odd, and greater than 1.
+   *
+   * @throws IllegalArgumentException
+   *           if the modulus is even or less than 3
+   */
+  MontgomeryArithmetic(long modulus) {
+    if (modulus < 3 || (modulus & 1) == 0) {
+      throw new IllegalArgumentException("Montgomery modulus must be odd and greater than 1!");
+    }
+    this.modulus = modulus;
+    this.inverse = inverse(modulus);
+    this.one = one(modulus);
+    this.rSquared = ModularArithmetic.mulMod(one, one, modulus);
+  }
+
+  /**
+   * Computes n^-1 mod 2^64 for an odd modulus n.
+   *
+   * Newton's iteration doubles the number of correct low bits each time, and
+   * n is its own inverse mod 8, so five rounds get all 64.
+   */
+  static long inverse(long modulus) {
+    long ret = modulus;
+    for (int aa = 0; aa < 5; aa++) {
+      ret *= 2 - modulus * ret;
+    }
+    return ret;
+  }
+
+  /**
+   * Computes R mod n: 1 in Montgomery form.
+   */
+  static long one(long modulus) {
+    return Long.remainderUnsigned(-modulus, modulus);
+  }
+
+  long getModulus() {
+    return modulus;
+  }
+
+  /**
+   * @return long - 1 in Montgomery form
+   */
+  long one() {
+    return one;
+  }
+
+  /**
+   * Converts a reduced value into Montgomery form.
+   */
+  long toMontgomery(long value) {
+    return multiply(value, rSquared);
+  }
+
+  /**
+   * Converts a value in Montgomery form back into an ordinary residue.
+   */
+  long fromMontgomery(long value) {
+    return reduce(0, value, modulus, inverse);
+  }
+
+  /**
+   * Multiplies two values in Montgomery form: a * b * R^-1 mod n.
+   */
+  long multiply(long a, long b) {
+    return multiply(a, b, modulus, inverse);
+  }
+
+  long square(long a) {
+    return multiply(a, a);
+  }
+
+  long add(long a, long b) {
+    return ModularArithmetic.addMod(a, b, modulus);
+  }
+
+  long subtract(long a, long b) {
+    return ModularArithmetic.subMod(a, b, modulus);
+  }
+
+  /**
+   * Raises a value in Montgomery form to an ordinary exponent.
+   */
+  long pow(long base, long exponent) {
+    return pow(base, exponent, one, modulus, inverse);
+  }
+
+  /**
+   * Static version of {@link #multiply(long, long)}.
+   *
+   * @param inverse
+   *          n^-1 mod 2^64, from {@link #inverse(long)}
+   */
+  static long multiply(long a, long b, long modulus, long inverse) {
+    return reduce(Math.multiplyHigh(a, b), a * b, modulus, inverse);
+  }
+
+  /**
+   * Static version of {@link #pow(long, long)}, by square-and-multiply.
+   *
+   * @param one
+   *          R mod n, from {@link #one(long)}
+   * @param inverse
+   *          n^-1 mod 2^64, from {@link #inverse(long)}
+   */
+  static long pow(long base, long exponent, long one, long modulus, long inverse) {
+    long result = one;
+    long square = base;
+    long remaining = exponent;
+    while (remaining != 0) {
+      if ((remaining & 1) != 0) {
+        result = multiply(result, square, modulus, inverse);
+      }
+      remaining >>>= 1;
+      if (remaining != 0) {
+        square = multiply(square, square, modulus, inverse);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Montgomery reduction (REDC) of the 128-bit value (high:low), for values
+   * below n * R: (high:low) * R^-1 mod n.
+   *
+   * m = low * n^-1 makes m * n agree with the value in its low 64 bits, so
+   * the difference of the high halves is exactly the value divided by R.
+   */
+  private static long reduce(long high, long low, long modulus, long inverse) {
+    long m = low * inverse;
+    // m is unsigned, so correct the signed high product when its top bit is set
+    long mnHigh = Math.multiplyHigh(m, modulus) + ((m >> 63) & modulus);
+    long ret = high - mnHigh;
+    return (ret < 0) ? ret + modulus : ret;
+  }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary input for bulk factorization: a file of 8-byte little-endian longs
+ * and nothing else, memory-mapped, so numbers are read straight out of the
+ * page cache by index, with no parsing and no copying.
+ *
+ * @author J Steven Perry
+ *
+ */
+public final class NumberFile {
+
+  private final MappedSegments numbers;
+
+  private NumberFile(MappedSegments numbers) {
+    this.numbers = numbers;
+  }
+
+  /**
+   * Maps a file of numbers.
+   *
+   * @param path
+   *          The file
+   *
+   * @return NumberFile - the numbers in it
+   *
+   * @throws IOException
+   *           if the file cannot be mapped, or its length is not a multiple of
+   *           8
+   */
+  public static NumberFile open(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long length = channel.size();
+      if (length % Long.BYTES != 0) {
+        throw new IOException(path + " is " + length + " bytes long, which is not a whole number of longs");
+      }
+      return new NumberFile(new MappedSegments(channel, FileChannel.MapMode.READ_ONLY, 0, length));
+    }
+  }
+
+  /**
+   * Writes numbers to a file in the format {@link #open(Path)} reads,
+   * replacing whatever was there.
+   *
+   * @param path
+   *          The file
+   * @param values
+   *          The numbers to write
+   *
+   * @throws IOException
+   *           if the file cannot be written
+   */
+  public static void write(Path path, long[] values) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      MappedSegments target = new MappedSegments(channel, FileChannel.MapMode.READ_WRITE, 0,
+          (long) values.length * Long.BYTES);
+      for (int aa = 0; aa < values.length; aa++) {
+        target.putLong((long) aa * Long.BYTES, values[aa]);
+      }
+    }
+  }
+
+  /**
+   * @return long - the number of numbers in the file
+   */
+  public long size() {
+    return numbers.size() / Long.BYTES;
+  }
+
+  /**
+   * @param index
+   *          The index of the number, from 0 to size() - 1
+   *
+   * @return long - the number at that index
+   *
+   * @throws IndexOutOfBoundsException
+   *           if the index is out of range
+   */
+  public long get(long index) {
+    if (index < 0 || index >= size()) {
+      throw new IndexOutOfBoundsException("Index " + index + " is out of bounds for size " + size());
+    }
+    return numbers.getLong(index * Long.BYTES);
+  }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Reads decimal numbers from a channel straight out of a byte buffer, without
+ * decoding characters or creating a String per number.
+ *
+ * Numbers are runs of ASCII digits, separated by any mix of ASCII whitespace
+ * and commas. Anything else, including a sign, is malformed input.
+ *
+ * Not thread-safe.
+ *
+ * @author J Steven Perry
+ *
+ */
+final class NumberParser {
+
+  private final ReadableByteChannel channel;
+
+  private final ByteBuffer buffer;
+
+  /**
+   * The number being parsed, if inNumber is set. It can span refills.
+   */
+  private long value;
+
+  private boolean inNumber;
+
+  private boolean endOfInput;
+
+  /**
+   * Bytes consumed before the current buffer contents, for error messages.
+   */
+  private long bufferStart;
+
+  private long bytesRead;
+
+  /**
+   * @param channel
+   *          The channel to read from. It is not closed.
+   * @param bufferSize
+   *          The number of bytes read from the channel at a time
+   */
+  NumberParser(ReadableByteChannel channel, int bufferSize) {
+    this.channel = channel;
+    this.buffer = ByteBuffer.allocate(bufferSize);
+    this.buffer.flip();
+  }
+
+  /**
+   * Parses numbers until values is full or the input runs out.
+   *
+   * @param values
+   *          Receives the numbers
+   *
+   * @return int - the number of values parsed, or -1 if the input had already
+   *         run out
+   *
+   * @throws IOException
+   *           if reading fails, or the input is malformed
+   */
+  int read(long[] values) throws IOException {
+    if (endOfInput) {
+      return -1;
+    }
+    byte[] bytes = buffer.array();
+    int position = buffer.position();
+    int limit = buffer.limit();
+    int count = 0;
+    while (count < values.length) {
+      if (position == limit) {
+        buffer.position(position);
+        if (!refill()) {
+          position = 0;
+          if (inNumber) {
+            values[count++] = value;
+            inNumber = false;
+          }
+          break;
+        }
+        position = buffer.position();
+        limit = buffer.limit();
+        continue;
+      }
+      int digit = bytes[position] - '0';
+      if (digit >= 0 && digit <= 9) {
+        if (value > (Long.MAX_VALUE - digit) / 10) {
+          throw new IOException("Number too large at byte " + (bufferStart + position));
+        }
+        value = value * 10 + digit;
+        inNumber = true;
+      } else if (isSeparator(bytes[position])) {
+        if (inNumber) {
+          values[count++] = value;
+          value = 0;
+          inNumber = false;
+        }
+      } else {
+        throw new IOException("Unexpected byte 0x" + Integer.toHexString(bytes[position] & 0xff) + " at byte "
+            + (bufferStart + position));
+      }
+      position++;
+    }
+    buffer.position(position);
+    return (count == 0 && endOfInput) ? -1 : count;
+  }
+
+  /**
+   * @return long - the number of bytes read from the channel so far
+   */
+  long getBytesRead() {
+    return bytesRead;
+  }
+
+  private static boolean isSeparator(byte b) {
+    return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == ',' || b == '\f';
+  }
+
+  /**
+   * Reads the next chunk of input into the (fully consumed) buffer.
+   *
+   * @return boolean - false once the input has run out
+   */
+  private boolean refill() throws IOException {
+    bufferStart += buffer.limit();
+    buffer.clear();
+    int read;
+    do {
+      read = channel.read(buffer);
+    } while (read == 0);
+    buffer.flip();
+    if (read < 0) {
+      endOfInput = true;
+      return false;
+    }
+    bytesRead += read;
+    return true;
+  }
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Factors a batch of numbers on a fork/join pool.
+ *
+ * The batch is split by estimated cost rather than by element count, so a
+ * chunk holding one huge value is about as expensive as a chunk holding
+ * thousands of small ones, and no worker gets stuck with all the hard work.
+ *
+ * @author J Steven Perry
+ *
+ */
+final class ParallelFactorizer {
+
+  /**
+   * Each worker gets roughly this many chunks to steal from, which keeps the
+   * load balanced when the cost estimates are off.
+   */
+  private static final int CHUNKS_PER_WORKER = 8;
+
+  private ParallelFactorizer() {
+    // Static methods only
+  }
+
+  /**
+   * Factors every value in the batch.
+   *
+   * @param compoundIntegers
+   *          The values to factor. None may be negative.
+   * @param pool
+   *          The pool to run on
+   *
+   * @return long[][] - the factors of each value, in input order. Entries for
+   *         zero are null, like {@link YetAnotherUtility#computeFactors(long)}.
+   */
+  static long[][] computeFactors(long[] compoundIntegers, ForkJoinPool pool) {
+    long[] cumulativeCost = new long[compoundIntegers.length + 1];
+    for (int aa = 0; aa < compoundIntegers.length; aa++) {
+      if (compoundIntegers[aa] < 0) {
+        throw new IllegalArgumentException("Candidate integer must be a positive number!");
+      }
+      cumulativeCost[aa + 1] = cumulativeCost[aa] + estimateCost(compoundIntegers[aa]);
+    }
+    long[][] ret = new long[compoundIntegers.length][];
+    if (compoundIntegers.length > 0) {
+      long chunkCost = Math.max(1, cumulativeCost[compoundIntegers.length]
+          / ((long) pool.getParallelism() * CHUNKS_PER_WORKER));
+      pool.invoke(new FactorTask(compoundIntegers, cumulativeCost, ret, 0, compoundIntegers.length, chunkCost));
+    }
+    return ret;
+  }
+
+  /**
+   * Rough relative cost of factoring a value. Trial division grows with
+   * sqrt(n), Pollard's rho with n^(1/4); either way the bit length is what
+   * matters.
+   */
+  static long estimateCost(long compoundInteger) {
+    int bitLength = 64 - Long.numberOfLeadingZeros(compoundInteger);
+    if (compoundInteger <= YetAnotherUtility.TRIAL_DIVISION_LIMIT) {
+      return 1L + (1L << (bitLength / 2));
+    }
+    return 1L + (1L << (bitLength / 4)) * bitLength;
+  }
+
+  /**
+   * Splits its range at the cost midpoint until a range is cheap enough (or
+   * a single value), then factors it.
+   */
+  private static final class FactorTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long[] compoundIntegers;
+    private final long[] cumulativeCost;
+    private final long[][] results;
+    private final int from;
+    private final int to;
+    private final long chunkCost;
+
+    FactorTask(long[] compoundIntegers, long[] cumulativeCost, long[][] results, int from, int to, long chunkCost) {
+      this.compoundIntegers = compoundIntegers;
+      this.cumulativeCost = cumulativeCost;
+      this.results = results;
+      this.from = from;
+      this.to = to;
+      this.chunkCost = chunkCost;
+    }
+
+    @Override
+    protected void compute() {
+      long cost = cumulativeCost[to] - cumulativeCost[from];
+      if (to - from == 1 || cost <= chunkCost) {
+        for (int aa = from; aa < to; aa++) {
+          results[aa] = YetAnotherUtility.computeFactors(compoundIntegers[aa]);
+        }
+      } else {
+        int middle = splitPoint(cumulativeCost[from] + cost / 2);
+        invokeAll(new FactorTask(compoundIntegers, cumulativeCost, results, from, middle, chunkCost),
+            new FactorTask(compoundIntegers, cumulativeCost, results, middle, to, chunkCost));
+      }
+    }
+
+    /**
+     * Finds the index that halves the cost of this range, keeping at least
+     * one value on each side.
+     */
+    private int splitPoint(long halfwayCost) {
+      int index = Arrays.binarySearch(cumulativeCost, from + 1, to, halfwayCost);
+      if (index < 0) {
+        index = -index - 1;
+      }
+      return Math.max(from + 1, Math.min(to - 1, index));
+    }
+
+  }
+
+}
@@ -0,0 +1,915 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongPredicate;
+import java.util.zip.CRC32;
+
+/**
+ * Prime factorizations kept on disk, so they survive from one JVM to the next.
+ * Install one with {@link YetAnotherUtility#setPersistentFactorizationCache}
+ * and computeFactors looks expensive numbers up in it before factoring them,
+ * and stores the ones that were expensive to factor.
+ *
+ * A cache is a directory holding two files:
+ *
+ * <ul>
+ * <li>factors.log, an append-only log of records: the number (a long), its
+ * count of distinct primes (a byte), each prime (a long) with its exponent (a
+ * byte), and a CRC32 of all that (an int), little-endian, after a 16-byte
+ * header with a random id for this log,</li>
+ * <li>factors.index, a memory-mapped open-addressing hash table (linear
+ * probing, at most half full) of 16-byte slots, each a number and the offset
+ * of its record in the log, after a 64-byte header: the capacity in slots,
+ * the number of entries, the id of the log it indexes and how much of the log
+ * it covers.</li>
+ * </ul>
+ *
+ * One process at a time can have a cache open for writing, enforced with a
+ * lock on a third file; any number can open it read-only. A writer appends the
+ * record, then fills in the slot, writing the offset, which marks the slot as
+ * used, last. Readers probing the mapped index never see a slot whose record
+ * isn't there yet, and every record is checked against its CRC as it is read.
+ *
+ * On opening for writing, the log after the part the index covers is replayed
+ * into the index, and a torn record at the end of the log (from a crash in
+ * the middle of a write) is cut off. An index that is missing, damaged, or
+ * belongs to a different log is rebuilt from the log. The index is grown, and
+ * the log compacted, by writing new files and renaming them into place; the
+ * old index is then marked retired, which tells readers to reopen.
+ *
+ * FileChannel I/O is interruptible: an interrupt closes the channel, for
+ * every thread sharing it. Since lookups and stores run on whatever thread
+ * calls computeFactors, the log is read and written with the caller's
+ * interrupt flag cleared (and restored afterwards), and a log that was closed
+ * by an interrupt anyway is reopened.
+ *
+ * @author J Steven Perry
+ *
+ */
+public final class PersistentFactorizationCache implements AutoCloseable {
+
+  static final String LOG_FILE = "factors.log";
+
+  static final String INDEX_FILE = "factors.index";
+
+  private static final String LOCK_FILE = "factors.lock";
+
+  /**
+   * New files are written under this suffix, then renamed into place.
+   */
+  private static final String NEW_FILE_SUFFIX = ".new";
+
+  /**
+   * "FLOG" and "FIDX", read as little-endian ints.
+   */
+  private static final int LOG_MAGIC = 0x474F4C46;
+
+  private static final int INDEX_MAGIC = 0x58444946;
+
+  private static final int FILE_VERSION = 1;
+
+  static final int LOG_HEADER_SIZE = 16;
+
+  private static final int INDEX_HEADER_SIZE = 64;
+
+  /**
+   * Where the fields of the index header are. The magic number and version
+   * come first.
+   */
+  private static final int CAPACITY_OFFSET = 8;
+  private static final int SIZE_OFFSET = 16;
+  private static final int LOG_ID_OFFSET = 24;
+  private static final int INDEXED_LENGTH_OFFSET = 32;
+  private static final int RETIRED_OFFSET = 40;
+
+  /**
+   * A slot is the number, then the offset of its record in the log. An offset
+   * of zero (inside the log header, so never a record) means the slot is free.
+   */
+  private static final int SLOT_SIZE = 16;
+
+  private static final long MINIMUM_CAPACITY = 1024;
+
+  /**
+   * The number, the prime count and the CRC.
+   */
+  private static final int RECORD_OVERHEAD = Long.BYTES + 1 + Integer.BYTES;
+
+  private static final int BYTES_PER_PRIME = Long.BYTES + 1;
+
+  private static final int MAX_RECORD_SIZE = RECORD_OVERHEAD + BYTES_PER_PRIME * PrimeFactorizer.MAX_DISTINCT_PRIMES;
+
+  /**
+   * How many times log I/O is tried, reopening the log in between, before a
+   * closed log is given up on.
+   */
+  private static final int LOG_ATTEMPTS = 3;
+
+  private final Path directory;
+
+  private final boolean writable;
+
+  /**
+   * Held for as long as a writer is open.
+   */
+  private final FileChannel lockChannel;
+
+  private final FileLock lock;
+
+  /**
+   * The log and index in use. Replaced when the index grows or the log is
+   * compacted.
+   */
+  private volatile Generation generation;
+
+  /**
+   * Set by close, after which a closed log is not reopened.
+   */
+  private volatile boolean closed;
+
+  /**
+   * Where the next record goes. Only used by writers, under this object's
+   * lock.
+   */
+  private long logLength;
+
+  /**
+   * Some I/O on the log.
+   */
+  @FunctionalInterface
+  private interface LogAction<T> {
+
+    T apply(FileChannel log) throws IOException;
+
+  }
+
+  private final ThreadLocal<ByteBuffer> recordBuffer = ThreadLocal
+      .withInitial(() -> ByteBuffer.allocate(MAX_RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN));
+
+  private final LongAdder hits = new LongAdder();
+
+  private final LongAdder misses = new LongAdder();
+
+  private final LongAdder failures = new LongAdder();
+
+  /**
+   * A log and the index over it.
+   */
+  private static final class Generation {
+
+    final FileChannel log;
+
+    final MappedSegments index;
+
+    final long capacity;
+
+    final long logId;
+
+    Generation(FileChannel log, MappedSegments index) {
+      this.log = log;
+      this.index = index;
+      this.capacity = index.getLong(CAPACITY_OFFSET);
+      this.logId = index.getLong(LOG_ID_OFFSET);
+    }
+
+    boolean isRetired() {
+      return index.getLong(RETIRED_OFFSET) != 0;
+    }
+
+  }
+
+  private PersistentFactorizationCache(Path directory, boolean writable, FileChannel lockChannel, FileLock lock) {
+    this.directory = directory;
+    this.writable = writable;
+    this.lockChannel = lockChannel;
+    this.lock = lock;
+  }
+
+  /**
+   * Opens a cache for reading and writing, creating it if need be, and
+   * recovers from any crash the last writer had.
+   *
+   * @param directory
+   *          The directory holding the cache. Created if it doesn't exist.
+   *
+   * @return PersistentFactorizationCache - the cache, which must be closed to
+   *         let another writer open it
+   *
+   * @throws IOException
+   *           if the cache cannot be opened, or another writer has it open
+   */
+  public static PersistentFactorizationCache open(Path directory) throws IOException {
+    Files.createDirectories(directory);
+    FileChannel lockChannel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE);
+    FileLock lock = null;
+    try {
+      lock = lockChannel.tryLock();
+    } catch (OverlappingFileLockException e) {
+      // Held by this JVM
+    }
+    if (lock == null) {
+      lockChannel.close();
+      throw new IOException(directory + " is already open for writing");
+    }
+    PersistentFactorizationCache ret = new PersistentFactorizationCache(directory, true, lockChannel, lock);
+    try {
+      ret.recover();
+    } catch (IOException | RuntimeException e) {
+      ret.close();
+      throw e;
+    }
+    return ret;
+  }
+
+  /**
+   * Opens an existing cache for reading only. Entries a writer adds later are
+   * seen as they are added.
+   *
+   * @param directory
+   *          The directory holding the cache
+   *
+   * @return PersistentFactorizationCache - the cache
+   *
+   * @throws IOException
+   *           if there is no cache there, or its index does not match its log
+   *           (open it for writing once to repair it)
+   */
+  public static PersistentFactorizationCache openReadOnly(Path directory) throws IOException {
+    PersistentFactorizationCache ret = new PersistentFactorizationCache(directory, false, null, null);
+    ret.generation = ret.openGeneration();
+    return ret;
+  }
+
+  /**
+   * Looks up the prime factorization of the specified number.
+   *
+   * @param compoundInteger
+   *          The number
+   *
+   * @return PrimeFactorization - its prime factorization, or null if it isn't
+   *         cached
+   */
+  public PrimeFactorization get(long compoundInteger) {
+    long[] primes = new long[PrimeFactorizer.MAX_DISTINCT_PRIMES];
+    int[] exponents = new int[PrimeFactorizer.MAX_DISTINCT_PRIMES];
+    int count = get(compoundInteger, primes, exponents);
+    return (count < 0) ? null : new PrimeFactorization(compoundInteger, primes, exponents, count);
+  }
+
+  /**
+   * Looks up the prime factorization of the specified number, into caller
+   * supplied arrays.
+   *
+   * @return int - the number of distinct primes, or -1 if it isn't cached (or
+   *         can't be read)
+   */
+  int get(long compoundInteger, long[] primes, int[] exponents) {
+    Generation current = generation;
+    try {
+      if (!writable && current.isRetired()) {
+        current = reopen(current);
+      }
+      long offset = find(current, compoundInteger);
+      int ret = (offset == 0) ? -1 : readRecord(current, offset, primes, exponents);
+      if (ret >= 0 && recordBuffer.get().getLong(0) != compoundInteger) {
+        ret = -1;
+      }
+      if (ret < 0) {
+        misses.increment();
+      } else {
+        hits.increment();
+      }
+      return ret;
+    } catch (IOException e) {
+      failures.increment();
+      misses.increment();
+      return -1;
+    }
+  }
+
+  /**
+   * Stores a prime factorization, unless the number already has one stored.
+   *
+   * @param factorization
+   *          The prime factorization
+   *
+   * @return boolean - true if it was stored, false if it already was
+   *
+   * @throws IOException
+   *           if the log or index cannot be written
+   * @throws IllegalStateException
+   *           if the cache was opened read-only
+   */
+  public boolean put(PrimeFactorization factorization) throws IOException {
+    return put(factorization.getCompoundInteger(), factorization.getPrimes(), factorization.getExponents(),
+        factorization.size());
+  }
+
+  synchronized boolean put(long compoundInteger, long[] primes, int[] exponents, int count) throws IOException {
+    if (!writable) {
+      throw new IllegalStateException("Cache was opened read-only!");
+    }
+    Generation current = generation;
+    if (find(current, compoundInteger) != 0) {
+      return false;
+    }
+    ByteBuffer record = recordBuffer.get();
+    record.clear();
+    record.putLong(compoundInteger).put((byte) count);
+    for (int aa = 0; aa < count; aa++) {
+      record.putLong(primes[aa]).put((byte) exponents[aa]);
+    }
+    CRC32 crc = new CRC32();
+    crc.update(record.array(), 0, record.position());
+    record.putInt((int) crc.getValue());
+    record.flip();
+    long offset = logLength;
+    onLog(current, log -> {
+      while (record.hasRemaining()) {
+        log.write(record, offset + record.position());
+      }
+      return null;
+    });
+    logLength = offset + record.limit();
+    // The log may have been reopened
+    current = ensureCapacity(generation);
+    insert(current.index, current.capacity, compoundInteger, offset);
+    current.index.putLong(INDEXED_LENGTH_OFFSET, logLength);
+    return true;
+  }
+
+  /**
+   * Stores a prime factorization for computeFactors, which should not fail
+   * just because the cache did: problems are only counted.
+   */
+  void offer(long compoundInteger, long[] primes, int[] exponents, int count) {
+    if (writable) {
+      try {
+        put(compoundInteger, primes, exponents, count);
+      } catch (IOException e) {
+        failures.increment();
+      }
+    }
+  }
+
+  /**
+   * @return long - the number of prime factorizations stored
+   */
+  public long size() {
+    return generation.index.getLong(SIZE_OFFSET);
+  }
+
+  /**
+   * @return long - the length of the log, in bytes
+   */
+  public long getLogLength() throws IOException {
+    return onLog(generation, FileChannel::size);
+  }
+
+  /**
+   * @return long - the number of lookups that found an entry
+   */
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  /**
+   * @return long - the number of lookups that didn't find an entry
+   */
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  /**
+   * @return long - the number of reads and writes that failed with an
+   *         IOException, and were treated as misses or skipped
+   */
+  public long getFailureCount() {
+    return failures.sum();
+  }
+
+  /**
+   * Forces everything written so far out to the disk.
+   */
+  public synchronized void sync() throws IOException {
+    Generation current = generation;
+    onLog(current, log -> {
+      log.force(false);
+      return null;
+    });
+    generation.index.force();
+  }
+
+  /**
+   * Rewrites the log with just the entries that are kept, and rebuilds the
+   * index over it. Readers switch to the new files the next time they look
+   * something up.
+   *
+   * @param retain
+   *          Says, for each number stored, whether to keep it
+   *
+   * @throws IOException
+   *           if the new files cannot be written
+   * @throws IllegalStateException
+   *           if the cache was opened read-only
+   */
+  public synchronized void compact(LongPredicate retain) throws IOException {
+    if (!writable) {
+      throw new IllegalStateException("Cache was opened read-only!");
+    }
+    // Writing the new log is interruptible too
+    boolean interrupted = Thread.interrupted();
+    try {
+      compactLog(retain);
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Does the work of compact, under its lock.
+   */
+  private void compactLog(LongPredicate retain) throws IOException {
+    Path newLogFile = directory.resolve(LOG_FILE + NEW_FILE_SUFFIX);
+    Path newIndexFile = directory.resolve(INDEX_FILE + NEW_FILE_SUFFIX);
+    FileChannel newLog = createLog(newLogFile);
+    FileChannel oldLog;
+    try {
+      long logId = readLogId(newLog);
+      long capacity = capacityFor(size());
+      MappedSegments newIndex = createIndex(newIndexFile, capacity, logId);
+      long newLength = LOG_HEADER_SIZE;
+      long[] primes = new long[PrimeFactorizer.MAX_DISTINCT_PRIMES];
+      int[] exponents = new int[PrimeFactorizer.MAX_DISTINCT_PRIMES];
+      ByteBuffer record = recordBuffer.get();
+      for (long offset = LOG_HEADER_SIZE; offset < logLength;) {
+        // The generation, not one taken before the loop, since an interrupt
+        // on another thread may get the log reopened
+        int count = readRecord(generation, offset, primes, exponents);
+        if (count < 0) {
+          break;
+        }
+        long compoundInteger = record.getLong(0);
+        // Only the record the index points at counts, so any duplicates go
+        if (find(generation, compoundInteger) == offset && retain.test(compoundInteger)) {
+          record.rewind();
+          while (record.hasRemaining()) {
+            newLog.write(record, newLength + record.position());
+          }
+          insert(newIndex, capacity, compoundInteger, newLength);
+          newLength += record.limit();
+        }
+        offset += RECORD_OVERHEAD + BYTES_PER_PRIME * count;
+      }
+      newIndex.putLong(INDEXED_LENGTH_OFFSET, newLength);
+      newLog.force(true);
+      newIndex.force();
+      // A crash between the two renames leaves an index for the old log,
+      // which the next open notices and rebuilds
+      Files.move(newLogFile, directory.resolve(LOG_FILE), StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+      Files.move(newIndexFile, directory.resolve(INDEX_FILE), StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+      Generation current = generation;
+      current.index.putLong(RETIRED_OFFSET, 1);
+      oldLog = current.log;
+      generation = new Generation(newLog, newIndex);
+      logLength = newLength;
+    } catch (IOException | RuntimeException e) {
+      newLog.close();
+      throw e;
+    }
+    oldLog.close();
+  }
+
+  /**
+   * Syncs (for a writer) and closes the files, and lets another writer open
+   * the cache.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    // Releasing the lock is interruptible too
+    boolean interrupted = Thread.interrupted();
+    try {
+      try {
+        if (generation != null && writable) {
+          sync();
+        }
+      } finally {
+        closed = true;
+        if (generation != null) {
+          generation.log.close();
+        }
+      }
+    } finally {
+      try {
+        if (lock != null) {
+          lock.release();
+          lockChannel.close();
+        }
+      } finally {
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+  }
+
+  /**
+   * Opens (or creates) the log and index for a writer, rebuilding the index
+   * if it can't be trusted, and replays whatever part of the log the index
+   * doesn't cover yet.
+   */
+  private void recover() throws IOException {
+    Path logFile = directory.resolve(LOG_FILE);
+    FileChannel log;
+    if (!Files.isRegularFile(logFile) || Files.size(logFile) < LOG_HEADER_SIZE) {
+      // Never written, or the crash came before the header was
+      log = createLog(logFile);
+    } else {
+      log = FileChannel.open(logFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+    try {
+      long logId = readLogId(log);
+      MappedSegments index = null;
+      try {
+        index = mapIndex(directory.resolve(INDEX_FILE), FileChannel.MapMode.READ_WRITE, logId);
+      } catch (IOException e) {
+        // Rebuilt below
+      }
+      if (index == null || index.getLong(INDEXED_LENGTH_OFFSET) > log.size()
+          || index.getLong(RETIRED_OFFSET) != 0) {
+        index = replaceIndex(index, logId);
+      }
+      generation = new Generation(log, index);
+      if (!replay(index.getLong(INDEXED_LENGTH_OFFSET))) {
+        // The index may point into what was cut off, so start again from a
+        // fresh one
+        generation = new Generation(log, replaceIndex(generation.index, logId));
+        replay(LOG_HEADER_SIZE);
+      }
+    } catch (IOException | RuntimeException e) {
+      log.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Puts an empty index in place of the current one, if there is one, and
+   * retires it. The file is replaced rather than overwritten, since readers
+   * may have it mapped.
+   */
+  private MappedSegments replaceIndex(MappedSegments current, long logId) throws IOException {
+    Path newIndexFile = directory.resolve(INDEX_FILE + NEW_FILE_SUFFIX);
+    MappedSegments ret = createIndex(newIndexFile, MINIMUM_CAPACITY, logId);
+    Files.move(newIndexFile, directory.resolve(INDEX_FILE), StandardCopyOption.ATOMIC_MOVE,
+        StandardCopyOption.REPLACE_EXISTING);
+    if (current != null) {
+      current.putLong(RETIRED_OFFSET, 1);
+    }
+    return ret;
+  }
+
+  /**
+   * Adds every record from the specified log offset on to the index, and cuts
+   * the log off at the first record that is torn or damaged.
+   *
+   * @return boolean - false if the log had to be cut off
+   */
+  private boolean replay(long from) throws IOException {
+    FileChannel log = generation.log;
+    long end = log.size();
+    long[] primes = new long[PrimeFactorizer.MAX_DISTINCT_PRIMES];
+    int[] exponents = new int[PrimeFactorizer.MAX_DISTINCT_PRIMES];
+    long offset = from;
+    while (offset < end) {
+      int count = readRecord(generation, offset, primes, exponents);
+      if (count < 0) {
+        break;
+      }
+      long compoundInteger = recordBuffer.get().getLong(0);
+      if (find(generation, compoundInteger) == 0) {
+        Generation current = ensureCapacity(generation);
+        insert(current.index, current.capacity, compoundInteger, offset);
+      }
+      offset += RECORD_OVERHEAD + BYTES_PER_PRIME * count;
+    }
+    logLength = offset;
+    generation.index.putLong(INDEXED_LENGTH_OFFSET, offset);
+    if (offset < end) {
+      log.truncate(offset);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Opens the current log and index for a reader.
+   */
+  private Generation openGeneration() throws IOException {
+    FileChannel log = FileChannel.open(directory.resolve(LOG_FILE), StandardOpenOption.READ);
+    try {
+      return new Generation(log, mapIndex(directory.resolve(INDEX_FILE), FileChannel.MapMode.READ_ONLY,
+          readLogId(log)));
+    } catch (IOException | RuntimeException e) {
+      log.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Switches a reader over to the files that replaced a retired index.
+   */
+  private synchronized Generation reopen(Generation retired) throws IOException {
+    // Reading the new log's header is interruptible
+    boolean interrupted = Thread.interrupted();
+    try {
+      if (generation == retired) {
+        generation = openGeneration();
+        retired.log.close();
+      }
+      return generation;
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Grows the index, if one more entry would make it more than half full, by
+   * building a new one twice the size and renaming it into place.
+   */
+  private Generation ensureCapacity(Generation current) throws IOException {
+    long size = current.index.getLong(SIZE_OFFSET);
+    if ((size + 1) * 2 <= current.capacity) {
+      return current;
+    }
+    Path newIndexFile = directory.resolve(INDEX_FILE + NEW_FILE_SUFFIX);
+    long capacity = current.capacity * 2;
+    MappedSegments newIndex = createIndex(newIndexFile, capacity, current.index.getLong(LOG_ID_OFFSET));
+    for (long slot = 0; slot < current.capacity; slot++) {
+      long offset = current.index.getLong(INDEX_HEADER_SIZE + slot * SLOT_SIZE + Long.BYTES);
+      if (offset != 0) {
+        insert(newIndex, capacity, current.index.getLong(INDEX_HEADER_SIZE + slot * SLOT_SIZE), offset);
+      }
+    }
+    newIndex.putLong(INDEXED_LENGTH_OFFSET, current.index.getLong(INDEXED_LENGTH_OFFSET));
+    newIndex.force();
+    Files.move(newIndexFile, directory.resolve(INDEX_FILE), StandardCopyOption.ATOMIC_MOVE,
+        StandardCopyOption.REPLACE_EXISTING);
+    current.index.putLong(RETIRED_OFFSET, 1);
+    generation = new Generation(current.log, newIndex);
+    return generation;
+  }
+
+  /**
+   * Does some I/O on the log with the calling thread's interrupt flag
+   * cleared, so that an interrupt doesn't close the log, and restores the
+   * flag afterwards. If the log was closed anyway, by an interrupt arriving
+   * in the middle of this or of another thread's I/O, it is reopened and the
+   * I/O tried again. Partial reads and writes pick up where they got to.
+   */
+  private <T> T onLog(Generation current, LogAction<T> action) throws IOException {
+    boolean interrupted = Thread.interrupted();
+    try {
+      for (int attempt = 1;; attempt++) {
+        try {
+          return action.apply(current.log);
+        } catch (ClosedChannelException e) {
+          interrupted |= Thread.interrupted();
+          if (attempt == LOG_ATTEMPTS) {
+            throw e;
+          }
+          current = reopenLog(current, e);
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Replaces a log that was closed under a generation with a freshly opened
+   * one, unless the cache was closed, or has since moved on to another log
+   * (where the offsets being used mean nothing).
+   */
+  private synchronized Generation reopenLog(Generation stale, ClosedChannelException cause) throws IOException {
+    Generation current = generation;
+    if (closed || current.logId != stale.logId) {
+      throw cause;
+    }
+    if (current.log.isOpen()) {
+      // Another thread got here first
+      return current;
+    }
+    FileChannel log = writable
+        ? FileChannel.open(directory.resolve(LOG_FILE), StandardOpenOption.READ, StandardOpenOption.WRITE)
+        : FileChannel.open(directory.resolve(LOG_FILE), StandardOpenOption.READ);
+    try {
+      if (readLogId(log) != current.logId) {
+        throw cause;
+      }
+    } catch (IOException | RuntimeException e) {
+      log.close();
+      throw e;
+    }
+    generation = new Generation(log, current.index);
+    return generation;
+  }
+
+  /**
+   * @return long - the offset of the number's record in the log, or 0 if it
+   *         isn't in the index
+   */
+  private static long find(Generation current, long compoundInteger) {
+    long mask = current.capacity - 1;
+    long slot = FactorizationCache.hash(compoundInteger) & mask;
+    for (long probes = 0; probes < current.capacity; probes++, slot = (slot + 1) & mask) {
+      long position = INDEX_HEADER_SIZE + slot * SLOT_SIZE;
+      long offset = current.index.getLong(position + Long.BYTES);
+      if (offset == 0) {
+        return 0;
+      }
+      // The key was written before the offset
+      VarHandle.acquireFence();
+      if (current.index.getLong(position) == compoundInteger) {
+        return offset;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Puts a number that isn't in the index yet into its first free slot: the
+   * key first, then the offset, which makes the slot visible to readers.
+   */
+  private static void insert(MappedSegments index, long capacity, long compoundInteger, long offset) {
+    long mask = capacity - 1;
+    long slot = FactorizationCache.hash(compoundInteger) & mask;
+    while (index.getLong(INDEX_HEADER_SIZE + slot * SLOT_SIZE + Long.BYTES) != 0) {
+      slot = (slot + 1) & mask;
+    }
+    long position = INDEX_HEADER_SIZE + slot * SLOT_SIZE;
+    index.putLong(position, compoundInteger);
+    VarHandle.releaseFence();
+    index.putLong(position + Long.BYTES, offset);
+    index.putLong(SIZE_OFFSET, index.getLong(SIZE_OFFSET) + 1);
+  }
+
+  /**
+   * Reads the record at the specified log offset into this thread's record
+   * buffer (where the number can be read at index 0, and the whole record
+   * between 0 and the limit) and decodes the primes and exponents.
+   *
+   * @return int - the number of distinct primes, or -1 if there is no
+   *         complete, undamaged record there
+   */
+  private int readRecord(Generation current, long offset, long[] primes, int[] exponents) throws IOException {
+    ByteBuffer record = recordBuffer.get();
+    record.clear();
+    onLog(current, log -> {
+      while (record.hasRemaining() && log.read(record, offset + record.position()) >= 0) {
+        // Keep reading until the buffer is full or the log ends
+      }
+      return null;
+    });
+    int available = record.position();
+    if (available < RECORD_OVERHEAD) {
+      return -1;
+    }
+    int count = record.get(Long.BYTES) & 0xFF;
+    int length = RECORD_OVERHEAD + BYTES_PER_PRIME * count;
+    if (count > PrimeFactorizer.MAX_DISTINCT_PRIMES || length > available) {
+      return -1;
+    }
+    CRC32 crc = new CRC32();
+    crc.update(record.array(), 0, length - Integer.BYTES);
+    if (record.getInt(length - Integer.BYTES) != (int) crc.getValue()) {
+      return -1;
+    }
+    for (int aa = 0; aa < count; aa++) {
+      int position = Long.BYTES + 1 + aa * BYTES_PER_PRIME;
+      primes[aa] = record.getLong(position);
+      exponents[aa] = record.get(position + Long.BYTES) & 0xFF;
+    }
+    record.position(0).limit(length);
+    return count;
+  }
+
+  /**
+   * Creates an empty log with a new random id.
+   */
+  private static FileChannel createLog(Path file) throws IOException {
+    FileChannel ret = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+    ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    header.putInt(LOG_MAGIC).putInt(FILE_VERSION).putLong(ThreadLocalRandom.current().nextLong()).flip();
+    while (header.hasRemaining()) {
+      ret.write(header, header.position());
+    }
+    return ret;
+  }
+
+  private static long readLogId(FileChannel log) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    while (header.hasRemaining() && log.read(header, header.position()) >= 0) {
+      // Keep reading until the header is complete or the log ends
+    }
+    header.flip();
+    if (header.remaining() < LOG_HEADER_SIZE || header.getInt() != LOG_MAGIC || header.getInt() != FILE_VERSION) {
+      throw new IOException("Not a factorization cache log");
+    }
+    return header.getLong();
+  }
+
+  /**
+   * Creates an empty index, with the magic number written last.
+   */
+  private static MappedSegments createIndex(Path file, long capacity, long logId) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      MappedSegments ret = new MappedSegments(channel, FileChannel.MapMode.READ_WRITE, 0,
+          INDEX_HEADER_SIZE + capacity * SLOT_SIZE);
+      ret.putLong(CAPACITY_OFFSET, capacity);
+      ret.putLong(LOG_ID_OFFSET, logId);
+      ret.putLong(INDEXED_LENGTH_OFFSET, LOG_HEADER_SIZE);
+      ret.putLong(0, (INDEX_MAGIC & 0xFFFFFFFFL) | ((long) FILE_VERSION << 32));
+      return ret;
+    }
+  }
+
+  /**
+   * Maps an existing index, checking that it is one, is intact, and belongs
+   * to the log with the specified id.
+   */
+  private static MappedSegments mapIndex(Path file, FileChannel.MapMode mode, long logId) throws IOException {
+    StandardOpenOption[] options = (mode == FileChannel.MapMode.READ_ONLY)
+        ? new StandardOpenOption[] { StandardOpenOption.READ }
+        : new StandardOpenOption[] { StandardOpenOption.READ, StandardOpenOption.WRITE };
+    try (FileChannel channel = FileChannel.open(file, options)) {
+      long length = channel.size();
+      if (length < INDEX_HEADER_SIZE) {
+        throw new IOException(file + " is not a factorization cache index");
+      }
+      MappedSegments ret = new MappedSegments(channel, mode, 0, length);
+      long capacity = ret.getLong(CAPACITY_OFFSET);
+      if (ret.getLong(0) != ((INDEX_MAGIC & 0xFFFFFFFFL) | ((long) FILE_VERSION << 32))
+          || capacity < MINIMUM_CAPACITY || Long.bitCount(capacity) != 1
+          || length != INDEX_HEADER_SIZE + capacity * SLOT_SIZE) {
+        throw new IOException(file + " is not a factorization cache index");
+      }
+      if (ret.getLong(LOG_ID_OFFSET) != logId) {
+        throw new IOException(file + " does not belong to the log next to it");
+      }
+      return ret;
+    }
+  }
+
+  /**
+   * The smallest capacity that keeps the specified number of entries at most
+   * half full.
+   */
+  private static long capacityFor(long size) {
+    long ret = MINIMUM_CAPACITY;
+    while (ret < size * 2) {
+      ret <<= 1;
+    }
+    return ret;
+  }
+
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import java.util.Locale;
+
+/**
+ * What a {@link FactorizationPipeline} run did: how many numbers went through,
+ * how long each stage spent working, and how full the queues between them
+ * got. A stage with a busy time close to the elapsed time is the bottleneck;
+ * a queue that is usually full sits in front of one.
+ *
+ * @author J Steven Perry
+ *
+ */
+public final class PipelineStats {
+
+  long numbers;
+
+  long bytesRead;
+
+  long bytesWritten;
+
+  long elapsedNanos;
+
+  long readNanos;
+
+  long factorNanos;
+
+  long writeNanos;
+
+  int workers;
+
+  int queueCapacity;
+
+  int inputQueueMaxDepth;
+
+  double inputQueueMeanDepth;
+
+  int outputQueueMaxDepth;
+
+  double outputQueueMeanDepth;
+
+  PipelineStats() {
+    // Filled in by the pipeline
+  }
+
+  /**
+   * @return long - the number of numbers read, factored and written
+   */
+  public long getNumbers() {
+    return numbers;
+  }
+
+  /**
+   * @return long - the number of bytes read from the input
+   */
+  public long getBytesRead() {
+    return bytesRead;
+  }
+
+  /**
+   * @return long - the number of bytes written to the output
+   */
+  public long getBytesWritten() {
+    return bytesWritten;
+  }
+
+  /**
+   * @return long - the wall clock time of the whole run, in nanoseconds
+   */
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  /**
+   * @return long - the time the reader spent reading and parsing, in
+   *         nanoseconds
+   */
+  public long getReadNanos() {
+    return readNanos;
+  }
+
+  /**
+   * @return long - the time the workers spent factoring and formatting, added
+   *         up across all of them, in nanoseconds
+   */
+  public long getFactorNanos() {
+    return factorNanos;
+  }
+
+  /**
+   * @return long - the time the writer spent writing, in nanoseconds
+   */
+  public long getWriteNanos() {
+    return writeNanos;
+  }
+
+  /**
+   * @return int - the number of worker threads
+   */
+  public int getWorkers() {
+    return workers;
+  }
+
+  /**
+   * @return int - the number of batches each queue can hold
+   */
+  public int getQueueCapacity() {
+    return queueCapacity;
+  }
+
+  /**
+   * @return int - the most batches ever waiting for a worker
+   */
+  public int getInputQueueMaxDepth() {
+    return inputQueueMaxDepth;
+  }
+
+  /**
+   * @return double - the average number of batches waiting for a worker, seen
+   *         each time one was queued
+   */
+  public double getInputQueueMeanDepth() {
+    return inputQueueMeanDepth;
+  }
+
+  /**
+   * @return int - the most batches ever waiting for the writer
+   */
+  public int getOutputQueueMaxDepth() {
+    return outputQueueMaxDepth;
+  }
+
+  /**
+   * @return double - the average number of batches waiting for the writer,
+   *         seen each time one was queued
+   */
+  public double getOutputQueueMeanDepth() {
+    return outputQueueMeanDepth;
+  }
+
+  /**
+   * @return String - a table with the throughput and busy time of each stage
+   *         and the depth of each queue, for printing at the end of a run
+   */
+  @Override
+  public String toString() {
+    StringBuilder ret = new StringBuilder();
+    double seconds = elapsedNanos / 1e9;
+    ret.append(String.format(Locale.ROOT, "%,d numbers in %.3f s (%,.0f numbers/s)%n", numbers, seconds,
+        perSecond(numbers, elapsedNanos)));
+    ret.append(String.format(Locale.ROOT, "%-8s %8s %12s %16s %8s%n", "stage", "threads", "busy (s)",
+        "numbers/busy s", "busy %"));
+    appendStage(ret, "read", 1, readNanos);
+    appendStage(ret, "factor", workers, factorNanos);
+    appendStage(ret, "write", 1, writeNanos);
+    ret.append(String.format(Locale.ROOT, "%-8s %8s %12s %16s%n", "queue", "capacity", "max depth", "mean depth"));
+    ret.append(String.format(Locale.ROOT, "%-8s %8d %12d %16.2f%n", "input", queueCapacity, inputQueueMaxDepth,
+        inputQueueMeanDepth));
+    ret.append(String.format(Locale.ROOT, "%-8s %8d %12d %16.2f%n", "output", queueCapacity, outputQueueMaxDepth,
+        outputQueueMeanDepth));
+    ret.append(String.format(Locale.ROOT, "%,d bytes read, %,d bytes written%n", bytesRead, bytesWritten));
+    return ret.toString();
+  }
+
+  /**
+   * Busy % is the share of the elapsed time the stage's threads were working,
+   * so 100% means every thread of the stage was busy all the time.
+   */
+  private void appendStage(StringBuilder target, String stage, int threads, long busyNanos) {
+    double busyPercent = (elapsedNanos == 0) ? 0 : 100.0 * busyNanos / ((double) elapsedNanos * threads);
+    target.append(String.format(Locale.ROOT, "%-8s %8d %12.3f %16.0f %7.1f%%%n", stage, threads, busyNanos / 1e9,
+        perSecond(numbers, busyNanos), busyPercent));
+  }
+
+  private static double perSecond(long count, long nanos) {
+    return (nanos == 0) ? 0 : count * 1e9 / nanos;
+  }
+
+}
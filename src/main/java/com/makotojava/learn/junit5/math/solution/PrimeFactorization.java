@@ -0,0 +1,208 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import java.util.Arrays;
+
+/**
+ * The prime factorization of a positive long, held as parallel primitive
+ * arrays of distinct primes and their exponents.
+ *
+ * That is at most {@link PrimeFactorizer#MAX_DISTINCT_PRIMES} entries, however
+ * many divisors the number has, and the number of divisors, their sum and
+ * Euler's totient all follow from it directly. The divisors themselves are
+ * only built if {@link #toFactors()} is called.
+ *
+ * Immutable.
+ *
+ * @author J Steven Perry
+ *
+ */
+public final class PrimeFactorization {
+
+  private final long compoundInteger;
+  private final long[] primes;
+  private final int[] exponents;
+
+  /**
+   * @param compoundInteger
+   *          The number that was factored
+   * @param primes
+   *          The distinct prime factors, ascending, in the first count entries
+   * @param exponents
+   *          The exponent of each prime factor
+   * @param count
+   *          The number of distinct prime factors
+   */
+  PrimeFactorization(long compoundInteger, long[] primes, int[] exponents, int count) {
+    this.compoundInteger = compoundInteger;
+    this.primes = Arrays.copyOf(primes, count);
+    this.exponents = Arrays.copyOf(exponents, count);
+  }
+
+  /**
+   * @return long - the number that was factored
+   */
+  public long getCompoundInteger() {
+    return compoundInteger;
+  }
+
+  /**
+   * @return int - the number of distinct prime factors. Zero for 1.
+   */
+  public int size() {
+    return primes.length;
+  }
+
+  /**
+   * @param index
+   *          From 0 to size() - 1
+   *
+   * @return long - the prime factor at that index, in ascending order
+   */
+  public long getPrime(int index) {
+    return primes[index];
+  }
+
+  /**
+   * @param index
+   *          From 0 to size() - 1
+   *
+   * @return int - the exponent of the prime factor at that index
+   */
+  public int getExponent(int index) {
+    return exponents[index];
+  }
+
+  /**
+   * @return long[] - a copy of the distinct prime factors, ascending
+   */
+  public long[] getPrimes() {
+    return primes.clone();
+  }
+
+  /**
+   * @return int[] - a copy of the exponents, parallel to getPrimes()
+   */
+  public int[] getExponents() {
+    return exponents.clone();
+  }
+
+  /**
+   * The number of divisors: the product of (e + 1) over every prime power
+   * p^e. Never overflows, since no long has more than 103680 divisors.
+   *
+   * @return long - the number of divisors, including 1 and the number itself
+   */
+  public long divisorCount() {
+    return DivisorIterator.divisorCount(exponents, exponents.length);
+  }
+
+  /**
+   * The sum of the divisors, sigma(n): the product of 1 + p + ... + p^e over
+   * every prime power p^e.
+   *
+   * @return long - the sum of every divisor, including 1 and the number
+   *         itself
+   *
+   * @throws ArithmeticException
+   *           if the sum does not fit in a long, which it can for numbers
+   *           above about Long.MAX_VALUE / 5
+   */
+  public long divisorSum() {
+    long ret = 1;
+    for (int aa = 0; aa < primes.length; aa++) {
+      long power = 1;
+      long sum = 1;
+      for (int bb = 0; bb < exponents[aa]; bb++) {
+        // p^e divides the number, so this never overflows
+        power *= primes[aa];
+        sum = Math.addExact(sum, power);
+      }
+      ret = Math.multiplyExact(ret, sum);
+    }
+    return ret;
+  }
+
+  /**
+   * Euler's totient, phi(n): how many of 1..n are coprime to n. It is the
+   * product of p^(e - 1) * (p - 1) over every prime power p^e, which is never
+   * more than n, so it cannot overflow.
+   *
+   * @return long - the totient. 1 for 1.
+   */
+  public long totient() {
+    long ret = 1;
+    for (int aa = 0; aa < primes.length; aa++) {
+      ret *= primes[aa] - 1;
+      for (int bb = 1; bb < exponents[aa]; bb++) {
+        ret *= primes[aa];
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Builds every divisor, as {@link YetAnotherUtility#computeFactors(long)}
+   * returns them. Only worth doing when the divisors themselves are needed:
+   * there can be tens of thousands of them.
+   *
+   * @return long[] - every divisor, in ascending order
+   */
+  public long[] toFactors() {
+    return PrimeFactorizer.divisors(primes, exponents, primes.length);
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof PrimeFactorization)) {
+      return false;
+    }
+    // Prime factorizations are unique, so the numbers say it all
+    return compoundInteger == ((PrimeFactorization) other).compoundInteger;
+  }
+
+  @Override
+  public int hashCode() {
+    return Long.hashCode(compoundInteger);
+  }
+
+  /**
+   * @return String - the factorization, like "2^3 * 3^2 * 5". "1" for 1.
+   */
+  @Override
+  public String toString() {
+    if (primes.length == 0) {
+      return "1";
+    }
+    StringBuilder ret = new StringBuilder();
+    for (int aa = 0; aa < primes.length; aa++) {
+      if (aa > 0) {
+        ret.append(" * ");
+      }
+      ret.append(primes[aa]);
+      if (exponents[aa] > 1) {
+        ret.append('^').append(exponents[aa]);
+      }
+    }
+    return ret.toString();
+  }
+
+}
@@ -0,0 +1,442 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+/**
+ * Prime factorization engine for the full range of positive <code>long</code>
+ * values.
+ *
+ * Small prime factors are removed by trial division, using multiplication by
+ * modular inverses rather than hardware division. Whatever is left is split
+ * with Pollard's rho algorithm (Brent's variant, with batched GCDs) until every
+ * piece passes a deterministic Miller-Rabin primality test.
+ *
+ * https://en.wikipedia.org/wiki/Pollard%27s_rho_algorithm
+ * https://en.wikipedia.org/wiki/Miller%E2%80%93Rabin_primality_test
+ *
+ * @author J Steven Perry
+ *
+ */
+public final class PrimeFactorizer {
+
+  /**
+   * The product of the first 16 primes exceeds Long.MAX_VALUE, so no positive
+   * long has more than 15 distinct prime factors.
+   */
+  public static final int MAX_DISTINCT_PRIMES = 15;
+
+  /**
+   * Odd trial divisors up to this bound are tried before handing the
+   * remaining cofactor to Pollard's rho.
+   */
+  static final long SMALL_FACTOR_BOUND = 1024;
+
+  /**
+   * Miller-Rabin bases that give a deterministic answer for every 64-bit
+   * integer (Jim Sinclair's set).
+   */
+  private static final long[] MILLER_RABIN_BASES = { 2, 325, 9375, 28178, 450775, 9780504, 1795265022 };
+
+  /**
+   * Bases 2, 7 and 61 are enough for everything below 4,759,123,141, which
+   * saves more than half the rounds for 32-bit candidates.
+   */
+  private static final long[] MILLER_RABIN_BASES_32_BIT = { 2, 7, 61 };
+
+  private static final long MILLER_RABIN_32_BIT_LIMIT = 4759123141L;
+
+  /**
+   * Number of rho steps whose differences are multiplied together before
+   * taking a single GCD.
+   */
+  private static final int GCD_BATCH_SIZE = 128;
+
+  /**
+   * floor(sqrt(Long.MAX_VALUE)). Squaring anything larger overflows.
+   */
+  private static final long MAX_LONG_SQUARE_ROOT = 3037000499L;
+
+  private PrimeFactorizer() {
+    // Static methods only
+  }
+
+  /**
+   * Computes the prime factorization of the specified number.
+   *
+   * @param compoundInteger
+   *          The number to factor. Must be greater than zero.
+   * @param primes
+   *          Receives the distinct prime factors, in ascending order. Must have
+   *          room for {@link #MAX_DISTINCT_PRIMES} entries.
+   * @param exponents
+   *          Receives the exponent of each prime factor, parallel to primes.
+   *          Must have room for {@link #MAX_DISTINCT_PRIMES} entries.
+   *
+   * @return int - the number of distinct prime factors written. Zero for 1.
+   *
+   * @throws IllegalArgumentException
+   *           if the compound integer is not positive
+   */
+  public static int factor(long compoundInteger, long[] primes, int[] exponents) {
+    if (compoundInteger <= 0) {
+      throw new IllegalArgumentException("Candidate integer must be a positive number!");
+    }
+    int count = 0;
+    long remaining = compoundInteger;
+    //
+    // Powers of two come straight from the bit pattern
+    int twos = Long.numberOfTrailingZeros(remaining);
+    if (twos > 0) {
+      remaining >>>= twos;
+      count = addPrimePower(primes, exponents, count, 2, twos);
+    }
+    //
+    // Small odd prime factors by trial division, without dividing: for a prime
+    // p with inverse p' mod 2^64, remaining * p' is the exact quotient when p
+    // divides remaining, and is above floor((2^64 - 1) / p) when it doesn't
+    // (see DivisibilityScreen)
+    for (int aa = 0; aa < DivisibilityScreen.PRIMES.length; aa++) {
+      long prime = DivisibilityScreen.PRIMES[aa];
+      if (prime * prime > remaining) {
+        break;
+      }
+      long inverse = DivisibilityScreen.INVERSES[aa];
+      long limit = DivisibilityScreen.LIMITS[aa];
+      long quotient = remaining * inverse;
+      if (Long.compareUnsigned(quotient, limit) < 0) {
+        int exponent = 0;
+        do {
+          remaining = quotient;
+          exponent++;
+          quotient = remaining * inverse;
+        } while (Long.compareUnsigned(quotient, limit) < 0);
+        count = addPrimePower(primes, exponents, count, prime, exponent);
+      }
+    }
+    return addLargePrimeFactors(remaining, primes, exponents, count);
+  }
+
+  /**
+   * Computes the prime factorization of one value of a batch that has been
+   * through {@link DivisibilityScreen#screen}. The screen has already said
+   * which small primes divide it, so the only divisions left are the ones
+   * that actually take those primes out. The screen only has to have covered
+   * the primes up to the square root of the value.
+   *
+   * @param compoundInteger
+   *          The number to factor. Must be greater than zero.
+   * @param primes
+   *          Receives the distinct prime factors, in ascending order
+   * @param exponents
+   *          Receives the exponent of each prime factor
+   * @param masks
+   *          The masks from the screen
+   * @param length
+   *          The number of values that were screened together
+   * @param index
+   *          The index of this value among them
+   *
+   * @return int - the number of distinct prime factors written. Zero for 1.
+   */
+  static int factor(long compoundInteger, long[] primes, int[] exponents, long[] masks, int length, int index) {
+    if (compoundInteger <= 0) {
+      throw new IllegalArgumentException("Candidate integer must be a positive number!");
+    }
+    int count = 0;
+    long remaining = compoundInteger;
+    int twos = Long.numberOfTrailingZeros(remaining);
+    if (twos > 0) {
+      remaining >>>= twos;
+      count = addPrimePower(primes, exponents, count, 2, twos);
+    }
+    for (int word = 0; word < DivisibilityScreen.WORDS; word++) {
+      for (long bits = masks[word * length + index]; bits != 0; bits &= bits - 1) {
+        int aa = word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+        long inverse = DivisibilityScreen.INVERSES[aa];
+        long limit = DivisibilityScreen.LIMITS[aa];
+        int exponent = 0;
+        do {
+          remaining *= inverse;
+          exponent++;
+        } while (Long.compareUnsigned(remaining * inverse, limit) < 0);
+        count = addPrimePower(primes, exponents, count, DivisibilityScreen.PRIMES[aa], exponent);
+      }
+    }
+    return addLargePrimeFactors(remaining, primes, exponents, count);
+  }
+
+  /**
+   * Adds the prime factors of what is left once every factor up to
+   * SMALL_FACTOR_BOUND is gone.
+   */
+  private static int addLargePrimeFactors(long remaining, long[] primes, int[] exponents, int count) {
+    if (remaining == 1) {
+      return count;
+    }
+    if (remaining <= SMALL_FACTOR_BOUND * SMALL_FACTOR_BOUND) {
+      // No factor up to its square root, so it has to be prime
+      return addPrimePower(primes, exponents, count, remaining, 1);
+    }
+    //
+    // Split what is left until only primes remain
+    return addPrimeFactors(remaining, primes, exponents, count);
+  }
+
+  /**
+   * Adds the prime factors of a number with no factor up to
+   * SMALL_FACTOR_BOUND, splitting it recursively. Each split at least halves
+   * the pieces, so the recursion is never more than 63 deep, and nothing is
+   * allocated on the way.
+   */
+  private static int addPrimeFactors(long composite, long[] primes, int[] exponents, int count) {
+    if (isPrime(composite)) {
+      return addPrimePower(primes, exponents, count, composite, 1);
+    }
+    long divisor = findDivisor(composite);
+    int ret = addPrimeFactors(divisor, primes, exponents, count);
+    return addPrimeFactors(composite / divisor, primes, exponents, ret);
+  }
+
+  /**
+   * Builds every divisor of a number from its prime factorization.
+   *
+   * The divisors are generated already sorted: for each prime p^e the current
+   * sorted list L is merged with L*p, L*p^2, ... L*p^e, each of which is sorted
+   * too. No boxing, and no sort pass at the end.
+   *
+   * @param primes
+   *          The distinct prime factors, ascending
+   * @param exponents
+   *          The exponent of each prime factor
+   * @param count
+   *          The number of distinct prime factors
+   *
+   * @return long[] - every divisor, in ascending order
+   */
+  public static long[] divisors(long[] primes, int[] exponents, int count) {
+    int total = (int) DivisorIterator.divisorCount(exponents, count);
+    return divisors(primes, exponents, count, new long[total], new long[total], new long[total]);
+  }
+
+  /**
+   * Builds every divisor into caller-supplied buffers, each with room for at
+   * least {@link DivisorIterator#divisorCount(int[], int)} entries. The buffers take turns
+   * holding the result as the runs are merged.
+   *
+   * @return long[] - whichever of the buffers ended up holding the divisors
+   */
+  static long[] divisors(long[] primes, int[] exponents, int count, long[] current, long[] merged, long[] block) {
+    current[0] = 1;
+    int length = 1;
+    for (int aa = 0; aa < count; aa++) {
+      long prime = primes[aa];
+      int baseLength = length;
+      System.arraycopy(current, 0, block, 0, baseLength);
+      for (int power = 1; power <= exponents[aa]; power++) {
+        for (int bb = 0; bb < baseLength; bb++) {
+          block[bb] *= prime;
+        }
+        length = merge(current, length, block, baseLength, merged);
+        long[] swap = current;
+        current = merged;
+        merged = swap;
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Deterministic Miller-Rabin primality test, valid for every long.
+   *
+   * @param candidate
+   *          The number to test
+   *
+   * @return boolean - true if the candidate is prime
+   */
+  static boolean isPrime(long candidate) {
+    if (candidate < 2) {
+      return false;
+    }
+    if ((candidate & 1) == 0) {
+      return candidate == 2;
+    }
+    if (candidate < 9) {
+      return true; // 3, 5, 7
+    }
+    long oddPart = candidate - 1;
+    int twos = Long.numberOfTrailingZeros(oddPart);
+    oddPart >>>= twos;
+    long[] bases = (candidate < MILLER_RABIN_32_BIT_LIMIT) ? MILLER_RABIN_BASES_32_BIT : MILLER_RABIN_BASES;
+    long inverse = MontgomeryArithmetic.inverse(candidate);
+    long one = MontgomeryArithmetic.one(candidate);
+    for (long base : bases) {
+      long witness = base % candidate;
+      if (witness == 0) {
+        continue;
+      }
+      if (isCompositeWitness(ModularArithmetic.mulMod(witness, one, candidate), oddPart, twos, candidate, inverse,
+          one)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * One Miller-Rabin round, in Montgomery form: does this witness prove the
+   * candidate composite?
+   */
+  private static boolean isCompositeWitness(long witness, long oddPart, int twos, long candidate, long inverse,
+      long one) {
+    long minusOne = candidate - one;
+    long x = MontgomeryArithmetic.pow(witness, oddPart, one, candidate, inverse);
+    if (x == one || x == minusOne) {
+      return false;
+    }
+    for (int aa = 1; aa < twos; aa++) {
+      x = MontgomeryArithmetic.multiply(x, x, candidate, inverse);
+      if (x == minusOne) {
+        return false;
+      }
+      if (x == one) {
+        return true;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Finds a non-trivial divisor of an odd composite, retrying Pollard-Brent
+   * with a different polynomial whenever a run degenerates.
+   */
+  private static long findDivisor(long composite) {
+    long root = squareRoot(composite);
+    if (root * root == composite) {
+      return root;
+    }
+    long inverse = MontgomeryArithmetic.inverse(composite);
+    long one = MontgomeryArithmetic.one(composite);
+    for (long increment = 1;; increment++) {
+      long divisor = pollardBrent(composite, inverse, one, increment);
+      if (divisor != composite) {
+        return divisor;
+      }
+    }
+  }
+
+  /**
+   * Brent's variant of Pollard's rho using f(x) = x^2 + c. The differences
+   * are accumulated GCD_BATCH_SIZE at a time so we only pay for one GCD per
+   * batch, backtracking one step at a time if a batch overshoots.
+   *
+   * Everything stays in Montgomery form. That scales each difference (and the
+   * running product) by a power of R, which is coprime to the composite, so
+   * the GCDs come out the same.
+   *
+   * @return long - a divisor of the composite, which may be the composite
+   *         itself if this polynomial failed
+   */
+  private static long pollardBrent(long composite, long inverse, long one, long increment) {
+    long y = 2;
+    long x = y;
+    long saved = y;
+    long product = one;
+    long divisor = 1;
+    for (long cycleLength = 1; divisor == 1; cycleLength <<= 1) {
+      x = y;
+      for (long aa = 0; aa < cycleLength; aa++) {
+        y = step(y, increment, composite, inverse);
+      }
+      for (long done = 0; done < cycleLength && divisor == 1; done += GCD_BATCH_SIZE) {
+        saved = y;
+        long batch = Math.min(GCD_BATCH_SIZE, cycleLength - done);
+        for (long bb = 0; bb < batch; bb++) {
+          y = step(y, increment, composite, inverse);
+          product = MontgomeryArithmetic.multiply(product, Math.abs(x - y), composite, inverse);
+        }
+        divisor = ModularArithmetic.gcd(product, composite);
+      }
+    }
+    if (divisor == composite) {
+      // The batch overshot: replay it one GCD at a time
+      do {
+        saved = step(saved, increment, composite, inverse);
+        divisor = ModularArithmetic.gcd(Math.abs(x - saved), composite);
+      } while (divisor == 1);
+    }
+    return divisor;
+  }
+
+  private static long step(long value, long increment, long modulus, long inverse) {
+    return ModularArithmetic.addMod(MontgomeryArithmetic.multiply(value, value, modulus, inverse), increment,
+        modulus);
+  }
+
+  /**
+   * Integer square root, floor(sqrt(value)).
+   */
+  static long squareRoot(long value) {
+    long root = (long) Math.sqrt((double) value);
+    while (root * root > value) {
+      root--;
+    }
+    while (root < MAX_LONG_SQUARE_ROOT && (root + 1) * (root + 1) <= value) {
+      root++;
+    }
+    return root;
+  }
+
+  /**
+   * Records prime^exponent, keeping the primes in ascending order and merging
+   * with an entry already present for the same prime.
+   */
+  private static int addPrimePower(long[] primes, int[] exponents, int count, long prime, int exponent) {
+    int index = count;
+    while (index > 0 && primes[index - 1] > prime) {
+      index--;
+    }
+    if (index > 0 && primes[index - 1] == prime) {
+      exponents[index - 1] += exponent;
+      return count;
+    }
+    System.arraycopy(primes, index, primes, index + 1, count - index);
+    System.arraycopy(exponents, index, exponents, index + 1, count - index);
+    primes[index] = prime;
+    exponents[index] = exponent;
+    return count + 1;
+  }
+
+  /**
+   * Merges two sorted runs into the target array.
+   */
+  private static int merge(long[] left, int leftLength, long[] right, int rightLength, long[] target) {
+    int ll = 0;
+    int rr = 0;
+    int tt = 0;
+    while (ll < leftLength && rr < rightLength) {
+      target[tt++] = (left[ll] <= right[rr]) ? left[ll++] : right[rr++];
+    }
+    while (ll < leftLength) {
+      target[tt++] = left[ll++];
+    }
+    while (rr < rightLength) {
+      target[tt++] = right[rr++];
+    }
+    return tt;
+  }
+
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Factors every integer in a range [from, to) in one pass with a segmented
+ * sieve, instead of factoring each value on its own.
+ *
+ * https://en.wikipedia.org/wiki/Sieve_of_Eratosthenes#Segmented_sieve
+ *
+ * The range is processed one segment at a time. Each base prime only visits
+ * its own multiples within a segment, dividing itself out of them. Base primes
+ * go up to sqrt(to), capped at {@link #MAX_BASE_PRIME}; once they are all
+ * divided out, whatever is left of a value below MAX_BASE_PRIME^2 is a single
+ * prime, and anything bigger is finished off by {@link PrimeFactorizer}. Memory
+ * depends on the segment size and the base primes, never on the width of the
+ * range.
+ *
+ * @author J Steven Perry
+ *
+ */
+public final class RangeFactorizer {
+
+  /**
+   * Default number of values per segment. The working buffer for the values
+   * themselves is 8 bytes a value, so this keeps it within a typical L2 cache.
+   */
+  public static final int DEFAULT_SEGMENT_SIZE = 1 << 14;
+
+  /**
+   * Largest base prime sieved with. Past this, keeping the base primes around
+   * costs more than handing the occasional leftover to Pollard's rho.
+   */
+  static final int MAX_BASE_PRIME = 1 << 21;
+
+  /**
+   * Segments per fork/join leaf task when factoring in parallel.
+   */
+  private static final int SEGMENTS_PER_TASK = 4;
+
+  private RangeFactorizer() {
+    // Static methods only
+  }
+
+  /**
+   * Factors every integer in [from, to) on the calling thread, in ascending
+   * order.
+   *
+   * @param from
+   *          The first number to factor (inclusive). Must be positive.
+   * @param to
+   *          The end of the range (exclusive)
+   * @param consumer
+   *          Receives each factorization
+   *
+   * @throws IllegalArgumentException
+   *           if the range is invalid
+   */
+  public static void factorRange(long from, long to, FactorizationConsumer consumer) {
+    factorRange(from, to, DEFAULT_SEGMENT_SIZE, consumer, null);
+  }
+
+  /**
+   * Factors every integer in [from, to), with segments spread across the
+   * specified pool. Within a segment values arrive in ascending order, but
+   * segments arrive in no particular order, and from several threads at once.
+   *
+   * @param from
+   *          The first number to factor (inclusive). Must be positive.
+   * @param to
+   *          The end of the range (exclusive)
+   * @param consumer
+   *          Receives each factorization. Must be thread-safe.
+   * @param pool
+   *          The pool to do the work on
+   *
+   * @throws IllegalArgumentException
+   *           if the range is invalid
+   */
+  public static void factorRange(long from, long to, FactorizationConsumer consumer, ForkJoinPool pool) {
+    factorRange(from, to, DEFAULT_SEGMENT_SIZE, consumer, pool);
+  }
+
+  /**
+   * Factors every integer in [from, to) with the specified segment size.
+   *
+   * @param from
+   *          The first number to factor (inclusive). Must be positive.
+   * @param to
+   *          The end of the range (exclusive)
+   * @param segmentSize
+   *          The number of values per segment
+   * @param consumer
+   *          Receives each factorization. Must be thread-safe if a pool is
+   *          used.
+   * @param pool
+   *          The pool to do the work on, or null to use the calling thread
+   *
+   * @throws IllegalArgumentException
+   *           if the range or segment size is invalid
+   */
+  public static void factorRange(long from, long to, int segmentSize, FactorizationConsumer consumer,
+      ForkJoinPool pool) {
+    if (from <= 0 || to < from) {
+      throw new IllegalArgumentException("Range must be [from, to) with 0 < from <= to!");
+    }
+    if (segmentSize <= 0 || segmentSize > Integer.MAX_VALUE / PrimeFactorizer.MAX_DISTINCT_PRIMES) {
+      throw new IllegalArgumentException("Segment size must be positive, and small enough to allocate!");
+    }
+    if (from == to) {
+      return;
+    }
+    int[] basePrimes = primesUpTo((int) Math.min(MAX_BASE_PRIME, PrimeFactorizer.squareRoot(to - 1)));
+    long segmentCount = (to - from + segmentSize - 1) / segmentSize;
+    if (pool == null) {
+      factorSegments(from, to, segmentSize, basePrimes, consumer, 0, segmentCount);
+    } else {
+      pool.invoke(new SegmentTask(from, to, segmentSize, basePrimes, consumer, 0, segmentCount));
+    }
+  }
+
+  /**
+   * Plain sieve of Eratosthenes over the odd numbers, for the base primes.
+   */
+  static int[] primesUpTo(int limit) {
+    if (limit < 2) {
+      return new int[0];
+    }
+    // Bit i stands for 2i + 1
+    BitSet composite = new BitSet(limit / 2 + 1);
+    for (long odd = 3; odd * odd <= limit; odd += 2) {
+      if (!composite.get((int) (odd >>> 1))) {
+        for (long multiple = odd * odd; multiple <= limit; multiple += 2 * odd) {
+          composite.set((int) (multiple >>> 1));
+        }
+      }
+    }
+    int oddCount = (limit - 1) / 2;
+    int[] ret = new int[1 + oddCount - composite.get(1, oddCount + 1).cardinality()];
+    int size = 0;
+    ret[size++] = 2;
+    for (int index = composite.nextClearBit(1); index <= oddCount; index = composite.nextClearBit(index + 1)) {
+      ret[size++] = 2 * index + 1;
+    }
+    return ret;
+  }
+
+  /**
+   * Factors segments [firstSegment, lastSegment) one after another, reusing
+   * one set of buffers.
+   */
+  private static void factorSegments(long from, long to, int segmentSize, int[] basePrimes,
+      FactorizationConsumer consumer, long firstSegment, long lastSegment) {
+    Segment segment = new Segment(segmentSize);
+    for (long index = firstSegment; index < lastSegment; index++) {
+      long low = from + index * segmentSize;
+      long high = (to - low > segmentSize) ? low + segmentSize : to;
+      segment.factor(low, high, basePrimes, consumer);
+    }
+  }
+
+  /**
+   * Working buffers for one segment: the unfactored part of each value, and
+   * a fixed-size slot of primes and exponents per value.
+   */
+  private static final class Segment {
+
+    private final long[] remaining;
+    private final int[] counts;
+    private final long[] primes;
+    private final int[] exponents;
+
+    /**
+     * Scratch space for leftovers that need PrimeFactorizer.
+     */
+    private final long[] leftoverPrimes = new long[PrimeFactorizer.MAX_DISTINCT_PRIMES];
+    private final int[] leftoverExponents = new int[PrimeFactorizer.MAX_DISTINCT_PRIMES];
+
+    Segment(int segmentSize) {
+      remaining = new long[segmentSize];
+      counts = new int[segmentSize];
+      primes = new long[segmentSize * PrimeFactorizer.MAX_DISTINCT_PRIMES];
+      exponents = new int[segmentSize * PrimeFactorizer.MAX_DISTINCT_PRIMES];
+    }
+
+    void factor(long low, long high, int[] basePrimes, FactorizationConsumer consumer) {
+      int size = (int) (high - low);
+      for (int aa = 0; aa < size; aa++) {
+        remaining[aa] = low + aa;
+        counts[aa] = 0;
+      }
+      long largestValue = high - 1;
+      for (int prime : basePrimes) {
+        if ((long) prime * prime > largestValue) {
+          break;
+        }
+        long remainder = low % prime;
+        for (long offset = (remainder == 0) ? 0 : prime - remainder; offset < size; offset += prime) {
+          int slot = (int) offset;
+          long value = remaining[slot];
+          int exponent = 0;
+          do {
+            value /= prime;
+            exponent++;
+          } while (value % prime == 0);
+          remaining[slot] = value;
+          record(slot, prime, exponent);
+        }
+      }
+      long primeBound = (long) MAX_BASE_PRIME * MAX_BASE_PRIME;
+      for (int slot = 0; slot < size; slot++) {
+        long leftover = remaining[slot];
+        if (leftover > 1 && leftover < primeBound) {
+          // Every prime up to its square root is gone, so this is prime
+          record(slot, leftover, 1);
+        } else if (leftover > 1) {
+          int leftoverCount = PrimeFactorizer.factor(leftover, leftoverPrimes, leftoverExponents);
+          for (int aa = 0; aa < leftoverCount; aa++) {
+            record(slot, leftoverPrimes[aa], leftoverExponents[aa]);
+          }
+        }
+        consumer.accept(low + slot, primes, exponents, slot * PrimeFactorizer.MAX_DISTINCT_PRIMES, counts[slot]);
+      }
+    }
+
+    private void record(int slot, long prime, int exponent) {
+      int index = slot * PrimeFactorizer.MAX_DISTINCT_PRIMES + counts[slot]++;
+      primes[index] = prime;
+      exponents[index] = exponent;
+    }
+
+  }
+
+  /**
+   * Splits a run of segments in half until it is short enough to do on one
+   * thread.
+   */
+  private static final class SegmentTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long from;
+    private final long to;
+    private final int segmentSize;
+    private final int[] basePrimes;
+    private final FactorizationConsumer consumer;
+    private final long firstSegment;
+    private final long lastSegment;
+
+    SegmentTask(long from, long to, int segmentSize, int[] basePrimes, FactorizationConsumer consumer,
+        long firstSegment, long lastSegment) {
+      this.from = from;
+      this.to = to;
+      this.segmentSize = segmentSize;
+      this.basePrimes = basePrimes;
+      this.consumer = consumer;
+      this.firstSegment = firstSegment;
+      this.lastSegment = lastSegment;
+    }
+
+    @Override
+    protected void compute() {
+      if (lastSegment - firstSegment <= SEGMENTS_PER_TASK) {
+        factorSegments(from, to, segmentSize, basePrimes, consumer, firstSegment, lastSegment);
+      } else {
+        long middle = firstSegment + (lastSegment - firstSegment) / 2;
+        invokeAll(new SegmentTask(from, to, segmentSize, basePrimes, consumer, firstSegment, middle),
+            new SegmentTask(from, to, segmentSize, basePrimes, consumer, middle, lastSegment));
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,407 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Smallest prime factor (SPF) of every number below a fixed limit, built once
+ * with a linear sieve. Factoring a number below the limit then takes one
+ * lookup per prime factor.
+ *
+ * https://en.wikipedia.org/wiki/Sieve_of_Eratosthenes#Linear_sieve
+ *
+ * The table is kept compact: only odd numbers are stored (the smallest prime
+ * factor of an even number is 2), and each entry is a 16-bit char. The smallest
+ * prime factor of an odd composite below 2^32 is below its square root, so it
+ * always fits; primes are stored as 0. That is one byte per number in range.
+ *
+ * A table can be saved to a file and later mapped straight back into memory
+ * with {@link #load(Path, int)}, which is far quicker than sieving again. A
+ * mapped table lives off-heap, in pages the operating system shares between
+ * every process that maps the same file. The file layout (all little-endian) is
+ *
+ * <pre>
+ * int  magic      "SPFT"
+ * int  version    FILE_VERSION
+ * int  limit
+ * int  entries    number of chars that follow the header
+ * long checksum   CRC32 of the entries
+ * char entries[]
+ * </pre>
+ *
+ * At the largest limit, Integer.MAX_VALUE, the entries take 2 GiB, more than
+ * one buffer or mapping can hold, so the table is kept in segments of at most
+ * 1 GiB, and saved a chunk at a time.
+ *
+ * Instances are immutable once built and safe to share between threads.
+ *
+ * @author J Steven Perry
+ *
+ */
+public final class SmallestPrimeFactorTable {
+
+  private static final int FILE_MAGIC = 0x53504654;
+
+  /**
+   * Bump this whenever the file layout or the table encoding changes, so old
+   * files are rebuilt rather than misread.
+   */
+  static final int FILE_VERSION = 1;
+
+  static final int HEADER_SIZE = 24;
+
+  /**
+   * Entries per segment, as a power of two: 2^29 chars is 1 GiB.
+   */
+  static final int SEGMENT_SHIFT = 29;
+
+  /**
+   * How much of the table save converts to bytes at a time.
+   */
+  private static final int SAVE_CHUNK_SIZE = 1 << 20;
+
+  /**
+   * Smallest prime factor of 2 * index + 1, or 0 if that number is prime (or 1),
+   * in segments of 2^segmentShift entries. Each either wraps part of a heap
+   * array or views part of a read-only mapped file.
+   */
+  private final CharBuffer[] segments;
+
+  private final int segmentShift;
+
+  private final int limit;
+
+  private final boolean mapped;
+
+  /**
+   * Builds the table for every number below the specified limit.
+   *
+   * @param limit
+   *          The exclusive upper bound of the table. Must be at least 2.
+   *
+   * @throws IllegalArgumentException
+   *           if the limit is less than 2
+   */
+  public SmallestPrimeFactorTable(int limit) {
+    this(limit, SEGMENT_SHIFT);
+  }
+
+  /**
+   * Builds the table in segments of the specified size, which tests make
+   * small.
+   */
+  SmallestPrimeFactorTable(int limit, int segmentShift) {
+    if (limit < 2) {
+      throw new IllegalArgumentException("Limit must be at least 2!");
+    }
+    char[] table = sieve(limit);
+    this.limit = limit;
+    this.segmentShift = segmentShift;
+    this.segments = new CharBuffer[segmentCount(table.length, segmentShift)];
+    for (int aa = 0; aa < segments.length; aa++) {
+      int start = aa << segmentShift;
+      segments[aa] = CharBuffer.wrap(table, start, Math.min(1 << segmentShift, table.length - start)).slice();
+    }
+    this.mapped = false;
+  }
+
+  private SmallestPrimeFactorTable(int limit, CharBuffer[] segments, int segmentShift) {
+    this.limit = limit;
+    this.segments = segments;
+    this.segmentShift = segmentShift;
+    this.mapped = true;
+  }
+
+  private static int segmentCount(long entries, int segmentShift) {
+    return (int) ((entries + (1L << segmentShift) - 1) >>> segmentShift);
+  }
+
+  /**
+   * @return long - the number of bytes the entries take for the specified
+   *         limit: 2^31 at Integer.MAX_VALUE, which doesn't fit in an int
+   */
+  static long payloadSize(int limit) {
+    return (limit + 1L) / 2 * Character.BYTES;
+  }
+
+  /**
+   * Opens the table saved in the specified file, or builds it (and saves it
+   * there for next time) if the file is missing, corrupt, from a different
+   * file version or for a different limit.
+   *
+   * @param file
+   *          The file the table lives in
+   * @param limit
+   *          The exclusive upper bound of the table. Must be at least 2.
+   *
+   * @return SmallestPrimeFactorTable - a table mapped from the file, or a
+   *         freshly built one
+   *
+   * @throws IOException
+   *           if a rebuilt table cannot be saved
+   */
+  public static SmallestPrimeFactorTable load(Path file, int limit) throws IOException {
+    SmallestPrimeFactorTable ret = null;
+    if (Files.isRegularFile(file)) {
+      ret = map(file, limit);
+    }
+    if (ret == null) {
+      ret = new SmallestPrimeFactorTable(limit);
+      ret.save(file);
+    }
+    return ret;
+  }
+
+  /**
+   * Maps a saved table, checking that it is complete and intact.
+   *
+   * @return SmallestPrimeFactorTable - the mapped table, or null if the file
+   *         can't be used
+   */
+  private static SmallestPrimeFactorTable map(Path file, int limit) {
+    return map(file, limit, SEGMENT_SHIFT);
+  }
+
+  /**
+   * Maps a saved table in segments of the specified size.
+   */
+  static SmallestPrimeFactorTable map(Path file, int limit, int segmentShift) {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long payloadSize = payloadSize(limit);
+      long entries = payloadSize / Character.BYTES;
+      if (channel.size() != HEADER_SIZE + payloadSize) {
+        return null;
+      }
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      while (header.hasRemaining() && channel.read(header) >= 0) {
+        // Keep reading until the header is full
+      }
+      header.flip();
+      if (header.remaining() < HEADER_SIZE || header.getInt() != FILE_MAGIC || header.getInt() != FILE_VERSION
+          || header.getInt() != limit || header.getInt() != entries) {
+        return null;
+      }
+      long checksum = header.getLong();
+      CRC32 crc = new CRC32();
+      CharBuffer[] segments = new CharBuffer[segmentCount(entries, segmentShift)];
+      for (int aa = 0; aa < segments.length; aa++) {
+        long start = ((long) aa << segmentShift) * Character.BYTES;
+        ByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + start,
+            Math.min((long) Character.BYTES << segmentShift, payloadSize - start)).order(ByteOrder.LITTLE_ENDIAN);
+        crc.update(segment.duplicate());
+        segments[aa] = segment.asCharBuffer();
+      }
+      if (crc.getValue() != checksum) {
+        return null;
+      }
+      return new SmallestPrimeFactorTable(limit, segments, segmentShift);
+    } catch (IOException | IllegalArgumentException e) {
+      // Unreadable, or too big to map, counts as corrupt: the caller rebuilds
+      return null;
+    }
+  }
+
+  /**
+   * Saves this table to the specified file. The file is written next to its
+   * destination and moved into place, so readers never see half a table.
+   *
+   * @param file
+   *          The file to write
+   *
+   * @throws IOException
+   *           if the file cannot be written
+   */
+  public void save(Path file) throws IOException {
+    Path directory = file.toAbsolutePath().getParent();
+    Path temporaryFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+    try {
+      try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.WRITE)) {
+        // The entries go out a chunk at a time, rather than as one copy of
+        // the whole table, and the header, with their checksum, last
+        ByteBuffer chunk = ByteBuffer.allocate(SAVE_CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        CRC32 crc = new CRC32();
+        long position = HEADER_SIZE;
+        long entries = 0;
+        for (CharBuffer segment : segments) {
+          CharBuffer source = segment.duplicate();
+          entries += source.remaining();
+          while (source.hasRemaining()) {
+            int length = Math.min(source.remaining(), SAVE_CHUNK_SIZE / Character.BYTES);
+            CharBuffer part = source.duplicate();
+            part.limit(part.position() + length);
+            source.position(source.position() + length);
+            chunk.clear();
+            chunk.asCharBuffer().put(part);
+            chunk.limit(length * Character.BYTES);
+            crc.update(chunk.array(), 0, chunk.limit());
+            position += writeFully(channel, chunk, position);
+          }
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(FILE_MAGIC).putInt(FILE_VERSION).putInt(limit).putInt((int) entries).putLong(crc.getValue());
+        header.flip();
+        writeFully(channel, header, 0);
+        channel.force(true);
+      }
+      Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temporaryFile);
+    }
+  }
+
+  /**
+   * Writes all of the buffer at the specified file position.
+   *
+   * @return int - the number of bytes written
+   */
+  private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+    int ret = buffer.remaining();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer, position + ret - buffer.remaining());
+    }
+    return ret;
+  }
+
+  /**
+   * Linear sieve over the odd numbers. Every odd composite below the limit is
+   * marked exactly once, by its smallest prime factor, so the build is O(limit).
+   * Only primes below sqrt(limit) can ever do any marking, so those are the
+   * only ones we keep.
+   */
+  private static char[] sieve(int limit) {
+    char[] table = new char[(int) ((limit + 1L) / 2)];
+    int[] primes = new int[Math.max(16, (int) PrimeFactorizer.squareRoot(limit) / 2)];
+    int primeCount = 0;
+    for (int index = 1; index < table.length; index++) {
+      long number = 2L * index + 1;
+      long largestMarker = table[index];
+      if (largestMarker == 0) {
+        largestMarker = number;
+        if (number * number < limit) {
+          primes[primeCount++] = (int) number;
+        }
+      }
+      for (int aa = 0; aa < primeCount; aa++) {
+        long prime = primes[aa];
+        long multiple = number * prime;
+        if (prime > largestMarker || multiple >= limit) {
+          break;
+        }
+        table[(int) (multiple >>> 1)] = (char) prime;
+      }
+    }
+    return table;
+  }
+
+  /**
+   * @return int - the exclusive upper bound of the table
+   */
+  public int getLimit() {
+    return limit;
+  }
+
+  /**
+   * @return boolean - true if the specified number can be looked up in this
+   *         table
+   */
+  public boolean covers(long number) {
+    return number > 0 && number < limit;
+  }
+
+  /**
+   * Looks up the smallest prime factor of the specified number.
+   *
+   * @param number
+   *          A number covered by this table, greater than 1
+   *
+   * @return long - the smallest prime factor, which is the number itself if it
+   *         is prime
+   */
+  public long smallestPrimeFactor(long number) {
+    if ((number & 1) == 0) {
+      return 2;
+    }
+    int index = (int) (number >>> 1);
+    char factor = segments[index >>> segmentShift].get(index & ((1 << segmentShift) - 1));
+    return (factor == 0) ? number : factor;
+  }
+
+  /**
+   * Computes the prime factorization of the specified number by repeated
+   * lookups, in the same format as
+   * {@link PrimeFactorizer#factor(long, long[], int[])}.
+   *
+   * @param number
+   *          A number covered by this table
+   * @param primes
+   *          Receives the distinct prime factors, in ascending order
+   * @param exponents
+   *          Receives the exponent of each prime factor
+   *
+   * @return int - the number of distinct prime factors written
+   */
+  public int factor(long number, long[] primes, int[] exponents) {
+    if (!covers(number)) {
+      throw new IllegalArgumentException("Number must be positive and below the table limit of " + limit + "!");
+    }
+    int count = 0;
+    long remaining = number;
+    while (remaining > 1) {
+      long prime = smallestPrimeFactor(remaining);
+      int exponent = 0;
+      do {
+        remaining /= prime;
+        exponent++;
+      } while (remaining % prime == 0);
+      primes[count] = prime;
+      exponents[count] = exponent;
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * @return long - the number of bytes the table itself occupies, on the heap
+   *         or off it (see {@link #isMapped()})
+   */
+  public long getMemoryFootprint() {
+    long ret = 0;
+    for (CharBuffer segment : segments) {
+      ret += (long) segment.capacity() * Character.BYTES;
+    }
+    return ret;
+  }
+
+  /**
+   * @return boolean - true if the table is mapped from a file (off-heap), false
+   *         if it was built on the heap
+   */
+  public boolean isMapped() {
+    return mapped;
+  }
+
+}
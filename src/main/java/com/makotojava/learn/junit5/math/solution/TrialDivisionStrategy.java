@@ -0,0 +1,187 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+/**
+ * How computeFactors picks trial divisors for numbers up to
+ * {@link YetAnotherUtility#TRIAL_DIVISION_LIMIT}, set with
+ * {@link YetAnotherUtility#setTrialDivisionStrategy}.
+ *
+ * Trying every integer finds each divisor pair directly, but most of the
+ * candidates are multiples of 2, 3, 5 or 7 and can only divide the number if
+ * a smaller prime already does. The other strategies only try plausible prime
+ * candidates, find the prime factorization that way, and build the factors
+ * from it.
+ *
+ * @author J Steven Perry
+ *
+ */
+public enum TrialDivisionStrategy {
+
+  /**
+   * Every integer from 2 up to the square root: about sqrt(n) divisions.
+   */
+  EVERY_INTEGER {
+    @Override
+    long[] computeFactors(long compoundInteger) {
+      return YetAnotherUtility.computeFactorsByTrialDivision(compoundInteger);
+    }
+  },
+
+  /**
+   * 2, 3, 5, 7, then only the numbers coprime to 210 (48 out of every 210),
+   * up to the square root of what is left: about 4.4 times fewer divisions,
+   * and fewer still once factors are found. Needs no table.
+   */
+  WHEEL {
+    @Override
+    long[] computeFactors(long compoundInteger) {
+      long[] primes = new long[PrimeFactorizer.MAX_DISTINCT_PRIMES];
+      int[] exponents = new int[PrimeFactorizer.MAX_DISTINCT_PRIMES];
+      return PrimeFactorizer.divisors(primes, exponents, factorByWheel(compoundInteger, primes, exponents));
+    }
+  },
+
+  /**
+   * Only the primes up to the square root of what is left, from a table of
+   * the 564 primes up to 4096: about 7 times fewer divisions.
+   */
+  PRIME_TABLE {
+    @Override
+    long[] computeFactors(long compoundInteger) {
+      long[] primes = new long[PrimeFactorizer.MAX_DISTINCT_PRIMES];
+      int[] exponents = new int[PrimeFactorizer.MAX_DISTINCT_PRIMES];
+      return PrimeFactorizer.divisors(primes, exponents, factorByPrimeTable(compoundInteger, primes, exponents));
+    }
+  };
+
+  /**
+   * The wheel: 2 * 3 * 5 * 7.
+   */
+  static final int WHEEL_MODULUS = 210;
+
+  /**
+   * Gaps between consecutive numbers coprime to 210, starting from 11.
+   */
+  private static final int[] WHEEL_GAPS = wheelGaps();
+
+  /**
+   * Every prime up to sqrt(TRIAL_DIVISION_LIMIT), which is all trial
+   * division ever needs for the numbers it is used for.
+   */
+  private static final int[] TABLE_PRIMES = RangeFactorizer
+      .primesUpTo((int) PrimeFactorizer.squareRoot(YetAnotherUtility.TRIAL_DIVISION_LIMIT));
+
+  /**
+   * Computes every factor of a positive number no bigger than
+   * {@link YetAnotherUtility#TRIAL_DIVISION_LIMIT}.
+   *
+   * @return long[] - the factors, in ascending order
+   */
+  abstract long[] computeFactors(long compoundInteger);
+
+  private static int[] wheelGaps() {
+    int[] ret = new int[48];
+    int size = 0;
+    int previous = 11;
+    for (int candidate = 13; candidate <= 11 + WHEEL_MODULUS; candidate += 2) {
+      if (ModularArithmetic.gcd(candidate, WHEEL_MODULUS) == 1) {
+        ret[size++] = candidate - previous;
+        previous = candidate;
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Prime factorization by trial division over the mod 210 wheel.
+   *
+   * @return int - the number of distinct prime factors written, in ascending
+   *         order
+   */
+  static int factorByWheel(long compoundInteger, long[] primes, int[] exponents) {
+    int count = 0;
+    long remaining = compoundInteger;
+    int twos = Long.numberOfTrailingZeros(remaining);
+    if (twos > 0) {
+      remaining >>>= twos;
+      primes[count] = 2;
+      exponents[count++] = twos;
+    }
+    for (long prime = 3; prime <= 7; prime += 2) {
+      if (remaining % prime == 0) {
+        int exponent = 0;
+        do {
+          remaining /= prime;
+          exponent++;
+        } while (remaining % prime == 0);
+        primes[count] = prime;
+        exponents[count++] = exponent;
+      }
+    }
+    long candidate = 11;
+    for (int gap = 0; candidate <= remaining / candidate; gap = (gap + 1 == WHEEL_GAPS.length) ? 0 : gap + 1) {
+      if (remaining % candidate == 0) {
+        int exponent = 0;
+        do {
+          remaining /= candidate;
+          exponent++;
+        } while (remaining % candidate == 0);
+        primes[count] = candidate;
+        exponents[count++] = exponent;
+      }
+      candidate += WHEEL_GAPS[gap];
+    }
+    if (remaining > 1) {
+      primes[count] = remaining;
+      exponents[count++] = 1;
+    }
+    return count;
+  }
+
+  /**
+   * Prime factorization by trial division over the table of primes. The
+   * number must be no bigger than TRIAL_DIVISION_LIMIT.
+   *
+   * @return int - the number of distinct prime factors written, in ascending
+   *         order
+   */
+  static int factorByPrimeTable(long compoundInteger, long[] primes, int[] exponents) {
+    int count = 0;
+    long remaining = compoundInteger;
+    for (int prime : TABLE_PRIMES) {
+      if (prime > remaining / prime) {
+        break;
+      }
+      if (remaining % prime == 0) {
+        int exponent = 0;
+        do {
+          remaining /= prime;
+          exponent++;
+        } while (remaining % prime == 0);
+        primes[count] = prime;
+        exponents[count++] = exponent;
+      }
+    }
+    if (remaining > 1) {
+      primes[count] = remaining;
+      exponents[count++] = 1;
+    }
+    return count;
+  }
+
+}
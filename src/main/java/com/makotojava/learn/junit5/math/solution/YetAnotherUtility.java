@@ -16,9 +16,13 @@
  */
 package com.makotojava.learn.junit5.math.solution;
 
-import java.util.Iterator;
-import java.util.Set;
-import java.util.TreeSet;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
 
 /**
  * Simple set of utilities. Just something to demonstrate tests.
@@ -29,46 +33,260 @@ import java.util.TreeSet;
  */
 public class YetAnotherUtility {
 
+  /**
+   * Initial capacity of the primitive divisor buffers. Plenty for most inputs,
+   * and they grow as needed for the ones with lots of divisors.
+   */
+  private static final int INITIAL_BUFFER_SIZE = 16;
+
+  /**
+   * Up to this value, plain trial division (at most 4096 trial divisors) is
+   * cheaper than a full prime factorization.
+   */
+  static final long TRIAL_DIVISION_LIMIT = 1L << 24;
+
+  /**
+   * Primes used to screen out most composites before running Miller-Rabin.
+   */
+  private static final int[] SCREENING_PRIMES = { 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37, 41, 43, 47, 53, 59, 61 };
+
+  /**
+   * Anything below the square of the next prime that survives screening is
+   * prime.
+   */
+  private static final long SCREENING_LIMIT = 67L * 67L;
+
+  /**
+   * Scratch space for {@link #computeFactors(long, long[])}, one per thread.
+   */
+  private static final ThreadLocal<FactorBuffer> SCRATCH_BUFFER = ThreadLocal.withInitial(FactorBuffer::new);
+
+  /**
+   * Values screened together by {@link #computePrimeFactorizations(long[])}.
+   * The masks for a block (3 words a value) stay well inside the L1 cache.
+   */
+  private static final int SCREEN_BLOCK_SIZE = 256;
+
+  /**
+   * Optional lookup table for factoring small numbers. Null unless one has
+   * been installed.
+   */
+  private static volatile SmallestPrimeFactorTable smallestPrimeFactorTable;
+
   /**
    * 
-   * Uses the slow but steady Trial Division algorithm for calculating
-   * factors.
+   * Installs a smallest prime factor table. From then on, computeFactors
+   * factors any number the table covers with a handful of lookups.
    * 
-   * https://en.wikipedia.org/wiki/Trial_division
+   * @param table
+   *          The table to use, or null to go back to computing everything
+   */
+  public static void setSmallestPrimeFactorTable(SmallestPrimeFactorTable table) {
+    smallestPrimeFactorTable = table;
+  }
+
+  /**
+   * @return SmallestPrimeFactorTable - the installed table, or null if there
+   *         isn't one
+   */
+  public static SmallestPrimeFactorTable getSmallestPrimeFactorTable() {
+    return smallestPrimeFactorTable;
+  }
+
+  /**
+   * Optional cache in front of computeFactors. Null unless one has been
+   * installed.
+   */
+  private static volatile FactorizationCache factorizationCache;
+
+  /**
+   * 
+   * Installs a cache in front of computeFactors. Values that are asked for
+   * again are served from the cache instead of being factored again.
+   * 
+   * @param cache
+   *          The cache to use, or null to stop caching
+   */
+  public static void setFactorizationCache(FactorizationCache cache) {
+    factorizationCache = cache;
+  }
+
+  /**
+   * @return FactorizationCache - the installed cache, or null if there isn't
+   *         one
+   */
+  public static FactorizationCache getFactorizationCache() {
+    return factorizationCache;
+  }
+
+  /**
+   * Factorizations quicker than this are cheaper to redo than to store in the
+   * persistent cache.
+   */
+  static final long PERSISTENT_CACHE_MINIMUM_NANOS = 50_000;
+
+  /**
+   * Optional on-disk cache of prime factorizations. Null unless one has been
+   * installed.
+   */
+  private static volatile PersistentFactorizationCache persistentFactorizationCache;
+
+  /**
+   * 
+   * Installs an on-disk cache of prime factorizations. From then on, numbers
+   * above TRIAL_DIVISION_LIMIT are looked up in it before being factored, and
+   * the ones that take a while to factor are stored in it (if it was opened
+   * for writing), so later runs can reuse the work.
+   * 
+   * @param cache
+   *          The cache to use, or null to stop using one. Closing it is up to
+   *          the caller.
+   */
+  public static void setPersistentFactorizationCache(PersistentFactorizationCache cache) {
+    persistentFactorizationCache = cache;
+  }
+
+  /**
+   * @return PersistentFactorizationCache - the installed cache, or null if
+   *         there isn't one
+   */
+  public static PersistentFactorizationCache getPersistentFactorizationCache() {
+    return persistentFactorizationCache;
+  }
+
+  /**
+   * Optional metrics for computeFactors. Null unless installed.
+   */
+  private static volatile FactorizationMetrics factorizationMetrics;
+
+  /**
+   * 
+   * Installs metrics for computeFactors. From then on every call to
+   * {@link #computeFactors(long)} and {@link #computeFactors(long, FactorBuffer)}
+   * is counted and timed.
+   * 
+   * @param metrics
+   *          The metrics to record into, or null to stop recording
+   */
+  public static void setFactorizationMetrics(FactorizationMetrics metrics) {
+    factorizationMetrics = metrics;
+  }
+
+  /**
+   * @return FactorizationMetrics - the installed metrics, or null if there
+   *         aren't any
+   */
+  public static FactorizationMetrics getFactorizationMetrics() {
+    return factorizationMetrics;
+  }
+
+  /**
+   * How trial division picks its divisors.
+   */
+  private static volatile TrialDivisionStrategy trialDivisionStrategy = TrialDivisionStrategy.WHEEL;
+
+  /**
+   * 
+   * Chooses how computeFactors picks trial divisors for numbers up to
+   * TRIAL_DIVISION_LIMIT. The default is {@link TrialDivisionStrategy#WHEEL}.
+   * 
+   * @param strategy
+   *          The strategy to use
+   * 
+   * @throws IllegalArgumentException
+   *           if the strategy is null
+   */
+  public static void setTrialDivisionStrategy(TrialDivisionStrategy strategy) {
+    if (strategy == null) {
+      throw new IllegalArgumentException("Trial division strategy must not be null!");
+    }
+    trialDivisionStrategy = strategy;
+  }
+
+  /**
+   * @return TrialDivisionStrategy - the strategy in use
+   */
+  public static TrialDivisionStrategy getTrialDivisionStrategy() {
+    return trialDivisionStrategy;
+  }
+
+  /**
+   * 
+   * Computes every factor of the specified compound integer.
+   * 
+   * Small numbers use trial division (see {@link TrialDivisionStrategy}).
+   * Anything larger is broken down into its prime factorization by
+   * {@link PrimeFactorizer}, and the factors are built from the prime powers.
+   * That works in milliseconds for every positive long, including semiprimes
+   * with two large factors. Numbers covered by the
+   * {@link SmallestPrimeFactorTable}, if one is installed, are factored by
+   * table lookups instead, and if a {@link FactorizationCache} is installed
+   * repeat requests are answered from it. A
+   * {@link PersistentFactorizationCache} keeps expensive factorizations from
+   * one run to the next. If {@link FactorizationMetrics} are installed, each
+   * call is counted and timed.
    * 
    * @param compoundInteger
    *          The integer number (using the mathematical term "integer" here,
    *          not the Java primitive type) to check.
    *          The compound integer must be greater than zero.
    * 
-   * @return long[] - an array of factors. Will be null if the compound integer is
-   *         less than or equal to zero.
+   * @return long[] - an array of factors, in ascending order. Will be null if the
+   *         compound integer is zero.
+   * 
+   * @throws IllegalArgumentException
+   *           if the compound integer is negative
    */
   public static long[] computeFactors(long compoundInteger) {
+    FactorizationMetrics metrics = factorizationMetrics;
+    long start = (metrics == null) ? 0 : System.nanoTime();
+    FactorizationCache cache = factorizationCache;
     long[] ret = null;
-    if (compoundInteger > 0) {
-      //
-      Set<Long> factors = new TreeSet<>();
-      //
-      // The number itself is always a factor
-      factors.add(compoundInteger);
-      factors.add(1L);// And 1, of course
-      long upperLimit = compoundInteger / 2;
-      long trialDivisor = 2;
-      while (trialDivisor <= upperLimit) {
-        if (compoundInteger % trialDivisor == 0) {
-          factors.add(trialDivisor);
-        }
-        trialDivisor++;
+    if (cache != null && compoundInteger > 0) {
+      ret = cache.get(compoundInteger);
+      if (metrics != null) {
+        metrics.recordCacheLookup(ret != null);
       }
-      //
-      // Now make a copy of the Set
-      ret = new long[factors.size()];
-      int aa = 0;// Oh my, can you figure out what this is used for?
-      Iterator<Long> iter = factors.iterator();
-      while (iter.hasNext()) {
-        ret[aa++] = iter.next();
+    }
+    FactorizationMetrics.Algorithm algorithm = FactorizationMetrics.Algorithm.CACHE;
+    if (ret == null) {
+      ret = computeFactorsUncached(compoundInteger);
+      if (cache != null && ret != null) {
+        cache.put(compoundInteger, ret);
       }
+      algorithm = algorithmFor(compoundInteger);
+    }
+    if (metrics != null) {
+      metrics.record(compoundInteger, algorithm, System.nanoTime() - start);
+    }
+    return ret;
+  }
+
+  /**
+   * The route computeFactorsUncached takes for a number.
+   */
+  private static FactorizationMetrics.Algorithm algorithmFor(long compoundInteger) {
+    SmallestPrimeFactorTable table = smallestPrimeFactorTable;
+    if (table != null && table.covers(compoundInteger)) {
+      return FactorizationMetrics.Algorithm.SMALLEST_PRIME_FACTOR_TABLE;
+    }
+    return (compoundInteger > TRIAL_DIVISION_LIMIT) ? FactorizationMetrics.Algorithm.PRIME_FACTORIZER
+        : FactorizationMetrics.Algorithm.TRIAL_DIVISION;
+  }
+
+  /**
+   * Does the real work of computeFactors, without looking in the cache.
+   */
+  private static long[] computeFactorsUncached(long compoundInteger) {
+    long[] ret = null;
+    SmallestPrimeFactorTable table = smallestPrimeFactorTable;
+    if ((table != null && table.covers(compoundInteger)) || compoundInteger > TRIAL_DIVISION_LIMIT) {
+      long[] primes = new long[PrimeFactorizer.MAX_DISTINCT_PRIMES];
+      int[] exponents = new int[PrimeFactorizer.MAX_DISTINCT_PRIMES];
+      int count = factor(compoundInteger, primes, exponents);
+      ret = PrimeFactorizer.divisors(primes, exponents, count);
+    } else if (compoundInteger > 0) {
+      ret = trialDivisionStrategy.computeFactors(compoundInteger);
     } else if (compoundInteger < 0) {
       throw new IllegalArgumentException("Candidate integer must be a positive number!");
     }
@@ -76,4 +294,475 @@ public class YetAnotherUtility {
     return ret;
   }
 
+  /**
+   * 
+   * Computes every factor of the specified compound integer into a reusable
+   * buffer, without allocating anything once the buffer is big enough.
+   * 
+   * The number is always broken down into its prime factorization, with the
+   * {@link SmallestPrimeFactorTable} if one is installed and covers it. The
+   * {@link FactorizationCache} is bypassed, since it hands out copies.
+   * 
+   * @param compoundInteger
+   *          The compound integer. Must not be negative.
+   * @param buffer
+   *          Receives the factors, in ascending order, replacing whatever it
+   *          held. Grows if it has to.
+   * 
+   * @return int - the number of factors. Zero for zero.
+   * 
+   * @throws IllegalArgumentException
+   *           if the compound integer is negative
+   */
+  public static int computeFactors(long compoundInteger, FactorBuffer buffer) {
+    if (compoundInteger < 0) {
+      throw new IllegalArgumentException("Candidate integer must be a positive number!");
+    }
+    if (compoundInteger == 0) {
+      buffer.clear();
+      return 0;
+    }
+    FactorizationMetrics metrics = factorizationMetrics;
+    long start = (metrics == null) ? 0 : System.nanoTime();
+    int count = factor(compoundInteger, buffer.primes, buffer.exponents);
+    int ret = buffer.fillDivisors(count);
+    if (metrics != null) {
+      SmallestPrimeFactorTable table = smallestPrimeFactorTable;
+      metrics.record(compoundInteger, (table != null && table.covers(compoundInteger))
+          ? FactorizationMetrics.Algorithm.SMALLEST_PRIME_FACTOR_TABLE
+          : FactorizationMetrics.Algorithm.PRIME_FACTORIZER, System.nanoTime() - start);
+    }
+    return ret;
+  }
+
+  /**
+   * 
+   * Computes every factor of the specified compound integer into a
+   * caller-supplied array, without allocating anything.
+   * 
+   * Works like {@link #computeFactors(long, FactorBuffer)}, with a buffer
+   * kept per thread for the scratch work.
+   * 
+   * @param compoundInteger
+   *          The compound integer. Must not be negative.
+   * @param factors
+   *          Receives the factors, in ascending order, if there is room for
+   *          them all. Otherwise it is left untouched.
+   * 
+   * @return int - the number of factors. If that is more than factors.length,
+   *         nothing was written and the call should be repeated with an
+   *         array at least that long.
+   * 
+   * @throws IllegalArgumentException
+   *           if the compound integer is negative
+   */
+  public static int computeFactors(long compoundInteger, long[] factors) {
+    FactorBuffer buffer = SCRATCH_BUFFER.get();
+    int ret = computeFactors(compoundInteger, buffer);
+    if (ret <= factors.length) {
+      System.arraycopy(buffer.getFactors(), 0, factors, 0, ret);
+    }
+    return ret;
+  }
+
+  /**
+   * 
+   * Computes every factor of the specified compound integer, which may be far
+   * beyond the range of a long.
+   * 
+   * Values that fit in a long take the same route as
+   * {@link #computeFactors(long)}. Anything bigger is factored by
+   * {@link BigIntegerFactorizer}: trial division, then Pollard's rho, then the
+   * elliptic curve method with its curves spread across the common fork/join
+   * pool. A 128-bit semiprime with two 64-bit factors takes seconds.
+   * 
+   * @param compoundInteger
+   *          The compound integer. Must not be negative.
+   * 
+   * @return BigInteger[] - an array of factors, in ascending order. Will be
+   *         null if the compound integer is zero.
+   * 
+   * @throws IllegalArgumentException
+   *           if the compound integer is negative
+   */
+  public static BigInteger[] computeFactors(BigInteger compoundInteger) {
+    BigInteger[] ret = null;
+    if (compoundInteger.signum() < 0) {
+      throw new IllegalArgumentException("Candidate integer must be a positive number!");
+    } else if (compoundInteger.bitLength() < Long.SIZE) {
+      long[] factors = computeFactors(compoundInteger.longValue());
+      if (factors != null) {
+        ret = new BigInteger[factors.length];
+        for (int aa = 0; aa < factors.length; aa++) {
+          ret[aa] = BigInteger.valueOf(factors[aa]);
+        }
+      }
+    } else {
+      ret = BigIntegerFactorizer.divisors(BigIntegerFactorizer.factor(compoundInteger));
+    }
+    //
+    return ret;
+  }
+
+  /**
+   * 
+   * Factors the specified compound integer until it is done or the token is
+   * cancelled, whichever comes first.
+   * 
+   * The token is checked cooperatively, every fraction of a millisecond, so a
+   * deadline is overshot by very little. Interrupting the calling thread stops
+   * the work too, leaving the interrupt status set. Either way the result
+   * holds everything found so far: the prime factors, the factors built from
+   * them, and the cofactor still to be factored.
+   * 
+   * @param compoundInteger
+   *          The compound integer. Must not be negative.
+   * @param token
+   *          Says when to stop. Use
+   *          {@link CancellationToken#withTimeout(long, java.util.concurrent.TimeUnit)}
+   *          for a deadline.
+   * 
+   * @return FactorizationResult - complete, or partial if the token was
+   *         cancelled first. Will be null if the compound integer is zero.
+   * 
+   * @throws IllegalArgumentException
+   *           if the compound integer is negative
+   */
+  public static FactorizationResult computeFactors(BigInteger compoundInteger, CancellationToken token) {
+    FactorizationResult ret = null;
+    if (compoundInteger.signum() < 0) {
+      throw new IllegalArgumentException("Candidate integer must be a positive number!");
+    } else if (compoundInteger.signum() > 0) {
+      ret = BigIntegerFactorizer.factor(compoundInteger, ForkJoinPool.commonPool(), token);
+    }
+    //
+    return ret;
+  }
+
+  /**
+   * 
+   * Convenience version of
+   * {@link #computeFactors(BigInteger, CancellationToken)} for a long.
+   * 
+   * @param compoundInteger
+   *          The compound integer. Must not be negative.
+   * @param token
+   *          Says when to stop
+   * 
+   * @return FactorizationResult - complete, or partial if the token was
+   *         cancelled first. Will be null if the compound integer is zero.
+   * 
+   * @throws IllegalArgumentException
+   *           if the compound integer is negative
+   */
+  public static FactorizationResult computeFactors(long compoundInteger, CancellationToken token) {
+    return computeFactors(BigInteger.valueOf(compoundInteger), token);
+  }
+
+  /**
+   * 
+   * Lazily produces the factors of the specified compound integer, in
+   * ascending order.
+   * 
+   * Only the prime factorization is computed up front; each factor is
+   * produced as the stream asks for it. Short-circuiting operations such as
+   * findFirst(), anyMatch() or limit() stop as soon as they have an answer,
+   * without building the factors they never look at.
+   * 
+   * @param compoundInteger
+   *          The compound integer. Must not be negative.
+   * 
+   * @return LongStream - the factors, in ascending order. Empty for zero.
+   * 
+   * @throws IllegalArgumentException
+   *           if the compound integer is negative
+   */
+  public static LongStream divisors(long compoundInteger) {
+    if (compoundInteger < 0) {
+      throw new IllegalArgumentException("Candidate integer must be a positive number!");
+    }
+    if (compoundInteger == 0) {
+      return LongStream.empty();
+    }
+    long[] primes = new long[PrimeFactorizer.MAX_DISTINCT_PRIMES];
+    int[] exponents = new int[PrimeFactorizer.MAX_DISTINCT_PRIMES];
+    int count = factor(compoundInteger, primes, exponents);
+    Spliterator.OfLong spliterator = Spliterators.spliterator(new DivisorIterator(primes, exponents, count),
+        DivisorIterator.divisorCount(exponents, count), Spliterator.ORDERED | Spliterator.SORTED
+            | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+    return StreamSupport.longStream(spliterator, false);
+  }
+
+  /**
+   * 
+   * Computes the prime factorization of the specified compound integer,
+   * without building its factors.
+   * 
+   * Callers that only need how many factors there are, their sum, or Euler's
+   * totient can get them from the result directly, instead of building an
+   * array that can be tens of thousands of times bigger than the answer. The
+   * factors themselves are still there on demand with
+   * {@link PrimeFactorization#toFactors()}.
+   * 
+   * @param compoundInteger
+   *          The compound integer. Must not be negative.
+   * 
+   * @return PrimeFactorization - the prime factors and their exponents. Will
+   *         be null if the compound integer is zero.
+   * 
+   * @throws IllegalArgumentException
+   *           if the compound integer is negative
+   */
+  public static PrimeFactorization computePrimeFactorization(long compoundInteger) {
+    PrimeFactorization ret = null;
+    if (compoundInteger < 0) {
+      throw new IllegalArgumentException("Candidate integer must be a positive number!");
+    } else if (compoundInteger > 0) {
+      long[] primes = new long[PrimeFactorizer.MAX_DISTINCT_PRIMES];
+      int[] exponents = new int[PrimeFactorizer.MAX_DISTINCT_PRIMES];
+      int count = factor(compoundInteger, primes, exponents);
+      ret = new PrimeFactorization(compoundInteger, primes, exponents, count);
+    }
+    //
+    return ret;
+  }
+
+  /**
+   * 
+   * Computes the prime factorization of every compound integer in the batch.
+   * 
+   * The small-prime stage is done for a block of values at a time by
+   * {@link DivisibilityScreen}, which finds every prime factor below 1024 of
+   * every value in the block with multiplications instead of hundreds of
+   * divisions per value. That pays off most for values with few small
+   * factors; values with many (highly composite ones) finish trial division
+   * early anyway and gain nothing. Values that the
+   * {@link SmallestPrimeFactorTable} covers, if one is installed, are factored
+   * from it instead.
+   * 
+   * @param compoundIntegers
+   *          The compound integers. None may be negative.
+   * 
+   * @return PrimeFactorization[] - the prime factorization of each compound
+   *         integer, in input order. Entries for zero are null.
+   * 
+   * @throws IllegalArgumentException
+   *           if any compound integer is negative (checked before any work
+   *           starts)
+   */
+  public static PrimeFactorization[] computePrimeFactorizations(long[] compoundIntegers) {
+    for (long compoundInteger : compoundIntegers) {
+      if (compoundInteger < 0) {
+        throw new IllegalArgumentException("Candidate integer must be a positive number!");
+      }
+    }
+    PrimeFactorization[] ret = new PrimeFactorization[compoundIntegers.length];
+    long[] masks = new long[DivisibilityScreen.WORDS * SCREEN_BLOCK_SIZE];
+    long[] primes = new long[PrimeFactorizer.MAX_DISTINCT_PRIMES];
+    int[] exponents = new int[PrimeFactorizer.MAX_DISTINCT_PRIMES];
+    SmallestPrimeFactorTable table = smallestPrimeFactorTable;
+    for (int from = 0; from < compoundIntegers.length; from += SCREEN_BLOCK_SIZE) {
+      int to = Math.min(compoundIntegers.length, from + SCREEN_BLOCK_SIZE);
+      long largest = 0;
+      for (int aa = from; aa < to; aa++) {
+        largest = Math.max(largest, compoundIntegers[aa]);
+      }
+      DivisibilityScreen.screen(compoundIntegers, from, to, DivisibilityScreen.primesNeeded(largest), masks);
+      for (int aa = from; aa < to; aa++) {
+        long compoundInteger = compoundIntegers[aa];
+        if (compoundInteger == 0) {
+          continue;
+        }
+        int count = (table != null && table.covers(compoundInteger))
+            ? table.factor(compoundInteger, primes, exponents)
+            : PrimeFactorizer.factor(compoundInteger, primes, exponents, masks, to - from, aa - from);
+        ret[aa] = new PrimeFactorization(compoundInteger, primes, exponents, count);
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * 
+   * Computes the factors of every compound integer in the batch, in parallel
+   * on the common fork/join pool.
+   * 
+   * @param compoundIntegers
+   *          The compound integers. None may be negative.
+   * 
+   * @return long[][] - the factors of each compound integer, in input order.
+   *         Entries for zero are null.
+   * 
+   * @throws IllegalArgumentException
+   *           if any compound integer is negative
+   * 
+   * @see #computeFactors(long[], ForkJoinPool)
+   */
+  public static long[][] computeFactors(long[] compoundIntegers) {
+    return computeFactors(compoundIntegers, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * 
+   * Computes the factors of every compound integer in the batch, in parallel
+   * on the specified fork/join pool.
+   * 
+   * The batch is split into chunks of roughly equal estimated cost, so one
+   * huge value does not hold up a whole chunk of small ones.
+   * 
+   * @param compoundIntegers
+   *          The compound integers. None may be negative.
+   * @param pool
+   *          The pool to do the work on
+   * 
+   * @return long[][] - the factors of each compound integer, in input order.
+   *         Entries for zero are null.
+   * 
+   * @throws IllegalArgumentException
+   *           if any compound integer is negative (checked before any work
+   *           starts)
+   */
+  public static long[][] computeFactors(long[] compoundIntegers, ForkJoinPool pool) {
+    return ParallelFactorizer.computeFactors(compoundIntegers, pool);
+  }
+
+  /**
+   * 
+   * Determines whether the specified candidate integer is prime.
+   * 
+   * Small prime divisors are screened out first, which settles most
+   * composites with a handful of divisions. Survivors go through a
+   * deterministic Miller-Rabin test, so no factors are ever built.
+   * 
+   * @param candidateInteger
+   *          The integer to check. Must not be negative.
+   * 
+   * @return boolean - true if the candidate integer is prime. Zero and one are
+   *         not prime.
+   * 
+   * @throws IllegalArgumentException
+   *           if the candidate integer is negative
+   */
+  public static boolean isPrime(long candidateInteger) {
+    if (candidateInteger < 0) {
+      throw new IllegalArgumentException("Candidate integer must be a positive number!");
+    }
+    if (candidateInteger < 2) {
+      return false;
+    }
+    if ((candidateInteger & 1) == 0) {
+      return candidateInteger == 2;
+    }
+    for (int prime : SCREENING_PRIMES) {
+      if (candidateInteger % prime == 0) {
+        return candidateInteger == prime;
+      }
+    }
+    return candidateInteger < SCREENING_LIMIT || PrimeFactorizer.isPrime(candidateInteger);
+  }
+
+  /**
+   * 
+   * Bulk version of {@link #isPrime(long)}.
+   * 
+   * @param candidateIntegers
+   *          The integers to check. None may be negative.
+   * @param results
+   *          Receives the primality of each candidate, at the same index. Must
+   *          be at least as long as candidateIntegers.
+   * 
+   * @throws IllegalArgumentException
+   *           if the results array is too short or any candidate is negative
+   */
+  public static void isPrime(long[] candidateIntegers, boolean[] results) {
+    if (results.length < candidateIntegers.length) {
+      throw new IllegalArgumentException("Results array must be at least as long as the candidates array!");
+    }
+    for (int aa = 0; aa < candidateIntegers.length; aa++) {
+      results[aa] = isPrime(candidateIntegers[aa]);
+    }
+  }
+
+  /**
+   * Computes the prime factorization of a positive number, from the smallest
+   * prime factor table if it covers the number, or the persistent cache if it
+   * has it.
+   */
+  private static int factor(long compoundInteger, long[] primes, int[] exponents) {
+    SmallestPrimeFactorTable table = smallestPrimeFactorTable;
+    if (table != null && table.covers(compoundInteger)) {
+      return table.factor(compoundInteger, primes, exponents);
+    }
+    PersistentFactorizationCache persistent = persistentFactorizationCache;
+    if (persistent == null || compoundInteger <= TRIAL_DIVISION_LIMIT) {
+      return PrimeFactorizer.factor(compoundInteger, primes, exponents);
+    }
+    int ret = persistent.get(compoundInteger, primes, exponents);
+    if (ret < 0) {
+      long start = System.nanoTime();
+      ret = PrimeFactorizer.factor(compoundInteger, primes, exponents);
+      if (System.nanoTime() - start >= PERSISTENT_CACHE_MINIMUM_NANOS) {
+        persistent.offer(compoundInteger, primes, exponents, ret);
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * 
+   * Uses the slow but steady Trial Division algorithm for calculating
+   * factors.
+   * 
+   * https://en.wikipedia.org/wiki/Trial_division
+   * 
+   * Divisors come in pairs (d, n/d), so we only need to try divisors up to the
+   * square root of the compound integer. Each hit gives us the small divisor
+   * (found in ascending order) and its cofactor (found in descending order),
+   * which are kept in primitive buffers and stitched together at the end.
+   * 
+   * @param compoundInteger
+   *          The compound integer. Must be greater than zero.
+   * 
+   * @return long[] - an array of factors, in ascending order
+   */
+  static long[] computeFactorsByTrialDivision(long compoundInteger) {
+    long[] lowFactors = new long[INITIAL_BUFFER_SIZE];
+    long[] highFactors = new long[INITIAL_BUFFER_SIZE];
+    int lowCount = 0;
+    int highCount = 0;
+    //
+    // 1 is always a factor, and so is the number itself
+    lowFactors[lowCount++] = 1L;
+    if (compoundInteger > 1) {
+      highFactors[highCount++] = compoundInteger;
+    }
+    //
+    // trialDivisor <= compoundInteger / trialDivisor is the overflow-safe
+    // way of saying trialDivisor * trialDivisor <= compoundInteger
+    long trialDivisor = 2;
+    while (trialDivisor <= compoundInteger / trialDivisor) {
+      if (compoundInteger % trialDivisor == 0) {
+        long cofactor = compoundInteger / trialDivisor;
+        if (lowCount == lowFactors.length) {
+          lowFactors = Arrays.copyOf(lowFactors, lowCount * 2);
+        }
+        lowFactors[lowCount++] = trialDivisor;
+        if (cofactor != trialDivisor) {
+          if (highCount == highFactors.length) {
+            highFactors = Arrays.copyOf(highFactors, highCount * 2);
+          }
+          highFactors[highCount++] = cofactor;
+        }
+      }
+      trialDivisor++;
+    }
+    //
+    // Small factors are already ascending, the cofactors are descending
+    long[] ret = Arrays.copyOf(lowFactors, lowCount + highCount);
+    for (int aa = 0; aa < highCount; aa++) {
+      ret[lowCount + aa] = highFactors[highCount - 1 - aa];
+    }
+    return ret;
+  }
+
 }
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.jupiter.api.function.Executable;
+import org.opentest4j.AssertionFailedError;
+
+/**
+ * Assertions on the heap an operation allocates, in the style of
+ * {@link org.junit.jupiter.api.Assertions Assertions}. Bytes are counted on
+ * the calling thread with
+ * {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)}, so
+ * anything the operation hands off to other threads is not counted.
+ *
+ * The operation is warmed up first, so that one-off allocations (class
+ * loading, buffers growing, the JIT's escape analysis not yet having kicked
+ * in) are not counted. A measurement over budget is repeated, up to
+ * {@link #ATTEMPTS} times, in case the JIT recompiled the code while it ran.
+ * The test is skipped, not failed, on a JVM that cannot count allocations.
+ *
+ * @author J Steven Perry
+ *
+ */
+public final class AllocationAssertions {
+
+  static final int WARMUP_INVOCATIONS = 2000;
+
+  static final int INVOCATIONS = 1000;
+
+  static final int ATTEMPTS = 3;
+
+  private AllocationAssertions() {
+    // Static methods only
+  }
+
+  /**
+   * Asserts that the operation allocates nothing, once warmed up.
+   *
+   * @param operation
+   *          The operation to measure
+   */
+  public static void assertAllocationFree(Executable operation) throws Throwable {
+    assertAllocatesAtMost(0, operation);
+  }
+
+  /**
+   * Asserts that the operation allocates no more than the specified number of
+   * bytes per invocation, on average, once warmed up.
+   *
+   * @param bytesPerInvocation
+   *          The budget
+   * @param operation
+   *          The operation to measure
+   *
+   * @return long - the bytes allocated per invocation, rounded up
+   */
+  public static long assertAllocatesAtMost(long bytesPerInvocation, Executable operation) throws Throwable {
+    return assertAllocatesAtMost(bytesPerInvocation, WARMUP_INVOCATIONS, INVOCATIONS, operation);
+  }
+
+  /**
+   * Asserts that the operation allocates no more than the specified number of
+   * bytes per invocation, on average, once warmed up.
+   *
+   * @param bytesPerInvocation
+   *          The budget
+   * @param warmupInvocations
+   *          The number of times to run the operation before measuring
+   * @param invocations
+   *          The number of times to run it while measuring
+   * @param operation
+   *          The operation to measure
+   *
+   * @return long - the bytes allocated per invocation, rounded up
+   */
+  public static long assertAllocatesAtMost(long bytesPerInvocation, int warmupInvocations, int invocations,
+      Executable operation) throws Throwable {
+    if (bytesPerInvocation < 0 || warmupInvocations < 0 || invocations <= 0) {
+      throw new IllegalArgumentException(
+          "Budget and warm-up invocations must not be negative, and invocations must be positive!");
+    }
+    com.sun.management.ThreadMXBean threads = threadMXBean();
+    long threadId = Thread.currentThread().getId();
+    for (int aa = 0; aa < warmupInvocations; aa++) {
+      operation.execute();
+    }
+    //
+    // What reading the counter costs by itself, taken off every measurement
+    long before = threads.getThreadAllocatedBytes(threadId);
+    long overhead = threads.getThreadAllocatedBytes(threadId) - before;
+    long ret = 0;
+    for (int attempt = 1; attempt <= ATTEMPTS; attempt++) {
+      before = threads.getThreadAllocatedBytes(threadId);
+      for (int aa = 0; aa < invocations; aa++) {
+        operation.execute();
+      }
+      long allocated = Math.max(threads.getThreadAllocatedBytes(threadId) - before - overhead, 0);
+      ret = (allocated + invocations - 1) / invocations;
+      if (allocated <= bytesPerInvocation * invocations) {
+        return ret;
+      }
+    }
+    throw new AssertionFailedError(String.format("Allocated %d bytes per invocation (budget %d) over %d invocations, "
+        + "on each of %d attempts", ret, bytesPerInvocation, invocations, ATTEMPTS));
+  }
+
+  private static com.sun.management.ThreadMXBean threadMXBean() {
+    assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean,
+        "This JVM cannot count allocated bytes");
+    com.sun.management.ThreadMXBean ret = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    assumeTrue(ret.isThreadAllocatedMemorySupported(), "This JVM cannot count allocated bytes");
+    ret.setThreadAllocatedMemoryEnabled(true);
+    return ret;
+  }
+
+}
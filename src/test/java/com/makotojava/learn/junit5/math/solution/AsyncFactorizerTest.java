@@ -0,0 +1,200 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import com.makotojava.learn.junit5.math.solution.AsyncFactorizer.RejectionPolicy;
+
+/**
+ * Tests the AsyncFactorizer class.
+ *
+ * @author J Steven Perry
+ *
+ */
+@DisplayName("Testing AsyncFactorizer...")
+public class AsyncFactorizerTest {
+
+  @Test
+  @DisplayName("computeFactors should complete with the same factors as computeFactors(long)")
+  void matchesComputeFactors() throws Exception {
+    try (AsyncFactorizer factorizer = AsyncFactorizer.newBounded(4, 1000, RejectionPolicy.CALLER_RUNS)) {
+      List<CompletableFuture<long[]>> futures = new ArrayList<>();
+      for (long compoundInteger = 1; compoundInteger <= 500; compoundInteger++) {
+        futures.add(factorizer.computeFactors(compoundInteger));
+      }
+      futures.add(factorizer.computeFactors(Long.MAX_VALUE));
+      for (int aa = 0; aa < 500; aa++) {
+        assertArrayEquals(YetAnotherUtility.computeFactors(aa + 1), futures.get(aa).get(10, TimeUnit.SECONDS));
+      }
+      assertArrayEquals(YetAnotherUtility.computeFactors(Long.MAX_VALUE), futures.get(500).get(10, TimeUnit.SECONDS));
+      assertNull(factorizer.computeFactors(0).get());
+      assertThrows(IllegalArgumentException.class, () -> factorizer.computeFactors(-100));
+    }
+  }
+
+  @Test
+  @DisplayName("requests for a value already in flight should share one computation")
+  void coalescesDuplicates() throws Exception {
+    List<Runnable> tasks = new ArrayList<>();
+    AsyncFactorizer factorizer = new AsyncFactorizer(tasks::add);
+    CompletableFuture<long[]> first = factorizer.computeFactors(360);
+    CompletableFuture<long[]> second = factorizer.computeFactors(360);
+    CompletableFuture<long[]> third = factorizer.computeFactors(360);
+    factorizer.computeFactors(12);
+    assertEquals(2, tasks.size());
+    assertEquals(2, factorizer.getInFlightCount());
+    assertEquals(2, factorizer.getCoalescedCount());
+    assertTrue(second.cancel(false));
+    for (Runnable task : tasks) {
+      task.run();
+    }
+    assertEquals(0, factorizer.getInFlightCount());
+    assertArrayEquals(YetAnotherUtility.computeFactors(360), first.get());
+    assertArrayEquals(YetAnotherUtility.computeFactors(360), third.get());
+    assertNotSame(first.get(), third.get());
+    factorizer.computeFactors(360);
+    assertEquals(3, tasks.size(), "A finished value is computed again");
+  }
+
+  /**
+   * A one-thread pool with room for one queued request, whose thread is held
+   * up until the latch is released.
+   */
+  @Nested
+  @DisplayName("When the bounded pool is full")
+  class WhenFull {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private ThreadPoolExecutor fullPool(RejectionPolicy policy) throws InterruptedException {
+      ThreadPoolExecutor ret = AsyncFactorizer.newBoundedExecutor(1, 1, policy);
+      CountDownLatch started = new CountDownLatch(1);
+      ret.execute(() -> {
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+      started.await();
+      return ret;
+    }
+
+    @Test
+    @DisplayName("ABORT should fail the new request")
+    void abort() throws Exception {
+      ThreadPoolExecutor pool = fullPool(RejectionPolicy.ABORT);
+      try {
+        AsyncFactorizer factorizer = new AsyncFactorizer(pool);
+        CompletableFuture<long[]> queued = factorizer.computeFactors(10);
+        CompletableFuture<long[]> rejected = factorizer.computeFactors(11);
+        ExecutionException thrown = assertThrows(ExecutionException.class, rejected::get);
+        assertTrue(thrown.getCause() instanceof RejectedExecutionException);
+        assertEquals(1, factorizer.getInFlightCount());
+        release.countDown();
+        assertArrayEquals(new long[] { 1, 2, 5, 10 }, queued.get(10, TimeUnit.SECONDS));
+      } finally {
+        release.countDown();
+        pool.shutdown();
+      }
+    }
+
+    @Test
+    @DisplayName("CALLER_RUNS should factor the new request on the calling thread")
+    void callerRuns() throws Exception {
+      ThreadPoolExecutor pool = fullPool(RejectionPolicy.CALLER_RUNS);
+      try {
+        AsyncFactorizer factorizer = new AsyncFactorizer(pool);
+        CompletableFuture<long[]> queued = factorizer.computeFactors(10);
+        CompletableFuture<long[]> inline = factorizer.computeFactors(11);
+        assertTrue(inline.isDone());
+        assertArrayEquals(new long[] { 1, 11 }, inline.get());
+        assertFalse(queued.isDone());
+        release.countDown();
+        assertArrayEquals(new long[] { 1, 2, 5, 10 }, queued.get(10, TimeUnit.SECONDS));
+      } finally {
+        release.countDown();
+        pool.shutdown();
+      }
+    }
+
+    @Test
+    @DisplayName("DISCARD_OLDEST should fail the queued request and take the new one")
+    void discardOldest() throws Exception {
+      ThreadPoolExecutor pool = fullPool(RejectionPolicy.DISCARD_OLDEST);
+      try {
+        AsyncFactorizer factorizer = new AsyncFactorizer(pool);
+        CompletableFuture<long[]> discarded = factorizer.computeFactors(10);
+        CompletableFuture<long[]> queued = factorizer.computeFactors(11);
+        ExecutionException thrown = assertThrows(ExecutionException.class, discarded::get);
+        assertTrue(thrown.getCause() instanceof RejectedExecutionException);
+        release.countDown();
+        assertArrayEquals(new long[] { 1, 11 }, queued.get(10, TimeUnit.SECONDS));
+        assertEquals(0, factorizer.getInFlightCount());
+      } finally {
+        release.countDown();
+        pool.shutdown();
+      }
+    }
+
+  }
+
+  @Test
+  @DisplayName("a closed factorizer should fail new requests, and bad sizes should be refused")
+  void closedAndBadSizes() {
+    AsyncFactorizer factorizer = AsyncFactorizer.newBounded(1, 0, RejectionPolicy.CALLER_RUNS);
+    factorizer.close();
+    ExecutionException thrown = assertThrows(ExecutionException.class, () -> factorizer.computeFactors(12).get());
+    assertTrue(thrown.getCause() instanceof RejectedExecutionException);
+    assertThrows(IllegalArgumentException.class, () -> AsyncFactorizer.newBounded(0, 1, RejectionPolicy.ABORT));
+    assertThrows(IllegalArgumentException.class, () -> AsyncFactorizer.newBounded(1, -1, RejectionPolicy.ABORT));
+  }
+
+  @Test
+  @DisplayName("newVirtualThreadPerTask should work on Java 21 and later, and say why not before that")
+  void virtualThreads() throws Exception {
+    if (Runtime.version().feature() >= 21) {
+      try (AsyncFactorizer factorizer = AsyncFactorizer.newVirtualThreadPerTask()) {
+        assertArrayEquals(new long[] { 1, 2, 3, 6 }, factorizer.computeFactors(6).get(10, TimeUnit.SECONDS));
+      }
+    } else {
+      assertThrows(UnsupportedOperationException.class, AsyncFactorizer::newVirtualThreadPerTask);
+    }
+  }
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the BigIntegerFactorizer class and computeFactors(BigInteger).
+ *
+ * @author J Steven Perry
+ *
+ */
+@DisplayName("Testing BigIntegerFactorizer...")
+public class BigIntegerFactorizerTest {
+
+  /**
+   * The first prime after 2^bits + offset, so the inputs are fixed.
+   */
+  private static BigInteger primeAbove(int bits, long offset) {
+    return BigInteger.ONE.shiftLeft(bits).add(BigInteger.valueOf(offset)).nextProbablePrime();
+  }
+
+  private static SortedMap<BigInteger, Integer> factorization(BigInteger... primes) {
+    SortedMap<BigInteger, Integer> ret = new TreeMap<>();
+    for (BigInteger prime : primes) {
+      ret.merge(prime, 1, Integer::sum);
+    }
+    return ret;
+  }
+
+  private static BigInteger product(BigInteger... primes) {
+    BigInteger ret = BigInteger.ONE;
+    for (BigInteger prime : primes) {
+      ret = ret.multiply(prime);
+    }
+    return ret;
+  }
+
+  @Test
+  @DisplayName("factor should handle small primes, powers and a large prime cofactor")
+  void factorSmallPrimesAndLargePrime() {
+    BigInteger[] primes = { BigInteger.valueOf(2), BigInteger.valueOf(2), BigInteger.valueOf(3),
+        BigInteger.valueOf(65521), BigInteger.valueOf(65521), primeAbove(100, 0) };
+    assertEquals(factorization(primes), BigIntegerFactorizer.factor(product(primes)));
+    assertEquals(new TreeMap<BigInteger, Integer>(), BigIntegerFactorizer.factor(BigInteger.ONE));
+  }
+
+  @Test
+  @DisplayName("factor should find rho-sized factors")
+  void factorWithRho() {
+    BigInteger[] primes = { primeAbove(24, 0), primeAbove(30, 0), primeAbove(90, 0) };
+    assertEquals(factorization(primes), BigIntegerFactorizer.factor(product(primes)));
+  }
+
+  @Test
+  @DisplayName("factor should split a 128-bit semiprime with two 64-bit factors in seconds")
+  void factor128BitSemiprime() {
+    BigInteger[] primes = { primeAbove(63, 12345), primeAbove(64, 678910) };
+    assertTimeoutPreemptively(Duration.ofSeconds(60),
+        () -> assertEquals(factorization(primes), BigIntegerFactorizer.factor(product(primes))));
+  }
+
+  @Test
+  @DisplayName("factor should find a 50-bit factor of a 180-bit number with ECM")
+  void factorWithEcm() {
+    BigInteger[] primes = { primeAbove(50, 0), primeAbove(130, 0) };
+    assertTimeoutPreemptively(Duration.ofSeconds(60),
+        () -> assertEquals(factorization(primes), BigIntegerFactorizer.factor(product(primes))));
+  }
+
+  @Test
+  @DisplayName("factor should handle perfect powers of large primes")
+  void factorPerfectPower() {
+    BigInteger prime = primeAbove(40, 0);
+    SortedMap<BigInteger, Integer> expected = new TreeMap<>();
+    expected.put(prime, 5);
+    assertEquals(expected, BigIntegerFactorizer.factor(prime.pow(5)));
+    assertEquals(BigInteger.valueOf(1000), BigIntegerFactorizer.root(BigInteger.valueOf(1000).pow(3), 3));
+    assertEquals(BigInteger.valueOf(999), BigIntegerFactorizer.root(BigInteger.valueOf(999999999), 3));
+  }
+
+  @Test
+  @DisplayName("computeFactors(BigInteger) should match computeFactors(long) for longs")
+  void computeFactorsMatchesLong() {
+    for (long compoundInteger : new long[] { 1, 12, 733, 3600, 897612484786617600L, Long.MAX_VALUE }) {
+      long[] expected = YetAnotherUtility.computeFactors(compoundInteger);
+      BigInteger[] actual = YetAnotherUtility.computeFactors(BigInteger.valueOf(compoundInteger));
+      assertEquals(expected.length, actual.length);
+      for (int aa = 0; aa < expected.length; aa++) {
+        assertEquals(expected[aa], actual[aa].longValueExact());
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("computeFactors(BigInteger) should list every factor beyond Long.MAX_VALUE, ascending")
+  void computeFactorsBeyondLong() {
+    BigInteger large = primeAbove(70, 0);
+    BigInteger compoundInteger = BigInteger.valueOf(12).multiply(large);
+    BigInteger[] expected = { BigInteger.ONE, BigInteger.valueOf(2), BigInteger.valueOf(3), BigInteger.valueOf(4),
+        BigInteger.valueOf(6), BigInteger.valueOf(12), large, large.multiply(BigInteger.valueOf(2)),
+        large.multiply(BigInteger.valueOf(3)), large.multiply(BigInteger.valueOf(4)),
+        large.multiply(BigInteger.valueOf(6)), compoundInteger };
+    assertArrayEquals(expected, YetAnotherUtility.computeFactors(compoundInteger));
+  }
+
+  @Test
+  @DisplayName("computeFactors(BigInteger) with zero or a negative number")
+  void computeFactorsZeroAndNegative() {
+    assertNull(YetAnotherUtility.computeFactors(BigInteger.ZERO));
+    assertThrows(IllegalArgumentException.class, () -> YetAnotherUtility.computeFactors(BigInteger.valueOf(-100)));
+    assertThrows(IllegalArgumentException.class, () -> BigIntegerFactorizer.factor(BigInteger.ZERO));
+  }
+
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests computeFactors with a CancellationToken.
+ *
+ * @author J Steven Perry
+ *
+ */
+@DisplayName("Testing cancellable computeFactors...")
+public class CancellableFactorizationTest {
+
+  /**
+   * 12 times a 128-bit semiprime with two 64-bit factors, which takes ECM
+   * seconds to split.
+   */
+  private static final BigInteger HARD_SEMIPRIME = BigInteger.ONE.shiftLeft(63).add(BigInteger.valueOf(12345))
+      .nextProbablePrime().multiply(BigInteger.ONE.shiftLeft(64).add(BigInteger.valueOf(678910)).nextProbablePrime());
+
+  private static final BigInteger HARD = HARD_SEMIPRIME.multiply(BigInteger.valueOf(12));
+
+  /**
+   * Checks that a partial result accounts for the whole compound integer.
+   */
+  private static void assertConsistent(FactorizationResult result) {
+    BigInteger product = result.getCofactor();
+    for (Map.Entry<BigInteger, Integer> primePower : result.getPrimeFactors().entrySet()) {
+      assertTrue(primePower.getKey().isProbablePrime(100));
+      product = product.multiply(primePower.getKey().pow(primePower.getValue()));
+    }
+    assertEquals(result.getCompoundInteger(), product);
+    for (BigInteger factor : result.getFactors()) {
+      assertEquals(BigInteger.ZERO, result.getCompoundInteger().mod(factor));
+    }
+  }
+
+  @Test
+  @DisplayName("computeFactors with a token nobody cancels should be complete")
+  void completeWithoutCancellation() {
+    for (long compoundInteger : new long[] { 1, 12, 3600, 897612484786617600L, Long.MAX_VALUE }) {
+      FactorizationResult result = YetAnotherUtility.computeFactors(compoundInteger, new CancellationToken());
+      assertTrue(result.isComplete());
+      assertEquals(BigInteger.ONE, result.getCofactor());
+      long[] expected = YetAnotherUtility.computeFactors(compoundInteger);
+      BigInteger[] actual = result.getFactors();
+      assertEquals(expected.length, actual.length);
+      for (int aa = 0; aa < expected.length; aa++) {
+        assertEquals(expected[aa], actual[aa].longValueExact());
+      }
+    }
+    BigInteger beyondLong = BigInteger.ONE.shiftLeft(90).nextProbablePrime().multiply(BigInteger.valueOf(30));
+    FactorizationResult result = YetAnotherUtility.computeFactors(beyondLong,
+        CancellationToken.withTimeout(1, TimeUnit.MINUTES));
+    assertTrue(result.isComplete());
+    assertArrayEquals(YetAnotherUtility.computeFactors(beyondLong), result.getFactors());
+  }
+
+  @Test
+  @DisplayName("computeFactors with an expired deadline should return a partial result")
+  void alreadyExpired() {
+    FactorizationResult result = YetAnotherUtility.computeFactors(HARD, CancellationToken.withTimeout(0,
+        TimeUnit.MILLISECONDS));
+    assertFalse(result.isComplete());
+    assertConsistent(result);
+    assertEquals(Integer.valueOf(2), result.getPrimeFactors().get(BigInteger.valueOf(2)));
+  }
+
+  @Test
+  @DisplayName("computeFactors should stop close to its deadline with the factors found so far")
+  void stopsAtDeadline() {
+    FactorizationResult result = assertTimeoutPreemptively(Duration.ofSeconds(5),
+        () -> YetAnotherUtility.computeFactors(HARD, CancellationToken.withTimeout(200, TimeUnit.MILLISECONDS)));
+    assertFalse(result.isComplete());
+    assertConsistent(result);
+    assertEquals(HARD_SEMIPRIME, result.getCofactor());
+    BigInteger[] expected = { BigInteger.ONE, BigInteger.valueOf(2), BigInteger.valueOf(3), BigInteger.valueOf(4),
+        BigInteger.valueOf(6), BigInteger.valueOf(12) };
+    assertArrayEquals(expected, result.getFactors());
+  }
+
+  @Test
+  @DisplayName("computeFactors should stop when the token is cancelled from another thread")
+  void cancelledFromAnotherThread() throws Exception {
+    CancellationToken token = new CancellationToken();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<FactorizationResult> future = executor.submit(() -> YetAnotherUtility.computeFactors(HARD, token));
+      Thread.sleep(100);
+      token.cancel();
+      FactorizationResult result = future.get(5, TimeUnit.SECONDS);
+      assertTrue(token.isCancelled());
+      assertFalse(result.isComplete());
+      assertConsistent(result);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  @DisplayName("computeFactors should stop when the calling thread is interrupted")
+  void stopsOnInterrupt() throws Exception {
+    AtomicReference<FactorizationResult> result = new AtomicReference<>();
+    AtomicBoolean stillInterrupted = new AtomicBoolean();
+    CancellationToken token = new CancellationToken();
+    Thread worker = new Thread(() -> {
+      result.set(YetAnotherUtility.computeFactors(HARD, token));
+      stillInterrupted.set(Thread.currentThread().isInterrupted());
+    });
+    worker.start();
+    Thread.sleep(100);
+    worker.interrupt();
+    worker.join(5000);
+    assertFalse(worker.isAlive());
+    assertFalse(result.get().isComplete());
+    assertConsistent(result.get());
+    assertTrue(stillInterrupted.get());
+    assertFalse(token.isCancelled(), "The caller's token is left alone");
+  }
+
+  @Test
+  @DisplayName("computeFactors with a token and zero or a negative number")
+  void zeroAndNegative() {
+    assertNull(YetAnotherUtility.computeFactors(BigInteger.ZERO, new CancellationToken()));
+    assertNull(YetAnotherUtility.computeFactors(0, new CancellationToken()));
+    assertThrows(IllegalArgumentException.class,
+        () -> YetAnotherUtility.computeFactors(BigInteger.valueOf(-100), new CancellationToken()));
+    assertThrows(IllegalArgumentException.class, () -> YetAnotherUtility.computeFactors(-100,
+        new CancellationToken()));
+  }
+
+}
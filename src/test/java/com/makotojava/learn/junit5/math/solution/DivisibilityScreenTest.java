@@ -0,0 +1,120 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the DivisibilityScreen class and computePrimeFactorizations.
+ *
+ * @author J Steven Perry
+ *
+ */
+@DisplayName("Testing DivisibilityScreen...")
+public class DivisibilityScreenTest {
+
+  /**
+   * Random values, with a good share of them multiplied up by small primes so
+   * plenty of bits are set, and the edge cases.
+   */
+  private static long[] testValues(int count) {
+    Random random = new Random(20171017L);
+    long[] ret = new long[count];
+    for (int aa = 0; aa < count; aa++) {
+      long value = random.nextLong();
+      if (aa % 2 == 0) {
+        long prime = DivisibilityScreen.PRIMES[random.nextInt(DivisibilityScreen.PRIMES.length)];
+        value = (value >>> 12) / prime * prime;
+      }
+      ret[aa] = value;
+    }
+    long[] edges = { 0, 1, 3, 1021, 1023, 1021L * 1019L, Long.MAX_VALUE, Long.MIN_VALUE, -1, -3 };
+    System.arraycopy(edges, 0, ret, 0, edges.length);
+    return ret;
+  }
+
+  @Test
+  @DisplayName("the screen should cover every odd prime up to 1024")
+  void primes() {
+    assertEquals(171, DivisibilityScreen.PRIMES.length);
+    assertEquals(3, DivisibilityScreen.PRIMES[0]);
+    assertEquals(1021, DivisibilityScreen.PRIMES[170]);
+    assertEquals(3, DivisibilityScreen.WORDS);
+    assertEquals(0, DivisibilityScreen.primesNeeded(8));
+    assertEquals(1, DivisibilityScreen.primesNeeded(9));
+    assertEquals(24, DivisibilityScreen.primesNeeded(10000));
+    assertEquals(171, DivisibilityScreen.primesNeeded(1L << 20));
+    assertEquals(171, DivisibilityScreen.primesNeeded(-1));
+  }
+
+  @Test
+  @DisplayName("screen should set exactly the bits the remainder version sets")
+  void matchesRemainders() {
+    long[] values = testValues(5000);
+    int all = DivisibilityScreen.PRIMES.length;
+    for (int[] range : new int[][] { { 0, values.length, all }, { 17, 273, all }, { 4999, 5000, all }, { 10, 10, all },
+        { 0, values.length, 100 }, { 0, values.length, 0 } }) {
+      int length = range[1] - range[0];
+      long[] expected = new long[DivisibilityScreen.WORDS * length];
+      long[] actual = new long[DivisibilityScreen.WORDS * length];
+      Arrays.fill(actual, -1L);
+      DivisibilityScreen.screenByRemainder(values, range[0], range[1], range[2], expected);
+      DivisibilityScreen.screen(values, range[0], range[1], range[2], actual);
+      assertArrayEquals(expected, actual, "Masks for " + Arrays.toString(range));
+    }
+    long[] masks = new long[DivisibilityScreen.WORDS];
+    DivisibilityScreen.screen(new long[] { 3L * 5 * 1021 }, 0, 1, all, masks);
+    assertArrayEquals(new long[] { 0b11, 0, 1L << (170 - 128) }, masks);
+  }
+
+  @Test
+  @DisplayName("computePrimeFactorizations should match computePrimeFactorization")
+  void computePrimeFactorizations() {
+    long[] values = testValues(2000);
+    for (int aa = 0; aa < values.length; aa++) {
+      values[aa] = (aa < 1000) ? aa : values[aa] & Long.MAX_VALUE;
+    }
+    PrimeFactorization[] actual = YetAnotherUtility.computePrimeFactorizations(values);
+    assertNull(actual[0]);
+    for (int aa = 1; aa < values.length; aa++) {
+      PrimeFactorization expected = YetAnotherUtility.computePrimeFactorization(values[aa]);
+      assertArrayEquals(expected.getPrimes(), actual[aa].getPrimes(), "Primes of " + values[aa]);
+      assertArrayEquals(expected.getExponents(), actual[aa].getExponents(), "Exponents of " + values[aa]);
+    }
+    YetAnotherUtility.setSmallestPrimeFactorTable(new SmallestPrimeFactorTable(500));
+    try {
+      actual = YetAnotherUtility.computePrimeFactorizations(new long[] { 360, 1L << 40 });
+      assertEquals("2^3 * 3^2 * 5", actual[0].toString());
+      assertEquals("2^40", actual[1].toString());
+    } finally {
+      YetAnotherUtility.setSmallestPrimeFactorTable(null);
+    }
+    assertEquals(0, YetAnotherUtility.computePrimeFactorizations(new long[0]).length);
+    assertThrows(IllegalArgumentException.class,
+        () -> YetAnotherUtility.computePrimeFactorizations(new long[] { 1, 2, -3 }));
+  }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the lazy divisors(long) stream and the DivisorIterator behind it.
+ *
+ * @author J Steven Perry
+ *
+ */
+@DisplayName("Testing divisors...")
+public class DivisorIteratorTest {
+
+  @Test
+  @DisplayName("divisors should produce the same factors as computeFactors")
+  void divisorsMatchComputeFactors() {
+    for (long compoundInteger = 1; compoundInteger <= 5000; compoundInteger++) {
+      assertArrayEquals(YetAnotherUtility.computeFactors(compoundInteger),
+          YetAnotherUtility.divisors(compoundInteger).toArray(), "Divisors of " + compoundInteger);
+    }
+    assertArrayEquals(YetAnotherUtility.computeFactors(Long.MAX_VALUE),
+        YetAnotherUtility.divisors(Long.MAX_VALUE).toArray());
+  }
+
+  @Test
+  @DisplayName("divisors of a highly composite number should be ascending and report their count")
+  void divisorsOfHighlyCompositeNumber() {
+    long compoundInteger = 897612484786617600L;
+    assertEquals(103680, YetAnotherUtility.divisors(compoundInteger).count());
+    assertArrayEquals(YetAnotherUtility.computeFactors(compoundInteger),
+        YetAnotherUtility.divisors(compoundInteger).toArray());
+  }
+
+  @Test
+  @DisplayName("divisors should short-circuit on the first few factors")
+  void divisorsShortCircuit() {
+    long compoundInteger = 897612484786617600L;
+    assertArrayEquals(new long[] { 1, 2, 3, 4, 5 }, YetAnotherUtility.divisors(compoundInteger).limit(5).toArray());
+    assertEquals(3037000453L, YetAnotherUtility.divisors(3037000453L * 3037000493L).skip(1).findFirst().getAsLong());
+    assertTrue(YetAnotherUtility.divisors(compoundInteger).anyMatch(factor -> factor > 1000 && factor < 1010));
+  }
+
+  @Test
+  @DisplayName("divisors of 0 should be empty")
+  void divisorsOfZero() {
+    assertEquals(0, YetAnotherUtility.divisors(0).count());
+  }
+
+  @Test
+  @DisplayName("divisors with negative number throws IllegalArgumentException")
+  void divisorsOfNegative() {
+    assertThrows(IllegalArgumentException.class, () -> YetAnotherUtility.divisors(-100L));
+  }
+
+  @Test
+  @DisplayName("DivisorIterator should throw NoSuchElementException when exhausted")
+  void iteratorExhausted() {
+    PrimitiveIterator.OfLong iterator = new DivisorIterator(new long[] { 733 }, new int[] { 1 }, 1);
+    assertEquals(1, iterator.nextLong());
+    assertEquals(733, iterator.nextLong());
+    assertFalse(iterator.hasNext());
+    assertThrows(NoSuchElementException.class, () -> iterator.nextLong());
+  }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import static com.makotojava.learn.junit5.math.solution.AllocationAssertions.assertAllocatesAtMost;
+import static com.makotojava.learn.junit5.math.solution.AllocationAssertions.assertAllocationFree;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.opentest4j.AssertionFailedError;
+
+/**
+ * Tests the allocation-free computeFactors overloads and FactorBuffer.
+ *
+ * @author J Steven Perry
+ *
+ */
+@DisplayName("Testing computeFactors into a buffer...")
+public class FactorBufferTest {
+
+  /**
+   * A mix of every path: trial-division sized, primes, prime powers, a
+   * semiprime that needs Pollard's rho, and a number with 103680 factors.
+   */
+  private static final long[] STEADY_STATE_INPUTS = { 1, 2, 12, 3600, 65536, 999983, 16777216, 1234567890L,
+      3037000453L * 3037000493L, 9223372036854775783L, Long.MAX_VALUE, 897612484786617600L };
+
+  @Test
+  @DisplayName("computeFactors into a FactorBuffer should match computeFactors")
+  void factorBufferMatchesComputeFactors() {
+    FactorBuffer buffer = new FactorBuffer(1);
+    for (long compoundInteger = 1; compoundInteger <= 5000; compoundInteger++) {
+      int count = YetAnotherUtility.computeFactors(compoundInteger, buffer);
+      assertEquals(count, buffer.size());
+      assertArrayEquals(YetAnotherUtility.computeFactors(compoundInteger), buffer.toArray(),
+          "Factors of " + compoundInteger);
+    }
+    for (long compoundInteger : STEADY_STATE_INPUTS) {
+      YetAnotherUtility.computeFactors(compoundInteger, buffer);
+      assertArrayEquals(YetAnotherUtility.computeFactors(compoundInteger), buffer.toArray(),
+          "Factors of " + compoundInteger);
+      assertEquals(1, buffer.get(0));
+      assertEquals(compoundInteger, buffer.get(buffer.size() - 1));
+    }
+    assertThrows(IndexOutOfBoundsException.class, () -> buffer.get(buffer.size()));
+  }
+
+  @Test
+  @DisplayName("computeFactors into an array should match computeFactors, or leave a short array alone")
+  void arrayMatchesComputeFactors() {
+    long[] factors = new long[103680];
+    for (long compoundInteger : STEADY_STATE_INPUTS) {
+      int count = YetAnotherUtility.computeFactors(compoundInteger, factors);
+      assertArrayEquals(YetAnotherUtility.computeFactors(compoundInteger), Arrays.copyOf(factors, count));
+    }
+    long[] tooShort = new long[4];
+    assertEquals(9, YetAnotherUtility.computeFactors(36, tooShort));
+    assertArrayEquals(new long[4], tooShort);
+  }
+
+  @Test
+  @DisplayName("computeFactors into a buffer with zero or a negative number")
+  void zeroAndNegative() {
+    FactorBuffer buffer = new FactorBuffer();
+    YetAnotherUtility.computeFactors(12, buffer);
+    assertEquals(0, YetAnotherUtility.computeFactors(0, buffer));
+    assertEquals(0, buffer.size());
+    assertEquals(0, YetAnotherUtility.computeFactors(0, new long[0]));
+    assertThrows(IllegalArgumentException.class, () -> YetAnotherUtility.computeFactors(-100L, buffer));
+    assertThrows(IllegalArgumentException.class, () -> YetAnotherUtility.computeFactors(-100L, new long[1]));
+    assertThrows(IllegalArgumentException.class, () -> new FactorBuffer(0));
+  }
+
+  @Test
+  @DisplayName("computeFactors into a buffer should allocate nothing once warmed up")
+  void steadyStateAllocatesNothing() throws Throwable {
+    FactorBuffer buffer = new FactorBuffer();
+    long[] factors = new long[103680];
+    //
+    // The warm-up grows the buffers and lets the JIT compile the loop
+    assertAllocatesAtMost(0, 300, 50, () -> runSteadyState(buffer, factors));
+  }
+
+  @Test
+  @DisplayName("isPrime should allocate nothing, and computeFactors only its result")
+  void allocationBudgets() throws Throwable {
+    assertAllocationFree(() -> YetAnotherUtility.isPrime(9223372036854775783L));
+    assertAllocationFree(() -> YetAnotherUtility.isPrime(3037000453L * 3037000493L));
+    //
+    // The result, and scratch space in proportion to it. A TreeSet of boxed
+    // Longs, at over 56 bytes a factor, would not fit.
+    for (long compoundInteger : new long[] { 1234567890L, 32767L * 10000L, 9223372036854775783L }) {
+      long budget = 32 * YetAnotherUtility.computeFactors(compoundInteger).length + 1024;
+      assertAllocatesAtMost(budget, () -> YetAnotherUtility.computeFactors(compoundInteger));
+    }
+    long[][] escaped = new long[1][];
+    assertThrows(AssertionFailedError.class, () -> assertAllocatesAtMost(1024, () -> escaped[0] = new long[1024]));
+  }
+
+  private static long runSteadyState(FactorBuffer buffer, long[] factors) {
+    long ret = 0;
+    for (long compoundInteger : STEADY_STATE_INPUTS) {
+      ret += YetAnotherUtility.computeFactors(compoundInteger, buffer);
+      ret += YetAnotherUtility.computeFactors(compoundInteger, factors);
+    }
+    return ret;
+  }
+
+}
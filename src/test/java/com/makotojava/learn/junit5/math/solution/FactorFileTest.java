@@ -0,0 +1,144 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests NumberFile, FactorFileWriter, FactorFileReader and BinaryBatchRunner.
+ *
+ * @author J Steven Perry
+ *
+ */
+@DisplayName("Testing the binary factor file format...")
+public class FactorFileTest {
+
+  private static long[] testNumbers() {
+    Random random = new Random(20171017L);
+    long[] ret = new long[3000];
+    for (int aa = 0; aa < ret.length; aa++) {
+      ret[aa] = (aa % 2 == 0) ? aa : random.nextLong() >>> (1 + random.nextInt(40));
+    }
+    ret[1] = Long.MAX_VALUE;
+    ret[3] = 897612484786617600L;
+    return ret;
+  }
+
+  @Test
+  @DisplayName("BinaryBatchRunner should write records that read back as computeFactors, in any order")
+  void roundTrip() throws IOException {
+    Path input = Files.createTempFile("numbers", ".bin");
+    Path output = Files.createTempFile("factors", ".bin");
+    try {
+      long[] numbers = testNumbers();
+      NumberFile.write(input, numbers);
+      NumberFile numberFile = NumberFile.open(input);
+      assertEquals(numbers.length, numberFile.size());
+      assertEquals(Long.MAX_VALUE, numberFile.get(1));
+      assertEquals(numbers.length, BinaryBatchRunner.run(input, output));
+      FactorFileReader reader = FactorFileReader.open(output);
+      assertEquals(numbers.length, reader.size());
+      for (int aa = numbers.length - 1; aa >= 0; aa--) {
+        long[] expected = (numbers[aa] == 0) ? new long[0] : YetAnotherUtility.computeFactors(numbers[aa]);
+        assertArrayEquals(expected, reader.getFactors(aa), "Factors of " + numbers[aa]);
+      }
+      assertEquals(103680, reader.getFactorCount(3));
+      long[] small = new long[] { -1, -1 };
+      assertEquals(4, reader.getFactors(10, small));
+      assertArrayEquals(new long[] { -1, -1 }, small);
+      assertThrows(IndexOutOfBoundsException.class, () -> reader.getFactors(numbers.length));
+      // Varints make most records much smaller than 8 bytes a factor
+      long factorBytes = 0;
+      for (int aa = 0; aa < numbers.length; aa++) {
+        factorBytes += (long) reader.getFactorCount(aa) * Long.BYTES;
+      }
+      assertTrue(Files.size(output) < factorBytes / 2, Files.size(output) + " bytes");
+    } finally {
+      Files.delete(input);
+      Files.delete(output);
+    }
+  }
+
+  @Test
+  @DisplayName("a file with fewer records than its capacity should hold just those records")
+  void fewerRecordsThanCapacity() throws IOException {
+    Path output = Files.createTempFile("factors", ".bin");
+    try {
+      try (FactorFileWriter writer = new FactorFileWriter(output, 10)) {
+        writer.write(new long[] { 1, 2, 3, 6 }, 4);
+        writer.write(new long[0], 0);
+      }
+      FactorFileReader reader = FactorFileReader.open(output);
+      assertEquals(2, reader.size());
+      assertArrayEquals(new long[] { 1, 2, 3, 6 }, reader.getFactors(0));
+      assertArrayEquals(new long[0], reader.getFactors(1));
+      try (FactorFileWriter writer = new FactorFileWriter(output, 1)) {
+        writer.write(new long[] { 1 }, 1);
+        assertThrows(IllegalStateException.class, () -> writer.write(new long[] { 1 }, 1));
+      }
+    } finally {
+      Files.delete(output);
+    }
+  }
+
+  @Test
+  @DisplayName("a batch that fails partway should leave a file readers reject")
+  void failedBatch() throws IOException {
+    Path input = Files.createTempFile("numbers", ".bin");
+    Path output = Files.createTempFile("factors", ".bin");
+    try {
+      NumberFile.write(input, new long[] { 12, 30, -5, 49 });
+      assertThrows(IllegalArgumentException.class, () -> BinaryBatchRunner.run(input, output));
+      assertThrows(IOException.class, () -> FactorFileReader.open(output));
+      try (FactorFileWriter writer = new FactorFileWriter(output, 2)) {
+        writer.write(new long[] { 1, 2, 3, 6 }, 4);
+        writer.abort();
+      }
+      assertThrows(IOException.class, () -> FactorFileReader.open(output));
+    } finally {
+      Files.delete(input);
+      Files.delete(output);
+    }
+  }
+
+  @Test
+  @DisplayName("files in the wrong format should be rejected")
+  void wrongFormat() throws IOException {
+    Path file = Files.createTempFile("numbers", ".bin");
+    try {
+      Files.write(file, new byte[20]);
+      assertThrows(IOException.class, () -> NumberFile.open(file));
+      assertThrows(IOException.class, () -> FactorFileReader.open(file));
+      Files.write(file, new byte[4]);
+      assertThrows(IOException.class, () -> FactorFileReader.open(file));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the FactorizationCache class.
+ *
+ * @author J Steven Perry
+ *
+ */
+@DisplayName("Testing FactorizationCache...")
+public class FactorizationCacheTest {
+
+  @Test
+  @DisplayName("get should return what was put, and count hits and misses")
+  void getAfterPut() {
+    FactorizationCache cache = new FactorizationCache(100);
+    assertNull(cache.get(1023));
+    cache.put(1023, new long[] { 1, 3, 11, 31, 33, 93, 341, 1023 });
+    assertArrayEquals(new long[] { 1, 3, 11, 31, 33, 93, 341, 1023 }, cache.get(1023));
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  @DisplayName("Cached arrays should not be changed by changing arrays passed in or handed out")
+  void defensiveCopies() {
+    FactorizationCache cache = new FactorizationCache(100);
+    long[] factors = { 1, 733 };
+    cache.put(733, factors);
+    factors[1] = 0;
+    cache.get(733)[0] = 0;
+    assertArrayEquals(new long[] { 1, 733 }, cache.get(733));
+  }
+
+  @Test
+  @DisplayName("A full cache should evict the least recently used entry")
+  void evictsLeastRecentlyUsed() {
+    FactorizationCache cache = new FactorizationCache(3, 1);
+    cache.put(1, new long[] { 1 });
+    cache.put(2, new long[] { 1, 2 });
+    cache.put(3, new long[] { 1, 3 });
+    cache.get(1);
+    cache.put(4, new long[] { 1, 2, 4 });
+    assertNull(cache.get(2));
+    assertNotNull(cache.get(1));
+    assertNotNull(cache.get(3));
+    assertNotNull(cache.get(4));
+    assertEquals(3, cache.size());
+  }
+
+  @Test
+  @DisplayName("A cache under churn should never hold more than its maximum size, or lose recent entries")
+  void churn() {
+    FactorizationCache cache = new FactorizationCache(64, 4);
+    Random random = new Random(1023);
+    for (int aa = 0; aa < 100000; aa++) {
+      long key = random.nextInt(500);
+      cache.put(key, new long[] { key });
+      assertArrayEquals(new long[] { key }, cache.get(key));
+      assertTrue(cache.size() <= cache.getMaximumSize());
+    }
+    assertEquals(64, cache.getMaximumSize());
+  }
+
+  @Test
+  @DisplayName("computeFactors should answer repeat requests from an installed cache")
+  void computeFactorsUsesCache() throws Exception {
+    FactorizationCache cache = new FactorizationCache(1000);
+    YetAnotherUtility.setFactorizationCache(cache);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      for (long compoundInteger = 1; compoundInteger <= 500; compoundInteger++) {
+        YetAnotherUtility.computeFactors(compoundInteger);
+      }
+      List<Future<?>> futures = new ArrayList<>();
+      for (int thread = 0; thread < 4; thread++) {
+        futures.add(executor.submit(() -> {
+          for (long compoundInteger = 1; compoundInteger <= 500; compoundInteger++) {
+            assertArrayEquals(YetAnotherUtility.computeFactorsByTrialDivision(compoundInteger),
+                YetAnotherUtility.computeFactors(compoundInteger));
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+      assertEquals(500, cache.getMissCount());
+      assertEquals(2000, cache.getHitCount());
+    } finally {
+      executor.shutdown();
+      YetAnotherUtility.setFactorizationCache(null);
+    }
+  }
+
+  @Test
+  @DisplayName("FactorizationCache with a size of zero throws IllegalArgumentException")
+  void invalidSize() {
+    assertThrows(IllegalArgumentException.class, () -> new FactorizationCache(0));
+  }
+
+}
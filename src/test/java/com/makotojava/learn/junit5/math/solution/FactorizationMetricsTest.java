@@ -0,0 +1,192 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.makotojava.learn.junit5.math.solution.FactorizationMetrics.Algorithm;
+import com.makotojava.learn.junit5.math.solution.FactorizationMetrics.HistogramSnapshot;
+import com.makotojava.learn.junit5.math.solution.FactorizationMetrics.Snapshot;
+
+/**
+ * Tests the FactorizationMetrics class.
+ *
+ * @author J Steven Perry
+ *
+ */
+@DisplayName("Testing FactorizationMetrics...")
+public class FactorizationMetricsTest {
+
+  @Test
+  @DisplayName("computeFactors should count calls by algorithm and bit length")
+  void computeFactorsRecordsCalls() {
+    FactorizationMetrics metrics = new FactorizationMetrics();
+    YetAnotherUtility.setFactorizationMetrics(metrics);
+    try {
+      YetAnotherUtility.computeFactors(0);
+      YetAnotherUtility.computeFactors(12);
+      YetAnotherUtility.computeFactors(13);
+      YetAnotherUtility.computeFactors(Long.MAX_VALUE);
+      YetAnotherUtility.computeFactors(Long.MAX_VALUE, new FactorBuffer());
+      Snapshot snapshot = metrics.snapshot();
+      assertEquals(5, snapshot.getCallCount());
+      assertEquals(3, snapshot.getCallCount(Algorithm.TRIAL_DIVISION));
+      assertEquals(2, snapshot.getCallCount(Algorithm.PRIME_FACTORIZER));
+      assertEquals(0, snapshot.getCallCount(Algorithm.CACHE));
+      assertEquals(1, snapshot.getLatencyHistogram(0).getCount());
+      assertEquals(2, snapshot.getLatencyHistogram(4).getCount());
+      assertEquals(2, snapshot.getLatencyHistogram(63).getCount());
+      assertEquals(0, snapshot.getLatencyHistogram(32).getCount());
+      assertEquals(5, snapshot.getLatencyHistogram().getCount());
+      assertTrue(Double.isNaN(snapshot.getCacheHitRate()));
+    } finally {
+      YetAnotherUtility.setFactorizationMetrics(null);
+    }
+  }
+
+  @Test
+  @DisplayName("computeFactors should record cache lookups and table hits")
+  void computeFactorsRecordsCacheAndTable() {
+    FactorizationMetrics metrics = new FactorizationMetrics();
+    YetAnotherUtility.setFactorizationMetrics(metrics);
+    YetAnotherUtility.setFactorizationCache(new FactorizationCache(100));
+    YetAnotherUtility.setSmallestPrimeFactorTable(new SmallestPrimeFactorTable(1000));
+    try {
+      for (int aa = 0; aa < 4; aa++) {
+        YetAnotherUtility.computeFactors(360);
+      }
+      YetAnotherUtility.computeFactors(123456789L);
+      Snapshot snapshot = metrics.snapshot();
+      assertEquals(1, snapshot.getCallCount(Algorithm.SMALLEST_PRIME_FACTOR_TABLE));
+      assertEquals(3, snapshot.getCallCount(Algorithm.CACHE));
+      assertEquals(1, snapshot.getCallCount(Algorithm.PRIME_FACTORIZER));
+      assertEquals(3, snapshot.getCacheHitCount());
+      assertEquals(2, snapshot.getCacheMissCount());
+      assertEquals(0.6, snapshot.getCacheHitRate(), 1e-9);
+      metrics.reset();
+      assertEquals(0, metrics.snapshot().getCallCount());
+      assertEquals(0, metrics.snapshot().getLatencyHistogram(9).getCount());
+    } finally {
+      YetAnotherUtility.setFactorizationMetrics(null);
+      YetAnotherUtility.setFactorizationCache(null);
+      YetAnotherUtility.setSmallestPrimeFactorTable(null);
+    }
+  }
+
+  @Test
+  @DisplayName("latency buckets should cover every value to within 25%")
+  void bucketBoundaries() {
+    int previousIndex = -1;
+    for (long nanos = 0; nanos < 100000; nanos++) {
+      int index = FactorizationMetrics.bucketIndex(nanos);
+      assertTrue(index == previousIndex || index == previousIndex + 1, "Buckets are contiguous at " + nanos);
+      assertTrue(FactorizationMetrics.bucketHighestValue(index) >= nanos);
+      assertTrue(FactorizationMetrics.bucketHighestValue(index) <= nanos + nanos / 4);
+      previousIndex = index;
+    }
+    int last = FactorizationMetrics.bucketIndex(Long.MAX_VALUE);
+    assertEquals(Long.MAX_VALUE, FactorizationMetrics.bucketHighestValue(last));
+  }
+
+  @Test
+  @DisplayName("percentiles, mean and max should reflect the recorded latencies")
+  void percentiles() {
+    FactorizationMetrics metrics = new FactorizationMetrics();
+    for (long nanos = 1; nanos <= 1000; nanos++) {
+      metrics.record(1000, Algorithm.PRIME_FACTORIZER, nanos * 1000);
+    }
+    HistogramSnapshot histogram = metrics.snapshot().getLatencyHistogram(10);
+    assertEquals(1000, histogram.getCount());
+    assertEquals(500500.0, histogram.getMeanNanos(), 1e-9);
+    assertEquals(1000000, histogram.getMaxNanos());
+    assertEquals(1000000, histogram.getValueAtPercentile(100));
+    long median = histogram.getValueAtPercentile(50);
+    assertTrue(median >= 500000 && median <= 625000, "Median " + median);
+    long p99 = histogram.getValueAtPercentile(99);
+    assertTrue(p99 >= 990000 && p99 <= 1000000, "p99 " + p99);
+    assertThrows(IllegalArgumentException.class, () -> histogram.getValueAtPercentile(101));
+    assertThrows(IllegalArgumentException.class, () -> metrics.snapshot().getLatencyHistogram(64));
+    assertEquals(0, metrics.snapshot().getLatencyHistogram(11).getValueAtPercentile(50));
+  }
+
+  @Test
+  @DisplayName("recording from many threads should lose nothing")
+  void concurrentRecording() throws Exception {
+    FactorizationMetrics metrics = new FactorizationMetrics();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int thread = 0; thread < 4; thread++) {
+        futures.add(executor.submit(() -> {
+          for (long aa = 1; aa <= 10000; aa++) {
+            metrics.record(aa, Algorithm.TRIAL_DIVISION, aa);
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+      executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+    Snapshot snapshot = metrics.snapshot();
+    assertEquals(40000, snapshot.getCallCount());
+    assertEquals(40000, snapshot.getCallCount(Algorithm.TRIAL_DIVISION));
+    assertEquals(40000, snapshot.getLatencyHistogram().getCount());
+    assertEquals(4 * (10000 - 8192 + 1), snapshot.getLatencyHistogram(14).getCount());
+  }
+
+  @Test
+  @DisplayName("recording while another thread resets should never fail")
+  void recordingDuringReset() throws Exception {
+    FactorizationMetrics metrics = new FactorizationMetrics();
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<?> resets = executor.submit(() -> {
+        for (int aa = 0; aa < 20000; aa++) {
+          metrics.reset();
+        }
+      });
+      Future<?> records = executor.submit(() -> {
+        for (long aa = 1; aa <= 200000; aa++) {
+          metrics.record(aa & 0xFF, Algorithm.TRIAL_DIVISION, aa);
+        }
+      });
+      resets.get();
+      records.get();
+    } finally {
+      executor.shutdown();
+      executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+    metrics.record(1, Algorithm.TRIAL_DIVISION, 1);
+    assertTrue(metrics.snapshot().getLatencyHistogram(1).getCount() >= 1);
+  }
+
+}
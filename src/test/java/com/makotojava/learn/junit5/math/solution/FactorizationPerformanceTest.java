@@ -0,0 +1,58 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Holds the hot paths to {@link PerformanceBudget}s. Where assertTimeout
+ * times one cold call, mostly the JIT at work, these warm the code up and
+ * hold the median and 99th percentile of many calls to a budget, so a
+ * regression of several times fails the build.
+ *
+ * @author J Steven Perry
+ *
+ */
+@DisplayName("Testing factorization performance budgets...")
+public class FactorizationPerformanceTest {
+
+  @Test
+  @DisplayName("computeFactors with 32767 * 10000 takes a median under 25 us and a p99 under 250 us")
+  @PerformanceBudget(median = 25, p99 = 250)
+  void computeFactors(PerformanceProbe probe) throws Throwable {
+    long compoundInteger = 32767L * 10000L;
+    probe.measure(() -> YetAnotherUtility.computeFactors(compoundInteger));
+  }
+
+  @Test
+  @DisplayName("computePrimeFactorization of a semiprime with two 32-bit factors takes a median under 10 ms")
+  @PerformanceBudget(median = 10, p99 = 50, unit = TimeUnit.MILLISECONDS, warmupIterations = 100, iterations = 100)
+  void computePrimeFactorization(PerformanceProbe probe) throws Throwable {
+    probe.measure(() -> YetAnotherUtility.computePrimeFactorization(3037000453L * 3037000493L));
+  }
+
+  @Test
+  @DisplayName("isPrime of the largest 63-bit prime takes a median under 25 us")
+  @PerformanceBudget(median = 25, p99 = 250)
+  void isPrime(PerformanceProbe probe) throws Throwable {
+    probe.measure(() -> YetAnotherUtility.isPrime(9223372036854775783L));
+  }
+
+}
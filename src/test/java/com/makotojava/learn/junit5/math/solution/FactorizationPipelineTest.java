@@ -0,0 +1,101 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the FactorizationPipeline class.
+ *
+ * @author J Steven Perry
+ *
+ */
+@DisplayName("Testing FactorizationPipeline...")
+public class FactorizationPipelineTest {
+
+  private static PipelineStats run(FactorizationPipeline pipeline, String input, ByteArrayOutputStream output)
+      throws IOException {
+    return pipeline.run(Channels.newChannel(new ByteArrayInputStream(input.getBytes(StandardCharsets.US_ASCII))),
+        Channels.newChannel(output));
+  }
+
+  @Test
+  @DisplayName("every number should be written with its factors, in input order")
+  void writesFactorsInOrder() throws IOException {
+    Random random = new Random(20171017L);
+    StringBuilder input = new StringBuilder("0 1\r\n");
+    StringBuilder expected = new StringBuilder("0:\n1: 1\n");
+    for (int aa = 0; aa <= 2000; aa++) {
+      long number = (aa == 2000) ? Long.MAX_VALUE
+          : (aa % 3 == 0) ? random.nextInt(100000) + 1 : random.nextLong() >>> (1 + random.nextInt(40));
+      input.append(number).append((aa == 2000) ? "" : (aa % 5 == 0) ? ", " : "\n");
+      expected.append(number).append(':');
+      for (long factor : YetAnotherUtility.computeFactors(number)) {
+        expected.append(' ').append(factor);
+      }
+      expected.append('\n');
+    }
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    // A tiny read buffer splits numbers across reads, and tiny batches and
+    // queues keep the workers finishing out of order
+    PipelineStats stats = run(new FactorizationPipeline(3, 2, 7, 5), input.toString(), output);
+    assertEquals(expected.toString(), output.toString("US-ASCII"));
+    assertEquals(2003, stats.getNumbers());
+    assertEquals(input.length(), stats.getBytesRead());
+    assertEquals(output.size(), stats.getBytesWritten());
+    assertEquals(3, stats.getWorkers());
+    assertTrue(stats.getInputQueueMaxDepth() <= 2);
+    assertTrue(stats.toString().contains("2,003 numbers"));
+  }
+
+  @Test
+  @DisplayName("malformed input should fail the run instead of hanging it")
+  void malformedInput() {
+    for (String input : new String[] { "12 -5", "1 2 x", "9223372036854775808" }) {
+      assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+        assertThrows(IOException.class,
+            () -> run(new FactorizationPipeline(2, 1, 1, 2), input, new ByteArrayOutputStream()), input);
+      });
+    }
+    assertThrows(IllegalArgumentException.class, () -> new FactorizationPipeline(0, 1, 1));
+  }
+
+  @Test
+  @DisplayName("putLong should write any non-negative long in decimal")
+  void putLong() {
+    byte[] target = new byte[24];
+    for (long value : new long[] { 0, 9, 10, 999999999999999999L, 1000000000000000000L, Long.MAX_VALUE }) {
+      int end = FactorizationPipeline.putLong(target, 2, value);
+      assertEquals(Long.toString(value), new String(target, 2, end - 2, StandardCharsets.US_ASCII));
+    }
+  }
+
+}
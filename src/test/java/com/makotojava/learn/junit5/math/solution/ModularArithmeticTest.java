@@ -0,0 +1,232 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigInteger;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests ModularArithmetic and MontgomeryArithmetic against BigInteger.
+ *
+ * @author J Steven Perry
+ *
+ */
+@DisplayName("Testing modular arithmetic...")
+public class ModularArithmeticTest {
+
+  /**
+   * Moduli that stress the edges: tiny, around the 31/32-bit fast paths,
+   * with the top bit of the divisor set or not after normalizing, and right
+   * up against Long.MAX_VALUE.
+   */
+  private static final long[] EDGE_MODULI = { 3, 5, 65537, (1L << 31) - 1, (1L << 31) + 11, (1L << 32) - 5,
+      (1L << 32) + 15, 4759123141L, (1L << 33) + 17, 1000000007L * 998244353L, (1L << 62) - 57, (1L << 62) + 135,
+      3037000493L * 3037000453L, Long.MAX_VALUE - 24, Long.MAX_VALUE - 2, Long.MAX_VALUE };
+
+  /**
+   * Fixed seed, so a failure can be reproduced.
+   */
+  private static final long SEED = 0x5DEECE66DL;
+
+  private static final int RANDOM_CASES = 200000;
+
+  private static long expectedMulMod(long a, long b, long modulus) {
+    return BigInteger.valueOf(a).multiply(BigInteger.valueOf(b)).mod(BigInteger.valueOf(modulus)).longValue();
+  }
+
+  /**
+   * Operands worth trying for each modulus: the smallest and largest residues,
+   * and their neighbours around the midpoint.
+   */
+  private static long[] edgeOperands(long modulus) {
+    return new long[] { 0, 1, 2, modulus / 2 - 1, modulus / 2, modulus / 2 + 1, modulus - 2, modulus - 1 };
+  }
+
+  @Nested
+  @DisplayName("ModularArithmetic")
+  class Modular {
+
+    @Test
+    @DisplayName("mulMod should match BigInteger for every pair of residues of small moduli")
+    void mulModExhaustiveSmallModuli() {
+      for (long modulus = 1; modulus <= 200; modulus++) {
+        for (long a = 0; a < modulus; a++) {
+          for (long b = 0; b < modulus; b++) {
+            assertEquals(expectedMulMod(a, b, modulus), ModularArithmetic.mulMod(a, b, modulus));
+          }
+        }
+      }
+    }
+
+    @Test
+    @DisplayName("mulMod should match BigInteger at the edges of every fast path")
+    void mulModEdges() {
+      for (long modulus : EDGE_MODULI) {
+        for (long a : edgeOperands(modulus)) {
+          for (long b : edgeOperands(modulus)) {
+            assertEquals(expectedMulMod(a, b, modulus), ModularArithmetic.mulMod(a, b, modulus),
+                a + " * " + b + " mod " + modulus);
+          }
+        }
+      }
+    }
+
+    @Test
+    @DisplayName("mulMod should match BigInteger for random operands and moduli of every size")
+    void mulModRandom() {
+      SplittableRandom random = new SplittableRandom(SEED);
+      for (int aa = 0; aa < RANDOM_CASES; aa++) {
+        int bits = 2 + random.nextInt(62);
+        long modulus = Math.max(1, random.nextLong() >>> (64 - bits));
+        long a = random.nextLong(modulus);
+        long b = random.nextLong(modulus);
+        assertEquals(expectedMulMod(a, b, modulus), ModularArithmetic.mulMod(a, b, modulus),
+            a + " * " + b + " mod " + modulus);
+      }
+    }
+
+    @Test
+    @DisplayName("remainder should reduce any 128-bit value with a high word below the modulus")
+    void remainder128() {
+      SplittableRandom random = new SplittableRandom(SEED);
+      for (int aa = 0; aa < RANDOM_CASES; aa++) {
+        long modulus = Math.max(1, random.nextLong() >>> random.nextInt(63));
+        long high = random.nextLong(modulus);
+        long low = random.nextLong();
+        BigInteger value = BigInteger.valueOf(high).shiftLeft(64)
+            .add(BigInteger.valueOf(low).and(BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE)));
+        assertEquals(value.mod(BigInteger.valueOf(modulus)).longValue(),
+            ModularArithmetic.remainder(high, low, modulus), high + ":" + low + " mod " + modulus);
+      }
+    }
+
+    @Test
+    @DisplayName("powMod should match BigInteger.modPow")
+    void powMod() {
+      SplittableRandom random = new SplittableRandom(SEED);
+      for (int aa = 0; aa < RANDOM_CASES / 100; aa++) {
+        long modulus = Math.max(1, random.nextLong() >>> random.nextInt(63));
+        long base = random.nextLong(modulus);
+        long exponent = random.nextLong() >>> 1;
+        assertEquals(BigInteger.valueOf(base).modPow(BigInteger.valueOf(exponent), BigInteger.valueOf(modulus))
+            .longValue(), ModularArithmetic.powMod(base, exponent, modulus));
+      }
+    }
+
+  }
+
+  @Nested
+  @DisplayName("MontgomeryArithmetic")
+  class Montgomery {
+
+    /**
+     * Checks a round trip through Montgomery form and a multiplication for
+     * one pair of residues.
+     */
+    private void assertMultiply(MontgomeryArithmetic montgomery, long a, long b) {
+      long modulus = montgomery.getModulus();
+      long aMontgomery = montgomery.toMontgomery(a);
+      long bMontgomery = montgomery.toMontgomery(b);
+      assertEquals(a, montgomery.fromMontgomery(aMontgomery), "Round trip of " + a + " mod " + modulus);
+      assertEquals(expectedMulMod(a, b, modulus), montgomery.fromMontgomery(montgomery.multiply(aMontgomery,
+          bMontgomery)), a + " * " + b + " mod " + modulus);
+    }
+
+    @Test
+    @DisplayName("multiply should match BigInteger for every pair of residues of small odd moduli")
+    void multiplyExhaustiveSmallModuli() {
+      for (long modulus = 3; modulus <= 255; modulus += 2) {
+        MontgomeryArithmetic montgomery = new MontgomeryArithmetic(modulus);
+        for (long a = 0; a < modulus; a++) {
+          for (long b = 0; b < modulus; b++) {
+            assertMultiply(montgomery, a, b);
+          }
+        }
+      }
+    }
+
+    @Test
+    @DisplayName("multiply should match BigInteger at the edges")
+    void multiplyEdges() {
+      for (long modulus : EDGE_MODULI) {
+        if ((modulus & 1) == 0) {
+          continue;
+        }
+        MontgomeryArithmetic montgomery = new MontgomeryArithmetic(modulus);
+        for (long a : edgeOperands(modulus)) {
+          for (long b : edgeOperands(modulus)) {
+            assertMultiply(montgomery, a, b);
+          }
+        }
+      }
+    }
+
+    @Test
+    @DisplayName("multiply, add, subtract and pow should match BigInteger for random odd moduli")
+    void arithmeticRandom() {
+      SplittableRandom random = new SplittableRandom(SEED);
+      for (int aa = 0; aa < RANDOM_CASES / 10; aa++) {
+        long modulus = Math.max(3, (random.nextLong() >>> random.nextInt(63)) | 1);
+        MontgomeryArithmetic montgomery = new MontgomeryArithmetic(modulus);
+        BigInteger bigModulus = BigInteger.valueOf(modulus);
+        for (int bb = 0; bb < 10; bb++) {
+          long a = random.nextLong(modulus);
+          long b = random.nextLong(modulus);
+          long exponent = random.nextLong() >>> 1;
+          assertMultiply(montgomery, a, b);
+          long aMontgomery = montgomery.toMontgomery(a);
+          long bMontgomery = montgomery.toMontgomery(b);
+          assertEquals(BigInteger.valueOf(a).add(BigInteger.valueOf(b)).mod(bigModulus).longValue(),
+              montgomery.fromMontgomery(montgomery.add(aMontgomery, bMontgomery)));
+          assertEquals(BigInteger.valueOf(a).subtract(BigInteger.valueOf(b)).mod(bigModulus).longValue(),
+              montgomery.fromMontgomery(montgomery.subtract(aMontgomery, bMontgomery)));
+          assertEquals(BigInteger.valueOf(a).modPow(BigInteger.valueOf(exponent), bigModulus).longValue(),
+              montgomery.fromMontgomery(montgomery.pow(aMontgomery, exponent)));
+        }
+      }
+    }
+
+    @Test
+    @DisplayName("one should be 1 in Montgomery form")
+    void one() {
+      for (long modulus : EDGE_MODULI) {
+        if ((modulus & 1) != 0) {
+          MontgomeryArithmetic montgomery = new MontgomeryArithmetic(modulus);
+          assertEquals(1, montgomery.fromMontgomery(montgomery.one()));
+          assertEquals(montgomery.one(), montgomery.toMontgomery(1));
+        }
+      }
+    }
+
+    @Test
+    @DisplayName("an even or tiny modulus throws IllegalArgumentException")
+    void invalidModulus() {
+      assertThrows(IllegalArgumentException.class, () -> new MontgomeryArithmetic(1));
+      assertThrows(IllegalArgumentException.class, () -> new MontgomeryArithmetic(1L << 40));
+      assertThrows(IllegalArgumentException.class, () -> new MontgomeryArithmetic(-7));
+    }
+
+  }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the batch computeFactors(long[]) entry points.
+ *
+ * @author J Steven Perry
+ *
+ */
+@DisplayName("Testing batch computeFactors...")
+public class ParallelFactorizerTest {
+
+  @Test
+  @DisplayName("computeFactors of a batch should match computeFactors of each value, in order")
+  void computeFactorsMatchesSequential() {
+    Random random = new Random(733);
+    long[] compoundIntegers = new long[2000];
+    for (int aa = 0; aa < compoundIntegers.length; aa++) {
+      // A mix of small values and huge ones, so the chunks are uneven
+      compoundIntegers[aa] = (aa % 50 == 0) ? Long.MAX_VALUE - random.nextInt(1000000) : 1 + random.nextInt(1000000);
+    }
+    long[][] actualResults = YetAnotherUtility.computeFactors(compoundIntegers);
+    assertEquals(compoundIntegers.length, actualResults.length);
+    for (int aa = 0; aa < compoundIntegers.length; aa++) {
+      assertArrayEquals(YetAnotherUtility.computeFactors(compoundIntegers[aa]), actualResults[aa],
+          "Factors of " + compoundIntegers[aa]);
+    }
+  }
+
+  @Test
+  @DisplayName("computeFactors of a batch on a custom pool should keep zero as null")
+  void computeFactorsOnCustomPool() {
+    ForkJoinPool pool = new ForkJoinPool(2);
+    try {
+      long[][] actualResults = YetAnotherUtility.computeFactors(new long[] { 733, 0, 1023 }, pool);
+      assertArrayEquals(new long[] { 1, 733 }, actualResults[0]);
+      assertNull(actualResults[1]);
+      assertArrayEquals(new long[] { 1, 3, 11, 31, 33, 93, 341, 1023 }, actualResults[2]);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  @DisplayName("computeFactors of an empty batch should return an empty array")
+  void computeFactorsOfEmptyBatch() {
+    assertEquals(0, YetAnotherUtility.computeFactors(new long[0]).length);
+  }
+
+  @Test
+  @DisplayName("computeFactors of a batch with a negative number throws IllegalArgumentException")
+  void computeFactorsWithNegative() {
+    assertThrows(IllegalArgumentException.class, () -> YetAnotherUtility.computeFactors(new long[] { 733, -100L }));
+  }
+
+}
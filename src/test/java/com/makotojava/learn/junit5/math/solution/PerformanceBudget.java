@@ -0,0 +1,89 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/**
+ * Puts a test method on a performance budget. The method takes a
+ * {@link PerformanceProbe} parameter and hands the operation to measure to
+ * {@link PerformanceProbe#measure}, which runs it for warm-up first (so the
+ * JIT has compiled it), then times every one of a number of iterations and
+ * fails the test if the median or the 99th percentile is over budget.
+ *
+ * <pre>
+ * &#64;Test
+ * &#64;PerformanceBudget(median = 50, p99 = 500, unit = TimeUnit.MICROSECONDS)
+ * void computeFactors(PerformanceProbe probe) {
+ *   probe.measure(() -&gt; YetAnotherUtility.computeFactors(327670000L));
+ * }
+ * </pre>
+ *
+ * Timings are noisy, and noise only ever makes them slower, so a measurement
+ * that is over budget is repeated, up to attempts times, and only fails if
+ * every attempt does. Budgets are meant to catch regressions of several times,
+ * not a few percent. They can all be loosened at once, on a slow machine, with
+ * the system property performance.budget.scale (2 doubles them).
+ *
+ * @author J Steven Perry
+ *
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@ExtendWith(PerformanceBudgetExtension.class)
+public @interface PerformanceBudget {
+
+  /**
+   * @return the most the median iteration may take, in the unit
+   */
+  long median();
+
+  /**
+   * @return the most the 99th percentile iteration may take, in the unit
+   */
+  long p99();
+
+  /**
+   * @return the unit of the budgets
+   */
+  TimeUnit unit() default TimeUnit.MICROSECONDS;
+
+  /**
+   * @return the number of untimed iterations to run first
+   */
+  int warmupIterations() default 2000;
+
+  /**
+   * @return the number of timed iterations. At least 100, or there is no
+   *         99th percentile to speak of.
+   */
+  int iterations() default 1000;
+
+  /**
+   * @return the number of times to measure before giving up
+   */
+  int attempts() default 3;
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import java.lang.reflect.Method;
+
+import org.junit.jupiter.api.extension.AfterTestExecutionCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.ParameterContext;
+import org.junit.jupiter.api.extension.ParameterResolutionException;
+import org.junit.jupiter.api.extension.ParameterResolver;
+import org.opentest4j.AssertionFailedError;
+
+/**
+ * Backs {@link PerformanceBudget}: resolves the {@link PerformanceProbe}
+ * parameter from the method's budget, and afterwards publishes what the probe
+ * measured as report entries, failing the test if it never measured anything.
+ *
+ * @author J Steven Perry
+ *
+ */
+public class PerformanceBudgetExtension implements ParameterResolver, AfterTestExecutionCallback {
+
+  private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace
+      .create(PerformanceBudgetExtension.class);
+
+  @Override
+  public boolean supportsParameter(ParameterContext parameterContext, ExtensionContext extensionContext) {
+    return parameterContext.getParameter().getType() == PerformanceProbe.class;
+  }
+
+  @Override
+  public Object resolveParameter(ParameterContext parameterContext, ExtensionContext extensionContext) {
+    PerformanceBudget budget = budgetOf(extensionContext);
+    if (budget == null) {
+      throw new ParameterResolutionException("A PerformanceProbe needs a @PerformanceBudget on the test method");
+    }
+    return extensionContext.getStore(NAMESPACE).getOrComputeIfAbsent(extensionContext.getUniqueId(),
+        key -> new PerformanceProbe(budget), PerformanceProbe.class);
+  }
+
+  @Override
+  public void afterTestExecution(ExtensionContext context) {
+    if (budgetOf(context) == null || context.getExecutionException().isPresent()) {
+      return;
+    }
+    PerformanceProbe probe = context.getStore(NAMESPACE).get(context.getUniqueId(), PerformanceProbe.class);
+    if (probe == null || !probe.isMeasured()) {
+      throw new AssertionFailedError("@PerformanceBudget test never called PerformanceProbe.measure()");
+    }
+    context.publishReportEntry("performance", probe.toString());
+  }
+
+  private static PerformanceBudget budgetOf(ExtensionContext context) {
+    return context.getTestMethod().map((Method method) -> method.getAnnotation(PerformanceBudget.class))
+        .orElse(null);
+  }
+
+}
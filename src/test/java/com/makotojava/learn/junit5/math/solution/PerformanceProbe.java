@@ -0,0 +1,200 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.function.Executable;
+import org.opentest4j.AssertionFailedError;
+
+/**
+ * Measures an operation against a {@link PerformanceBudget}. Handed to the
+ * test method by {@link PerformanceBudgetExtension}.
+ *
+ * @author J Steven Perry
+ *
+ */
+public final class PerformanceProbe {
+
+  static final String SCALE_PROPERTY = "performance.budget.scale";
+
+  private final long medianBudgetNanos;
+
+  private final long p99BudgetNanos;
+
+  private final int warmupIterations;
+
+  private final int iterations;
+
+  private final int attempts;
+
+  private long medianNanos = -1;
+
+  private long p99Nanos = -1;
+
+  private int attemptsUsed;
+
+  PerformanceProbe(PerformanceBudget budget) {
+    this(scaled(budget.unit().toNanos(budget.median())), scaled(budget.unit().toNanos(budget.p99())),
+        budget.warmupIterations(), budget.iterations(), budget.attempts());
+  }
+
+  PerformanceProbe(long medianBudgetNanos, long p99BudgetNanos, int warmupIterations, int iterations,
+      int attempts) {
+    if (iterations < 100) {
+      throw new IllegalArgumentException("At least 100 iterations are needed for a 99th percentile!");
+    }
+    if (warmupIterations < 0 || attempts <= 0) {
+      throw new IllegalArgumentException("Warm-up iterations must not be negative, and attempts must be positive!");
+    }
+    this.medianBudgetNanos = medianBudgetNanos;
+    this.p99BudgetNanos = p99BudgetNanos;
+    this.warmupIterations = warmupIterations;
+    this.iterations = iterations;
+    this.attempts = attempts;
+  }
+
+  private static long scaled(long nanos) {
+    return (long) (nanos * Double.parseDouble(System.getProperty(SCALE_PROPERTY, "1")));
+  }
+
+  /**
+   * Warms the operation up, then times it, repeating the measurement while
+   * it is over budget and there are attempts left.
+   *
+   * @param operation
+   *          The operation to measure, one call per iteration
+   *
+   * @throws AssertionFailedError
+   *           if every attempt was over budget
+   */
+  public void measure(Executable operation) throws Throwable {
+    for (int aa = 0; aa < warmupIterations; aa++) {
+      operation.execute();
+    }
+    long[] samples = new long[iterations];
+    for (attemptsUsed = 1;; attemptsUsed++) {
+      for (int aa = 0; aa < iterations; aa++) {
+        long start = System.nanoTime();
+        operation.execute();
+        samples[aa] = System.nanoTime() - start;
+      }
+      Arrays.sort(samples);
+      long median = median(samples);
+      long p99 = percentile(samples, 99);
+      // Keep the best attempt, the one least over budget, which is the one
+      // with the least noise. Its median and p99 are reported together.
+      if (!isMeasuredBefore() || overBudget(median, p99) < overBudget(medianNanos, p99Nanos)) {
+        medianNanos = median;
+        p99Nanos = p99;
+      }
+      if (isWithinBudget() || attemptsUsed == attempts) {
+        break;
+      }
+    }
+    if (!isWithinBudget()) {
+      throw new AssertionFailedError(toString());
+    }
+  }
+
+  private boolean isMeasuredBefore() {
+    return medianNanos >= 0;
+  }
+
+  /**
+   * How far over budget an attempt is: the larger of its median and p99 as a
+   * multiple of their budgets. Within budget is at most 1.
+   */
+  private double overBudget(long median, long p99) {
+    return Math.max(ratio(median, medianBudgetNanos), ratio(p99, p99BudgetNanos));
+  }
+
+  private static double ratio(long nanos, long budgetNanos) {
+    if (budgetNanos == 0) {
+      return (nanos == 0) ? 0 : Double.POSITIVE_INFINITY;
+    }
+    return (double) nanos / budgetNanos;
+  }
+
+  /**
+   * @return boolean - true if measure has been called
+   */
+  public boolean isMeasured() {
+    return attemptsUsed > 0;
+  }
+
+  /**
+   * @return boolean - true if the median and 99th percentile of the best
+   *         attempt so far are both within budget
+   */
+  public boolean isWithinBudget() {
+    return isMeasured() && medianNanos <= medianBudgetNanos && p99Nanos <= p99BudgetNanos;
+  }
+
+  /**
+   * @return long - the median of the best attempt, in nanoseconds
+   */
+  public long getMedianNanos() {
+    return medianNanos;
+  }
+
+  /**
+   * @return long - the 99th percentile of the best attempt, in nanoseconds
+   */
+  public long getP99Nanos() {
+    return p99Nanos;
+  }
+
+  /**
+   * @return int - the number of measurements taken
+   */
+  public int getAttemptsUsed() {
+    return attemptsUsed;
+  }
+
+  /**
+   * The middle sample, or the mean of the two middle ones, of sorted samples.
+   */
+  static long median(long[] sorted) {
+    int middle = sorted.length / 2;
+    return (sorted.length % 2 == 1) ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+  }
+
+  /**
+   * The nearest-rank percentile of sorted samples: the smallest sample at
+   * least that percent of them are no bigger than.
+   */
+  static long percentile(long[] sorted, int percent) {
+    int rank = (int) Math.ceil(sorted.length * percent / 100.0);
+    return sorted[Math.max(rank, 1) - 1];
+  }
+
+  @Override
+  public String toString() {
+    return String.format(Locale.ROOT, "median %s (budget %s), p99 %s (budget %s) over %d iterations, best of %d %s",
+        format(medianNanos), format(medianBudgetNanos), format(p99Nanos), format(p99BudgetNanos), iterations,
+        attemptsUsed, (attemptsUsed == 1) ? "attempt" : "attempts");
+  }
+
+  private static String format(long nanos) {
+    return (nanos >= TimeUnit.MILLISECONDS.toNanos(1)) ? String.format(Locale.ROOT, "%.3f ms", nanos / 1e6)
+        : String.format(Locale.ROOT, "%.3f us", nanos / 1e3);
+  }
+
+}
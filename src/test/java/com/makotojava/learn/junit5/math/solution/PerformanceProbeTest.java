@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.opentest4j.AssertionFailedError;
+
+/**
+ * Tests the PerformanceProbe behind {@link PerformanceBudget}.
+ *
+ * @author J Steven Perry
+ *
+ */
+@DisplayName("Testing PerformanceProbe...")
+public class PerformanceProbeTest {
+
+  @Test
+  @DisplayName("median and percentile should follow the nearest-rank definitions")
+  void statistics() {
+    long[] samples = new long[100];
+    for (int aa = 0; aa < samples.length; aa++) {
+      samples[aa] = aa + 1;
+    }
+    assertEquals(50, PerformanceProbe.median(samples));
+    assertEquals(99, PerformanceProbe.percentile(samples, 99));
+    assertEquals(100, PerformanceProbe.percentile(samples, 100));
+    assertEquals(3, PerformanceProbe.median(new long[] { 1, 3, 7 }));
+    assertEquals(7, PerformanceProbe.percentile(new long[] { 1, 3, 7 }, 99));
+  }
+
+  @Test
+  @DisplayName("measure should pass within budget and fail, after every attempt, over it")
+  void measure() throws Throwable {
+    PerformanceProbe probe = new PerformanceProbe(TimeUnit.SECONDS.toNanos(1), TimeUnit.SECONDS.toNanos(1), 10, 100,
+        3);
+    assertFalse(probe.isMeasured());
+    probe.measure(() -> Math.sqrt(2));
+    assertTrue(probe.isWithinBudget());
+    assertEquals(1, probe.getAttemptsUsed());
+
+    int[] calls = new int[1];
+    PerformanceProbe overBudget = new PerformanceProbe(0, 0, 10, 100, 3);
+    AssertionFailedError error = assertThrows(AssertionFailedError.class,
+        () -> overBudget.measure(() -> calls[0]++));
+    assertEquals(3, overBudget.getAttemptsUsed());
+    // Warmed up once, measured on every attempt
+    assertEquals(10 + 3 * 100, calls[0]);
+    assertTrue(error.getMessage().contains("best of 3 attempts"), error.getMessage());
+    assertThrows(IllegalArgumentException.class, () -> new PerformanceProbe(1, 1, 10, 99, 3));
+  }
+
+  @Test
+  @DisplayName("measure should judge each attempt's median and p99 together")
+  void attemptsAreNotMixed() {
+    // The first attempt has a quick median but two slow calls, over the p99
+    // budget. The second is slow throughout, over the median budget. Taking
+    // the first's median with the second's p99 would wrongly pass.
+    int[] calls = new int[1];
+    PerformanceProbe probe = new PerformanceProbe(TimeUnit.MICROSECONDS.toNanos(500),
+        TimeUnit.MICROSECONDS.toNanos(1500), 0, 100, 2);
+    assertThrows(AssertionFailedError.class, () -> probe.measure(() -> {
+      int call = calls[0]++;
+      if (call >= 100 || call % 50 == 0) {
+        Thread.sleep((call >= 100) ? 1 : 2);
+      }
+    }));
+    if (probe.getMedianNanos() < TimeUnit.MILLISECONDS.toNanos(1)) {
+      assertTrue(probe.getP99Nanos() >= TimeUnit.MILLISECONDS.toNanos(2), probe.toString());
+    }
+  }
+
+}
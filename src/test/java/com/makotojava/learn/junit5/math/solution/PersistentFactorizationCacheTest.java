@@ -0,0 +1,268 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the PersistentFactorizationCache class.
+ *
+ * @author J Steven Perry
+ *
+ */
+@DisplayName("Testing PersistentFactorizationCache...")
+public class PersistentFactorizationCacheTest {
+
+  private static final long SEMIPRIME = 3037000453L * 3037000493L;
+
+  private Path directory;
+
+  @BeforeEach
+  void createDirectory() throws IOException {
+    directory = Files.createTempDirectory("factors");
+  }
+
+  @AfterEach
+  void deleteDirectory() throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  /**
+   * Stores the prime factorizations of the numbers from first up to (not
+   * including) last.
+   */
+  private static void putRange(PersistentFactorizationCache cache, long first, long last) throws IOException {
+    for (long number = first; number < last; number++) {
+      cache.put(YetAnotherUtility.computePrimeFactorization(number));
+    }
+  }
+
+  @Test
+  @DisplayName("entries should survive closing and reopening the cache, through index growth")
+  void survivesReopening() throws IOException {
+    try (PersistentFactorizationCache cache = PersistentFactorizationCache.open(directory)) {
+      putRange(cache, 1_000_000, 1_002_000);
+      assertTrue(cache.put(YetAnotherUtility.computePrimeFactorization(SEMIPRIME)));
+      assertFalse(cache.put(YetAnotherUtility.computePrimeFactorization(SEMIPRIME)));
+      assertEquals(2001, cache.size());
+      assertThrows(IOException.class, () -> PersistentFactorizationCache.open(directory));
+    }
+    try (PersistentFactorizationCache cache = PersistentFactorizationCache.open(directory)) {
+      assertEquals(2001, cache.size());
+      for (long number = 1_000_000; number < 1_002_000; number++) {
+        PrimeFactorization expected = YetAnotherUtility.computePrimeFactorization(number);
+        PrimeFactorization actual = cache.get(number);
+        assertArrayEquals(expected.getPrimes(), actual.getPrimes(), "Primes of " + number);
+        assertArrayEquals(expected.getExponents(), actual.getExponents(), "Exponents of " + number);
+      }
+      assertEquals("3037000453 * 3037000493", cache.get(SEMIPRIME).toString());
+      assertNull(cache.get(999_999));
+      assertEquals(2001, cache.getHitCount());
+      assertEquals(1, cache.getMissCount());
+    }
+  }
+
+  @Test
+  @DisplayName("reopening should cut off a torn record and rebuild a lost index")
+  void recoversFromCrash() throws IOException {
+    try (PersistentFactorizationCache cache = PersistentFactorizationCache.open(directory)) {
+      putRange(cache, 5000, 5100);
+    }
+    Path log = directory.resolve(PersistentFactorizationCache.LOG_FILE);
+    long goodLength = Files.size(log);
+    // Half a record, as if the writer died in the middle of appending it
+    try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+      channel.write(ByteBuffer.wrap(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 1, 9 }));
+    }
+    try (PersistentFactorizationCache cache = PersistentFactorizationCache.open(directory)) {
+      assertEquals(goodLength, cache.getLogLength());
+      assertEquals(100, cache.size());
+      assertNotNull(cache.get(5099));
+      putRange(cache, 5100, 5110);
+    }
+    Files.delete(directory.resolve(PersistentFactorizationCache.INDEX_FILE));
+    try (PersistentFactorizationCache cache = PersistentFactorizationCache.open(directory)) {
+      assertEquals(110, cache.size());
+      assertEquals(YetAnotherUtility.computePrimeFactorization(5109), cache.get(5109));
+    }
+  }
+
+  @Test
+  @DisplayName("a reader should see what the writer adds, through growth and compaction")
+  void readerFollowsWriter() throws IOException {
+    try (PersistentFactorizationCache writer = PersistentFactorizationCache.open(directory);
+        PersistentFactorizationCache reader = PersistentFactorizationCache.openReadOnly(directory)) {
+      assertNull(reader.get(7000));
+      putRange(writer, 7000, 7010);
+      assertNotNull(reader.get(7005));
+      // Past half of the initial 1024 slots, so the index is replaced
+      putRange(writer, 7010, 8000);
+      assertEquals(YetAnotherUtility.computePrimeFactorization(7999), reader.get(7999));
+      long logLength = writer.getLogLength();
+      writer.compact(number -> number % 2 == 0);
+      assertEquals(500, writer.size());
+      assertTrue(writer.getLogLength() < logLength);
+      assertNull(reader.get(7001));
+      assertEquals(YetAnotherUtility.computePrimeFactorization(7002), reader.get(7002));
+      assertNotNull(writer.get(7998));
+      assertThrows(IllegalStateException.class, () -> reader.put(YetAnotherUtility.computePrimeFactorization(9)));
+    }
+    try (PersistentFactorizationCache cache = PersistentFactorizationCache.open(directory)) {
+      assertEquals(500, cache.size());
+      assertNull(cache.get(7001));
+    }
+  }
+
+  @Test
+  @DisplayName("computeFactors should store expensive factorizations and reuse them")
+  void computeFactorsUsesCache() throws IOException {
+    long[] expected = YetAnotherUtility.computeFactors(SEMIPRIME);
+    try (PersistentFactorizationCache cache = PersistentFactorizationCache.open(directory)) {
+      YetAnotherUtility.setPersistentFactorizationCache(cache);
+      try {
+        assertArrayEquals(expected, YetAnotherUtility.computeFactors(SEMIPRIME));
+        assertArrayEquals(new long[] { 1, 2, 3, 6 }, YetAnotherUtility.computeFactors(6));
+        assertEquals(1, cache.size());
+      } finally {
+        YetAnotherUtility.setPersistentFactorizationCache(null);
+      }
+    }
+    try (PersistentFactorizationCache cache = PersistentFactorizationCache.openReadOnly(directory)) {
+      YetAnotherUtility.setPersistentFactorizationCache(cache);
+      try {
+        assertArrayEquals(expected, YetAnotherUtility.computeFactors(SEMIPRIME));
+        assertEquals(1, cache.getHitCount());
+      } finally {
+        YetAnotherUtility.setPersistentFactorizationCache(null);
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("an interrupted caller should not close the log for everyone else")
+  void survivesInterruptedCallers() throws Exception {
+    AtomicBoolean stop = new AtomicBoolean();
+    long[] expected = YetAnotherUtility.computeFactors(SEMIPRIME);
+    try (PersistentFactorizationCache cache = PersistentFactorizationCache.open(directory)) {
+      YetAnotherUtility.setPersistentFactorizationCache(cache);
+      try {
+        Thread.currentThread().interrupt();
+        assertArrayEquals(expected, YetAnotherUtility.computeFactors(SEMIPRIME));
+        assertTrue(Thread.interrupted(), "The interrupt should be kept for the caller");
+        Thread.currentThread().interrupt();
+        assertNotNull(cache.get(SEMIPRIME));
+        assertTrue(Thread.interrupted());
+        putRange(cache, 2, 100);
+        assertEquals(99, cache.size());
+        assertEquals(0, cache.getFailureCount());
+      } finally {
+        Thread.interrupted();
+        YetAnotherUtility.setPersistentFactorizationCache(null);
+      }
+      try (PersistentFactorizationCache reader = PersistentFactorizationCache.openReadOnly(directory)) {
+        Thread.currentThread().interrupt();
+        try {
+          assertNotNull(reader.get(SEMIPRIME));
+        } finally {
+          assertTrue(Thread.interrupted());
+        }
+        assertNotNull(reader.get(97));
+        assertEquals(0, reader.getFailureCount());
+        //
+        // Interrupts arriving in the middle of another thread's reads
+        Thread worker = new Thread(() -> {
+          while (!stop.get()) {
+            reader.get(SEMIPRIME);
+          }
+        });
+        worker.start();
+        for (int aa = 0; aa < 200; aa++) {
+          worker.interrupt();
+          Thread.yield();
+        }
+        stop.set(true);
+        worker.join();
+        assertNotNull(reader.get(97));
+        assertNotNull(cache.get(97));
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("compact should work for an interrupted caller, and after the log was reopened")
+  void compactsWhenInterrupted() throws Exception {
+    try (PersistentFactorizationCache cache = PersistentFactorizationCache.open(directory)) {
+      putRange(cache, 2, 2000);
+      //
+      // Interrupts arriving in the middle of another thread's reads get the
+      // log reopened
+      AtomicBoolean stop = new AtomicBoolean();
+      Thread worker = new Thread(() -> {
+        while (!stop.get()) {
+          cache.get(1999);
+        }
+      });
+      worker.start();
+      for (int aa = 0; aa < 200; aa++) {
+        worker.interrupt();
+        Thread.yield();
+      }
+      stop.set(true);
+      worker.join();
+      Thread.currentThread().interrupt();
+      try {
+        cache.compact(number -> number % 2 == 0);
+      } finally {
+        assertTrue(Thread.interrupted(), "The interrupt should be kept for the caller");
+      }
+      assertEquals(999, cache.size());
+      assertNotNull(cache.get(1998));
+      assertNull(cache.get(1999));
+      assertTrue(cache.put(YetAnotherUtility.computePrimeFactorization(1999)));
+    }
+    try (PersistentFactorizationCache cache = PersistentFactorizationCache.openReadOnly(directory)) {
+      assertEquals(1000, cache.size());
+      assertNotNull(cache.get(1999));
+    }
+  }
+
+}
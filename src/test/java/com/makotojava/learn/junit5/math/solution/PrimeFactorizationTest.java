@@ -0,0 +1,115 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigInteger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the PrimeFactorization class and computePrimeFactorization.
+ *
+ * @author J Steven Perry
+ *
+ */
+@DisplayName("Testing PrimeFactorization...")
+public class PrimeFactorizationTest {
+
+  private static final long[] LARGE_INPUTS = { 1234567890L, 3037000453L * 3037000493L, 9223372036854775783L,
+      Long.MAX_VALUE, 897612484786617600L, 1L << 62 };
+
+  @Test
+  @DisplayName("divisorCount, divisorSum and toFactors should match the factors from computeFactors")
+  void matchesComputeFactors() {
+    for (long compoundInteger = 1; compoundInteger <= 3000; compoundInteger++) {
+      assertMatches(compoundInteger);
+    }
+    for (long compoundInteger : LARGE_INPUTS) {
+      assertMatches(compoundInteger);
+    }
+  }
+
+  private static void assertMatches(long compoundInteger) {
+    PrimeFactorization factorization = YetAnotherUtility.computePrimeFactorization(compoundInteger);
+    long[] factors = YetAnotherUtility.computeFactors(compoundInteger);
+    assertEquals(factors.length, factorization.divisorCount(), "Divisor count of " + compoundInteger);
+    assertArrayEquals(factors, factorization.toFactors(), "Factors of " + compoundInteger);
+    BigInteger sum = BigInteger.ZERO;
+    for (long factor : factors) {
+      sum = sum.add(BigInteger.valueOf(factor));
+    }
+    if (sum.bitLength() < Long.SIZE) {
+      assertEquals(sum.longValueExact(), factorization.divisorSum(), "Divisor sum of " + compoundInteger);
+    } else {
+      assertThrows(ArithmeticException.class, factorization::divisorSum, "Divisor sum of " + compoundInteger);
+    }
+  }
+
+  @Test
+  @DisplayName("totient should count the numbers coprime to the compound integer")
+  void totient() {
+    for (long compoundInteger = 1; compoundInteger <= 1000; compoundInteger++) {
+      long coprime = 0;
+      for (long aa = 1; aa <= compoundInteger; aa++) {
+        if (ModularArithmetic.gcd(aa, compoundInteger) == 1) {
+          coprime++;
+        }
+      }
+      assertEquals(coprime, YetAnotherUtility.computePrimeFactorization(compoundInteger).totient(),
+          "Totient of " + compoundInteger);
+    }
+    assertEquals(9223372036854775782L, YetAnotherUtility.computePrimeFactorization(9223372036854775783L).totient());
+    assertEquals(1L << 61, YetAnotherUtility.computePrimeFactorization(1L << 62).totient());
+  }
+
+  @Test
+  @DisplayName("the prime factors and exponents should be exposed in ascending order")
+  void primesAndExponents() {
+    PrimeFactorization factorization = YetAnotherUtility.computePrimeFactorization(360);
+    assertEquals(360, factorization.getCompoundInteger());
+    assertEquals(3, factorization.size());
+    assertArrayEquals(new long[] { 2, 3, 5 }, factorization.getPrimes());
+    assertArrayEquals(new int[] { 3, 2, 1 }, factorization.getExponents());
+    assertEquals(5, factorization.getPrime(2));
+    assertEquals(3, factorization.getExponent(0));
+    assertEquals("2^3 * 3^2 * 5", factorization.toString());
+    factorization.getPrimes()[0] = 7;
+    assertEquals(2, factorization.getPrime(0));
+    assertEquals(factorization, YetAnotherUtility.computePrimeFactorization(360));
+    assertNotEquals(factorization, YetAnotherUtility.computePrimeFactorization(361));
+    PrimeFactorization one = YetAnotherUtility.computePrimeFactorization(1);
+    assertEquals("1", one.toString());
+    assertEquals(1, one.divisorCount());
+    assertEquals(1, one.divisorSum());
+    assertEquals(1, one.totient());
+  }
+
+  @Test
+  @DisplayName("computePrimeFactorization with zero or a negative number")
+  void zeroAndNegative() {
+    assertNull(YetAnotherUtility.computePrimeFactorization(0));
+    assertThrows(IllegalArgumentException.class, () -> YetAnotherUtility.computePrimeFactorization(-100));
+  }
+
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the PrimeFactorizer engine.
+ *
+ * @author J Steven Perry
+ *
+ */
+@DisplayName("Testing PrimeFactorizer...")
+public class PrimeFactorizerTest {
+
+  /**
+   * Factors the specified number and returns the primes, repeated according
+   * to their exponents, so results are easy to compare.
+   */
+  private static long[] primeFactorsOf(long compoundInteger) {
+    long[] primes = new long[PrimeFactorizer.MAX_DISTINCT_PRIMES];
+    int[] exponents = new int[PrimeFactorizer.MAX_DISTINCT_PRIMES];
+    int count = PrimeFactorizer.factor(compoundInteger, primes, exponents);
+    long[] ret = new long[64];
+    int size = 0;
+    for (int aa = 0; aa < count; aa++) {
+      for (int bb = 0; bb < exponents[aa]; bb++) {
+        ret[size++] = primes[aa];
+      }
+    }
+    return Arrays.copyOf(ret, size);
+  }
+
+  @Nested
+  @DisplayName("When factoring into primes...")
+  public class Factor {
+
+    @Test
+    @DisplayName("factor of 1 should have no prime factors")
+    void factorOfOne() {
+      assertArrayEquals(new long[] {}, primeFactorsOf(1));
+    }
+
+    @Test
+    @DisplayName("factor of Long.MAX_VALUE should return 7 * 7 * 73 * 127 * 337 * 92737 * 649657")
+    void factorOfLongMaxValue() {
+      long[] expectedResults = { 7, 7, 73, 127, 337, 92737, 649657 };
+      assertArrayEquals(expectedResults, primeFactorsOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    @DisplayName("factor of the largest 63-bit prime should return itself")
+    void factorOfLargePrime() {
+      long[] expectedResults = { 9223372036854775783L };
+      assertArrayEquals(expectedResults, primeFactorsOf(9223372036854775783L));
+    }
+
+    @Test
+    @DisplayName("factor of a semiprime with two 32-bit factors completes before 5000 ms")
+    void factorOfLargeSemiprime() {
+      long[] expectedResults = { 3037000453L, 3037000493L };
+      long[] actualResults = assertTimeoutPreemptively(Duration.ofMillis(5000),
+          () -> primeFactorsOf(3037000453L * 3037000493L));
+      assertArrayEquals(expectedResults, actualResults);
+    }
+
+    @Test
+    @DisplayName("factor of large prime powers should return the repeated prime")
+    void factorOfPrimePowers() {
+      assertArrayEquals(new long[] { 2147483647L, 2147483647L }, primeFactorsOf(2147483647L * 2147483647L));
+      assertArrayEquals(new long[] { 2097143L, 2097143L, 2097143L }, primeFactorsOf(2097143L * 2097143L * 2097143L));
+    }
+
+    @Test
+    @DisplayName("factor of small prime powers should return the repeated prime")
+    void factorOfSmallPrimePowers() {
+      long[] threes = new long[39];
+      Arrays.fill(threes, 3);
+      assertArrayEquals(threes, primeFactorsOf(4052555153018976267L));
+      assertArrayEquals(new long[] { 1021, 1021, 1021, 1021, 1021, 1021 },
+          primeFactorsOf(1021L * 1021 * 1021 * 1021 * 1021 * 1021));
+      assertArrayEquals(new long[] { 3, 5, 1019, 1021, 1021 }, primeFactorsOf(3L * 5 * 1019 * 1021 * 1021));
+      assertArrayEquals(new long[] { 1031, 1031 }, primeFactorsOf(1031L * 1031));
+    }
+
+    @Test
+    @DisplayName("factor multiplies back to the original number")
+    void factorMultipliesBack() {
+      long compoundInteger = Long.MAX_VALUE;
+      for (int aa = 0; aa < 200; aa++, compoundInteger -= 7919) {
+        long product = 1;
+        for (long prime : primeFactorsOf(compoundInteger)) {
+          assertTrue(PrimeFactorizer.isPrime(prime), prime + " was expected to be prime");
+          product *= prime;
+        }
+        assertEquals(compoundInteger, product);
+      }
+    }
+
+    @Test
+    @DisplayName("factor with zero throws IllegalArgumentException")
+    void factorOfZero() {
+      assertThrows(IllegalArgumentException.class, () -> primeFactorsOf(0));
+    }
+
+  }
+
+  @Nested
+  @DisplayName("When building divisors from prime powers...")
+  public class Divisors {
+
+    @Test
+    @DisplayName("divisors should match trial division")
+    void divisorsMatchTrialDivision() {
+      long[] primes = new long[PrimeFactorizer.MAX_DISTINCT_PRIMES];
+      int[] exponents = new int[PrimeFactorizer.MAX_DISTINCT_PRIMES];
+      for (long compoundInteger = 1; compoundInteger <= 5000; compoundInteger++) {
+        int count = PrimeFactorizer.factor(compoundInteger, primes, exponents);
+        assertArrayEquals(YetAnotherUtility.computeFactorsByTrialDivision(compoundInteger),
+            PrimeFactorizer.divisors(primes, exponents, count), "Divisors of " + compoundInteger);
+      }
+    }
+
+    @Test
+    @DisplayName("computeFactors of a highly composite number should return 103680 ascending divisors")
+    void divisorsOfHighlyCompositeNumber() {
+      long[] actualResults = YetAnotherUtility.computeFactors(897612484786617600L);
+      assertEquals(103680, actualResults.length);
+      for (int aa = 1; aa < actualResults.length; aa++) {
+        assertTrue(actualResults[aa - 1] < actualResults[aa]);
+        assertEquals(0, 897612484786617600L % actualResults[aa]);
+      }
+    }
+
+  }
+
+  @Nested
+  @DisplayName("When testing primality with Miller-Rabin...")
+  public class IsPrime {
+
+    @Test
+    @DisplayName("isPrime should match trial division for small numbers")
+    void isPrimeMatchesTrialDivision() {
+      for (long candidate = 0; candidate <= 5000; candidate++) {
+        boolean expected = candidate > 1 && YetAnotherUtility.computeFactorsByTrialDivision(candidate).length == 2;
+        assertEquals(expected, PrimeFactorizer.isPrime(candidate), "Primality of " + candidate);
+        assertEquals(expected, YetAnotherUtility.isPrime(candidate), "Screened primality of " + candidate);
+      }
+    }
+
+    @Test
+    @DisplayName("isPrime should reject strong pseudoprimes")
+    void isPrimeRejectsPseudoprimes() {
+      // Strong pseudoprimes to every prime base up to 23, and to bases 2, 3, 5 and 7
+      assertFalse(PrimeFactorizer.isPrime(3825123056546413051L));
+      assertFalse(PrimeFactorizer.isPrime(3215031751L));
+      assertFalse(YetAnotherUtility.isPrime(3825123056546413051L));
+    }
+
+  }
+
+}
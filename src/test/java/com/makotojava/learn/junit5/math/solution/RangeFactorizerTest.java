@@ -0,0 +1,124 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the RangeFactorizer class.
+ *
+ * @author J Steven Perry
+ *
+ */
+@DisplayName("Testing RangeFactorizer...")
+public class RangeFactorizerTest {
+
+  /**
+   * Checks one factorization against PrimeFactorizer.
+   */
+  private static void assertFactorization(long number, long[] primes, int[] exponents, int primesOffset, int count) {
+    long[] expectedPrimes = new long[PrimeFactorizer.MAX_DISTINCT_PRIMES];
+    int[] expectedExponents = new int[PrimeFactorizer.MAX_DISTINCT_PRIMES];
+    int expectedCount = PrimeFactorizer.factor(number, expectedPrimes, expectedExponents);
+    assertEquals(expectedCount, count, "Distinct prime factors of " + number);
+    assertArrayEquals(Arrays.copyOf(expectedPrimes, count),
+        Arrays.copyOfRange(primes, primesOffset, primesOffset + count), "Prime factors of " + number);
+    assertArrayEquals(Arrays.copyOf(expectedExponents, count),
+        Arrays.copyOfRange(exponents, primesOffset, primesOffset + count), "Exponents of " + number);
+  }
+
+  @Test
+  @DisplayName("factorRange should factor every number in the range, in order")
+  void factorRangeInOrder() {
+    long[] next = { 1 };
+    RangeFactorizer.factorRange(1, 20000, 1000, (number, primes, exponents, primesOffset, count) -> {
+      assertEquals(next[0]++, number);
+      assertFactorization(number, primes, exponents, primesOffset, count);
+    }, null);
+    assertEquals(20000, next[0]);
+  }
+
+  @Test
+  @DisplayName("factorRange should handle a range near Long.MAX_VALUE")
+  void factorRangeNearLongMaxValue() {
+    long from = Long.MAX_VALUE - 200;
+    long[] next = { from };
+    RangeFactorizer.factorRange(from, Long.MAX_VALUE, (number, primes, exponents, primesOffset, count) -> {
+      assertEquals(next[0]++, number);
+      assertFactorization(number, primes, exponents, primesOffset, count);
+    });
+    assertEquals(Long.MAX_VALUE, next[0]);
+  }
+
+  @Test
+  @DisplayName("factorRange on a pool should factor every number exactly once")
+  void factorRangeInParallel() {
+    long from = 1000000000L;
+    int width = 100000;
+    AtomicLongArray seen = new AtomicLongArray(width);
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      RangeFactorizer.factorRange(from, from + width, 512, (number, primes, exponents, primesOffset, count) -> {
+        long product = 1;
+        for (int aa = 0; aa < count; aa++) {
+          for (int bb = 0; bb < exponents[primesOffset + aa]; bb++) {
+            product *= primes[primesOffset + aa];
+          }
+        }
+        assertEquals(number, product);
+        seen.incrementAndGet((int) (number - from));
+      }, pool);
+    } finally {
+      pool.shutdown();
+    }
+    for (int aa = 0; aa < width; aa++) {
+      assertEquals(1, seen.get(aa), "Times " + (from + aa) + " was factored");
+    }
+  }
+
+  @Test
+  @DisplayName("primesUpTo should return the primes up to and including the limit")
+  void primesUpTo() {
+    assertArrayEquals(new int[] {}, RangeFactorizer.primesUpTo(1));
+    assertArrayEquals(new int[] { 2 }, RangeFactorizer.primesUpTo(2));
+    assertArrayEquals(new int[] { 2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31 }, RangeFactorizer.primesUpTo(31));
+  }
+
+  @Test
+  @DisplayName("factorRange with an empty or invalid range")
+  void invalidRange() {
+    RangeFactorizer.factorRange(5, 5, (number, primes, exponents, primesOffset, count) -> {
+      throw new AssertionError("Nothing to factor");
+    });
+    assertThrows(IllegalArgumentException.class,
+        () -> RangeFactorizer.factorRange(0, 10, (number, primes, exponents, primesOffset, count) -> {
+        }));
+    assertThrows(IllegalArgumentException.class,
+        () -> RangeFactorizer.factorRange(10, 5, (number, primes, exponents, primesOffset, count) -> {
+        }));
+  }
+
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the SmallestPrimeFactorTable class.
+ *
+ * @author J Steven Perry
+ *
+ */
+@DisplayName("Testing SmallestPrimeFactorTable...")
+public class SmallestPrimeFactorTableTest {
+
+  private static final int LIMIT = 100000;
+
+  private final SmallestPrimeFactorTable table = new SmallestPrimeFactorTable(LIMIT);
+
+  @Test
+  @DisplayName("smallestPrimeFactor should match trial division for every number below the limit")
+  void smallestPrimeFactorMatchesTrialDivision() {
+    for (long number = 2; number < LIMIT; number++) {
+      long expected = YetAnotherUtility.computeFactorsByTrialDivision(number)[1];
+      assertEquals(expected, table.smallestPrimeFactor(number), "Smallest prime factor of " + number);
+    }
+  }
+
+  @Test
+  @DisplayName("factor should produce the same factors as PrimeFactorizer")
+  void factorMatchesPrimeFactorizer() {
+    long[] expectedPrimes = new long[PrimeFactorizer.MAX_DISTINCT_PRIMES];
+    int[] expectedExponents = new int[PrimeFactorizer.MAX_DISTINCT_PRIMES];
+    long[] actualPrimes = new long[PrimeFactorizer.MAX_DISTINCT_PRIMES];
+    int[] actualExponents = new int[PrimeFactorizer.MAX_DISTINCT_PRIMES];
+    for (long number = 1; number < LIMIT; number += 7) {
+      int expectedCount = PrimeFactorizer.factor(number, expectedPrimes, expectedExponents);
+      int actualCount = table.factor(number, actualPrimes, actualExponents);
+      assertEquals(expectedCount, actualCount, "Distinct prime factors of " + number);
+      for (int aa = 0; aa < expectedCount; aa++) {
+        assertEquals(expectedPrimes[aa], actualPrimes[aa]);
+        assertEquals(expectedExponents[aa], actualExponents[aa]);
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("computeFactors should consult an installed table and fall back beyond its limit")
+  void computeFactorsUsesTable() {
+    YetAnotherUtility.setSmallestPrimeFactorTable(table);
+    try {
+      assertArrayEquals(new long[] { 1, 3, 11, 31, 33, 93, 341, 1023 }, YetAnotherUtility.computeFactors(1023));
+      assertArrayEquals(new long[] { 1, 733 }, YetAnotherUtility.computeFactors(733));
+      assertArrayEquals(new long[] { 1, 2, 50021, 100042 }, YetAnotherUtility.computeFactors(100042));
+    } finally {
+      YetAnotherUtility.setSmallestPrimeFactorTable(null);
+    }
+  }
+
+  @Test
+  @DisplayName("covers should only accept numbers in [1, limit)")
+  void covers() {
+    assertTrue(table.covers(1));
+    assertTrue(table.covers(LIMIT - 1));
+    assertFalse(table.covers(0));
+    assertFalse(table.covers(LIMIT));
+  }
+
+  @Test
+  @DisplayName("getMemoryFootprint should be one byte per number in range")
+  void getMemoryFootprint() {
+    assertEquals(LIMIT, table.getMemoryFootprint());
+  }
+
+  @Test
+  @DisplayName("payloadSize should reach 2 GiB at Integer.MAX_VALUE without overflowing")
+  void payloadSize() {
+    assertEquals(2, SmallestPrimeFactorTable.payloadSize(2));
+    assertEquals(LIMIT, SmallestPrimeFactorTable.payloadSize(LIMIT));
+    assertEquals(1L << 31, SmallestPrimeFactorTable.payloadSize(Integer.MAX_VALUE));
+  }
+
+  @Test
+  @DisplayName("SmallestPrimeFactorTable with a limit below 2 throws IllegalArgumentException")
+  void invalidLimit() {
+    assertThrows(IllegalArgumentException.class, () -> new SmallestPrimeFactorTable(1));
+  }
+
+  @Nested
+  @DisplayName("When saving and loading the table file...")
+  public class Load {
+
+    private void assertSameTable(SmallestPrimeFactorTable expected, SmallestPrimeFactorTable actual) {
+      assertEquals(expected.getLimit(), actual.getLimit());
+      for (long number = 2; number < expected.getLimit(); number++) {
+        assertEquals(expected.smallestPrimeFactor(number), actual.smallestPrimeFactor(number),
+            "Smallest prime factor of " + number);
+      }
+    }
+
+    private Path createTableFile() throws IOException {
+      Path file = Files.createTempFile("spf", ".bin");
+      Files.delete(file);
+      return file;
+    }
+
+    @Test
+    @DisplayName("load should build and save the table the first time, then map it")
+    void loadMapsSavedTable() throws IOException {
+      Path file = createTableFile();
+      try {
+        SmallestPrimeFactorTable built = SmallestPrimeFactorTable.load(file, LIMIT);
+        assertFalse(built.isMapped());
+        assertTrue(Files.isRegularFile(file));
+        SmallestPrimeFactorTable mapped = SmallestPrimeFactorTable.load(file, LIMIT);
+        assertTrue(mapped.isMapped());
+        assertEquals(built.getMemoryFootprint(), mapped.getMemoryFootprint());
+        assertSameTable(table, mapped);
+      } finally {
+        Files.deleteIfExists(file);
+      }
+    }
+
+    @Test
+    @DisplayName("tables split into many segments should save and map the same as whole ones")
+    void segments() throws IOException {
+      Path whole = createTableFile();
+      Path segmented = createTableFile();
+      try {
+        // 64 entries a segment
+        SmallestPrimeFactorTable small = new SmallestPrimeFactorTable(LIMIT, 6);
+        assertEquals(LIMIT, small.getMemoryFootprint());
+        assertSameTable(table, small);
+        table.save(whole);
+        small.save(segmented);
+        assertEquals(SmallestPrimeFactorTable.HEADER_SIZE + SmallestPrimeFactorTable.payloadSize(LIMIT),
+            Files.size(segmented));
+        assertArrayEquals(Files.readAllBytes(whole), Files.readAllBytes(segmented));
+        assertSameTable(table, SmallestPrimeFactorTable.map(whole, LIMIT, 6));
+        assertSameTable(table, SmallestPrimeFactorTable.map(segmented, LIMIT, SmallestPrimeFactorTable.SEGMENT_SHIFT));
+        //
+        // Several save chunks, and a last segment that is only partly used
+        int limit = 5000001;
+        SmallestPrimeFactorTable big = new SmallestPrimeFactorTable(limit, 20);
+        big.save(segmented);
+        SmallestPrimeFactorTable mapped = SmallestPrimeFactorTable.load(segmented, limit);
+        assertTrue(mapped.isMapped());
+        assertSameTable(big, mapped);
+      } finally {
+        Files.deleteIfExists(whole);
+        Files.deleteIfExists(segmented);
+      }
+    }
+
+    @Test
+    @DisplayName("load should rebuild a table saved for a different limit")
+    void loadRebuildsStaleTable() throws IOException {
+      Path file = createTableFile();
+      try {
+        new SmallestPrimeFactorTable(LIMIT / 2).save(file);
+        SmallestPrimeFactorTable loaded = SmallestPrimeFactorTable.load(file, LIMIT);
+        assertFalse(loaded.isMapped());
+        assertSameTable(table, loaded);
+        assertTrue(SmallestPrimeFactorTable.load(file, LIMIT).isMapped());
+      } finally {
+        Files.deleteIfExists(file);
+      }
+    }
+
+    @Test
+    @DisplayName("load should rebuild a table whose checksum doesn't match")
+    void loadRebuildsCorruptTable() throws IOException {
+      Path file = createTableFile();
+      try {
+        table.save(file);
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+          long position = SmallestPrimeFactorTable.HEADER_SIZE + 1000;
+          raf.seek(position);
+          int original = raf.read();
+          raf.seek(position);
+          raf.write(~original);
+        }
+        SmallestPrimeFactorTable loaded = SmallestPrimeFactorTable.load(file, LIMIT);
+        assertFalse(loaded.isMapped());
+        assertSameTable(table, loaded);
+      } finally {
+        Files.deleteIfExists(file);
+      }
+    }
+
+  }
+
+}
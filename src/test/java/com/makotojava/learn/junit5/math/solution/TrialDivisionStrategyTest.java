@@ -0,0 +1,92 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5.math.solution;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the TrialDivisionStrategy enum.
+ *
+ * @author J Steven Perry
+ *
+ */
+@DisplayName("Testing TrialDivisionStrategy...")
+public class TrialDivisionStrategyTest {
+
+  /**
+   * The top of the trial division range: primes, products of two primes near
+   * the square root, powers of small primes and their neighbours.
+   */
+  private static final long[] LARGE_INPUTS = { 16777213L, 16777199L, 4093L * 4091L, 4091L * 4079L, 1L << 24,
+      (1L << 24) - 1, 3L * 3 * 3 * 3 * 3 * 3 * 3 * 3 * 3 * 3 * 3 * 3 * 3 * 3 * 3, 11L * 13 * 17 * 19 * 23 * 29,
+      4093L * 4093L, 15120000L };
+
+  @Test
+  @DisplayName("every strategy should find the same factors as trying every integer")
+  void matchesTrialDivision() {
+    for (TrialDivisionStrategy strategy : TrialDivisionStrategy.values()) {
+      for (long compoundInteger = 1; compoundInteger <= 20000; compoundInteger++) {
+        assertArrayEquals(YetAnotherUtility.computeFactorsByTrialDivision(compoundInteger),
+            strategy.computeFactors(compoundInteger), strategy + " factors of " + compoundInteger);
+      }
+      for (long compoundInteger : LARGE_INPUTS) {
+        assertArrayEquals(YetAnotherUtility.computeFactorsByTrialDivision(compoundInteger),
+            strategy.computeFactors(compoundInteger), strategy + " factors of " + compoundInteger);
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("the prime factorizations should be in ascending order")
+  void primeFactorizations() {
+    long[] primes = new long[PrimeFactorizer.MAX_DISTINCT_PRIMES];
+    int[] exponents = new int[PrimeFactorizer.MAX_DISTINCT_PRIMES];
+    long compoundInteger = 2L * 2 * 2 * 3 * 7 * 7 * 11 * 4091;
+    assertEquals(5, TrialDivisionStrategy.factorByWheel(compoundInteger, primes, exponents));
+    assertArrayEquals(new long[] { 2, 3, 7, 11, 4091 }, Arrays.copyOf(primes, 5));
+    assertArrayEquals(new int[] { 3, 1, 2, 1, 1 }, Arrays.copyOf(exponents, 5));
+    assertEquals(5, TrialDivisionStrategy.factorByPrimeTable(compoundInteger, primes, exponents));
+    assertArrayEquals(new long[] { 2, 3, 7, 11, 4091 }, Arrays.copyOf(primes, 5));
+    assertArrayEquals(new int[] { 3, 1, 2, 1, 1 }, Arrays.copyOf(exponents, 5));
+    assertEquals(0, TrialDivisionStrategy.factorByWheel(1, primes, exponents));
+    assertEquals(0, TrialDivisionStrategy.factorByPrimeTable(1, primes, exponents));
+  }
+
+  @Test
+  @DisplayName("computeFactors should use the strategy that is set")
+  void setTrialDivisionStrategy() {
+    assertEquals(TrialDivisionStrategy.WHEEL, YetAnotherUtility.getTrialDivisionStrategy());
+    try {
+      for (TrialDivisionStrategy strategy : TrialDivisionStrategy.values()) {
+        YetAnotherUtility.setTrialDivisionStrategy(strategy);
+        assertEquals(strategy, YetAnotherUtility.getTrialDivisionStrategy());
+        assertArrayEquals(new long[] { 1, 2, 3, 4, 6, 12 }, YetAnotherUtility.computeFactors(12));
+      }
+      assertThrows(IllegalArgumentException.class, () -> YetAnotherUtility.setTrialDivisionStrategy(null));
+    } finally {
+      YetAnotherUtility.setTrialDivisionStrategy(TrialDivisionStrategy.WHEEL);
+    }
+  }
+
+}
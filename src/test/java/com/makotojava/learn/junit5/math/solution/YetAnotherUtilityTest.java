@@ -41,8 +41,6 @@ import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 
-import com.makotojava.learn.junit5.math.YetAnotherUtility;
-
 /**
  * Tests the YetAnotherUtilityTest utility class.
  * 
@@ -126,6 +124,41 @@ public class YetAnotherUtilityTest {
       assertArrayEquals(expectedResults, actualResults, () -> generateCustomMessage(expectedResults, actualResults));
     }
 
+    @Test
+    @DisplayName("isPrime of { 0, 1, 2, 21, 23, 4087, 9223372036854775783 } should return the primes")
+    void isPrimeBulk() {
+      long[] candidateIntegers = { 0, 1, 2, 21, 23, 4087, 9223372036854775783L };
+      boolean[] expectedResults = { false, false, true, false, true, false, true };
+      boolean[] actualResults = new boolean[candidateIntegers.length];
+      YetAnotherUtility.isPrime(candidateIntegers, actualResults);
+      //
+      // Supplier<String> message - creates String lazily (only if assertion fails)
+      assertArrayEquals(expectedResults, actualResults, () -> generateCustomMessage(expectedResults, actualResults));
+    }
+
+    @Test
+    @DisplayName("computeFactors of 1 should return long[] = { 1 }")
+    void computeFactorsOfOne() {
+      long compoundInteger = 1;
+      long[] expectedResults = { 1 };
+      long[] actualResults = YetAnotherUtility.computeFactors(compoundInteger);
+      //
+      // Supplier<String> message - creates String lazily (only if assertion fails)
+      assertArrayEquals(expectedResults, actualResults, () -> generateCustomMessage(expectedResults, actualResults));
+    }
+
+    @Test
+    @DisplayName("computeFactors of 3600 should return the square root only once")
+    void computeFactorsOfPerfectSquare() {
+      long compoundInteger = 3600;
+      long[] expectedResults = { 1, 2, 3, 4, 5, 6, 8, 9, 10, 12, 15, 16, 18, 20, 24, 25, 30, 36, 40, 45, 48, 50, 60, 72,
+          75, 80, 90, 100, 120, 144, 150, 180, 200, 225, 240, 300, 360, 400, 450, 600, 720, 900, 1200, 1800, 3600 };
+      long[] actualResults = YetAnotherUtility.computeFactors(compoundInteger);
+      //
+      // Supplier<String> message - creates String lazily (only if assertion fails)
+      assertArrayEquals(expectedResults, actualResults, () -> generateCustomMessage(expectedResults, actualResults));
+    }
+
   }
 
   /**
@@ -206,7 +239,7 @@ public class YetAnotherUtilityTest {
       long candidateInteger = 21;
 
       // assertFalse(BooleanSupplier, Supplier<String>)
-      assertFalse(() -> YetAnotherUtility.computeFactors(candidateInteger).length == 2,
+      assertFalse(() -> YetAnotherUtility.isPrime(candidateInteger),
           () -> candidateInteger + " was expected *not* to be prime.");
     }
 
@@ -403,6 +436,12 @@ public class YetAnotherUtilityTest {
       assertThrows(IllegalArgumentException.class, () -> YetAnotherUtility.computeFactors(-100L));
     }
 
+    @Test
+    @DisplayName("isPrime with negative number throws IllegalArgumentException")
+    void isPrime() {
+      assertThrows(IllegalArgumentException.class, () -> YetAnotherUtility.isPrime(-23L));
+    }
+
   }
 
   /**
@@ -493,12 +532,12 @@ public class YetAnotherUtilityTest {
 
       assertAll("Oh, look, it's a gaggle of Assertions",
           // AssertTrue(BooleanSupplier, String)
-          () -> assertTrue(() -> YetAnotherUtility.computeFactors(candidateInteger).length == 2,
+          () -> assertTrue(() -> YetAnotherUtility.isPrime(candidateInteger),
               candidateInteger + " was expected to be prime."),
 
           // AssertFalse(BooleanSupplier, Supplier<String>)
-          () -> assertFalse(() -> YetAnotherUtility.computeFactors(candidateInteger).length > 2,
-              () -> candidateInteger + " was expected to be prime."));
+          () -> assertFalse(() -> YetAnotherUtility.isPrime(candidateInteger * candidateInteger),
+              () -> candidateInteger * candidateInteger + " was expected *not* to be prime."));
     }
 
   }